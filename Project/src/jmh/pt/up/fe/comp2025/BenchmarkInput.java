@@ -0,0 +1,118 @@
+package pt.up.fe.comp2025;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2025.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2025.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2025.parser.JmmParserImpl;
+import pt.up.fe.specs.util.SpecsIo;
+import utils.SyntheticProgramGenerator;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A Java-- program and the result of every stage of the compiler for it, so that each benchmark measures a single
+ * stage with the output of the previous ones already computed.
+ * <p>
+ * Inputs are either paths of test resources, relative to {@code pt/up/fe/comp/}, {@code synthetic:N}, a program
+ * with N methods made by the {@link SyntheticProgramGenerator}, or {@code nested:N}, a single expression nested N levels
+ * deep.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkInput {
+
+    public static final String SYNTHETIC_PREFIX = "synthetic:";
+
+    public static final String NESTED_PREFIX = "nested:";
+
+    private static final String RESOURCES = "pt/up/fe/comp/";
+
+    private static final long SYNTHETIC_SEED = 2025;
+
+    @Param({
+            "cp3/jasmin/control_flow/SwitchStat.jmm",
+            "cp3/optimizations/arrays/Quicksort.jmm",
+            "cp3/optimizations/inlining/InlineNestedCalls.jmm",
+            "synthetic:20",
+            "synthetic:200"
+    })
+    public String input;
+
+    public String code;
+
+    public Map<String, String> config;
+
+    public JmmParserResult parserResult;
+
+    public JmmSemanticsResult symbolTableResult;
+
+    public JmmSemanticsResult semanticsResult;
+
+    public OllirResult ollirResult;
+
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // As várias fases escrevem mensagens de debug, que não devem entrar na medição
+        stdout = System.out;
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+
+        code = read(input);
+        config = new HashMap<>();
+
+        parserResult = new JmmParserImpl().parse(code, config);
+        var analysis = new JmmAnalysisImpl();
+        symbolTableResult = analysis.buildSymbolTable(parserResult);
+        semanticsResult = analysis.semanticAnalysis(symbolTableResult);
+        ollirResult = new JmmOptimizationImpl().toOllir(semanticsResult);
+
+        // O OLLIR é interpretado aqui, e não dentro da medição do backend
+        ollirResult.getOllirClass();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    public static String read(String input) {
+        if (input.startsWith(SYNTHETIC_PREFIX)) {
+            return synthetic(Integer.parseInt(input.substring(SYNTHETIC_PREFIX.length())));
+        }
+
+        if (input.startsWith(NESTED_PREFIX)) {
+            return nested(Integer.parseInt(input.substring(NESTED_PREFIX.length())));
+        }
+
+        return SpecsIo.getResource(RESOURCES + input);
+    }
+
+    /**
+     * Program of the {@link SyntheticProgramGenerator} with the given number of methods, always the same for each size.
+     */
+    public static String synthetic(int methods) {
+        return new SyntheticProgramGenerator(SYNTHETIC_SEED).setMethods(methods).generate();
+    }
+
+    /**
+     * Program with one expression of the given depth, {@code f(a + f(a + ... f(a)))}, where the code of each level
+     * contains the code of all the levels inside it.
+     */
+    public static String nested(int depth) {
+        var expression = new StringBuilder("a");
+        for (int i = 0; i < depth; i++) {
+            expression.insert(0, "this.f(a + ").append(')');
+        }
+
+        return "class Nested {\n"
+                + "    public int f(int x) {\n        return x;\n    }\n\n"
+                + "    public int g(int a) {\n        return " + expression + ";\n    }\n\n"
+                + "    public static void main(String[] args) {\n    }\n"
+                + "}\n";
+    }
+}
@@ -0,0 +1,105 @@
+package pt.up.fe.comp2025;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp2025.backend.JasminClassLoader;
+import utils.ProjectTestUtils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution time of the code generated for each kernel program, under each combination of compiler options.
+ * <p>
+ * Kernels are the programs in {@code cp3/kernels} (sorting, nested loops, array sums and recursive calls). They are
+ * compiled with the options given as on the command line (e.g. {@code -o -r=4}) and their classes are loaded in this
+ * JVM, so only the execution of the generated code is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuntimeBenchmark {
+
+    public static final String NO_FLAGS = "none";
+
+    public static final List<String> KERNELS = List.of("QuicksortKernel", "NestedLoopsKernel", "ArraySumKernel",
+            "RecursionKernel");
+
+    /**
+     * Compiler options of each configuration, as given on the command line.
+     */
+    public static final List<String> FLAGS = List.of(NO_FLAGS, "-o", "-r=4", "-o -r=4");
+
+    private static final String KERNELS_PATH = "cp3/kernels/";
+
+    @State(Scope.Benchmark)
+    public static class Kernel {
+
+        @Param({"QuicksortKernel", "NestedLoopsKernel", "ArraySumKernel", "RecursionKernel"})
+        public String kernel;
+
+        @Param({NO_FLAGS, "-o", "-r=4", "-o -r=4"})
+        public String flags;
+
+        public Class<?> mainClass;
+
+        private PrintStream stdout;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            // O que os kernels escrevem não deve entrar na medição
+            stdout = System.out;
+            System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+
+            mainClass = new JasminClassLoader().define(compile(kernel, flags));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            System.setOut(stdout);
+        }
+    }
+
+    @Benchmark
+    public void run(Kernel kernel) {
+        JasminClassLoader.runMain(kernel.mainClass);
+    }
+
+    /**
+     * Jasmin code of the kernel compiled with the given options, going through the same stages as the tests.
+     */
+    public static String compile(String kernel, String flags) {
+        String code = BenchmarkInput.read(KERNELS_PATH + kernel + ".jmm");
+        return ProjectTestUtils.compile(code, getConfig(kernel, code, flags)).getJasminCode();
+    }
+
+    // A configuração é construída como a do Launcher, que precisa do ficheiro de entrada
+    private static Map<String, String> getConfig(String kernel, String code, String flags) {
+        try {
+            var inputFile = Files.createTempFile(kernel, ".jmm");
+            try {
+                Files.writeString(inputFile, code);
+
+                List<String> args = new ArrayList<>();
+                args.add("-i=" + inputFile);
+                if (!flags.equals(NO_FLAGS)) {
+                    args.addAll(Arrays.asList(flags.split("\\s+")));
+                }
+
+                return CompilerConfig.parseArgs(args.toArray(String[]::new));
+            } finally {
+                Files.delete(inputFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package pt.up.fe.comp2025;
+
+import pt.up.fe.comp2025.backend.BytecodeCounter;
+import pt.up.fe.comp2025.backend.JasminClassLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Steady-state execution time and number of executed bytecode instructions of each kernel program, under each
+ * combination of compiler options, so the effect of an optimization on the generated code can be judged by the
+ * numbers before and after it.
+ * <p>
+ * Results are written as CSV. When the CSV of a previous run is given, every value is printed next to the one from
+ * that run.
+ * <p>
+ * Arguments: the output directory, optionally followed by the CSV of a previous run.
+ */
+public class RuntimeReport {
+
+    // O código gerado só é medido depois de correr pelo menos este tempo, para o JIT o ter compilado
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+
+    private static final int MIN_WARMUP_RUNS = 5;
+
+    private static final int REPETITIONS = 31;
+
+    private static final int COLUMN_WIDTH = 28;
+
+    private static final String OK = "ok";
+
+    private record Row(String kernel, String flags, String status, double millis, long bytecodes, String output) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path outputDir = Path.of(args.length > 0 ? args[0] : "build/reports/runtime");
+        Map<String, Row> baseline = args.length > 1 ? readCsv(Path.of(args[1])) : Map.of();
+
+        PrintStream stdout = System.out;
+        List<Row> rows = new ArrayList<>();
+
+        for (String kernel : RuntimeBenchmark.KERNELS) {
+            String expectedOutput = null;
+
+            for (String flags : RuntimeBenchmark.FLAGS) {
+                Row row = measure(kernel, flags, expectedOutput, stdout);
+                rows.add(row);
+
+                // A saída sem opções é a referência das outras configurações
+                if (flags.equals(RuntimeBenchmark.NO_FLAGS)) {
+                    expectedOutput = row.output();
+                }
+            }
+        }
+
+        Files.createDirectories(outputDir);
+        Path csv = outputDir.resolve("runtime.csv");
+        Files.writeString(csv, toCsv(rows));
+
+        print("Execution time (ms, median)", rows, baseline, row -> String.format(Locale.ROOT, "%.3f", row.millis()),
+                Row::millis, stdout);
+        print("Executed bytecodes", rows, baseline, row -> String.valueOf(row.bytecodes()),
+                row -> (double) row.bytecodes(), stdout);
+        stdout.println("Results written to " + csv);
+    }
+
+    private static Row measure(String kernel, String flags, String expectedOutput, PrintStream stdout) {
+        String jasminCode;
+        Class<?> mainClass;
+
+        // As fases do compilador escrevem mensagens de debug
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+        try {
+            jasminCode = RuntimeBenchmark.compile(kernel, flags);
+            mainClass = new JasminClassLoader().define(jasminCode);
+        } catch (RuntimeException e) {
+            return failed(kernel, flags, "compile error");
+        } finally {
+            System.setOut(stdout);
+        }
+
+        try {
+            String output = run(mainClass);
+            if (expectedOutput != null && !output.equals(expectedOutput)) {
+                return failed(kernel, flags, "wrong output");
+            }
+
+            System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+            long bytecodes = BytecodeCounter.count(jasminCode);
+            return new Row(kernel, flags, OK, time(mainClass, stdout), bytecodes, output);
+        } catch (RuntimeException | Error e) {
+            // Ex: o código gerado não passa no verificador da JVM
+            return failed(kernel, flags, e.getClass().getSimpleName());
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    private static Row failed(String kernel, String flags, String status) {
+        return new Row(kernel, flags, status, Double.NaN, -1, null);
+    }
+
+    private static String run(Class<?> mainClass) {
+        PrintStream stdout = System.out;
+        var output = new ByteArrayOutputStream();
+
+        System.setOut(new PrintStream(output));
+        try {
+            JasminClassLoader.runMain(mainClass);
+        } finally {
+            System.setOut(stdout);
+        }
+
+        return output.toString();
+    }
+
+    private static double time(Class<?> mainClass, PrintStream stdout) {
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+        try {
+            long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+            for (int i = 0; i < MIN_WARMUP_RUNS || System.nanoTime() < warmupEnd; i++) {
+                JasminClassLoader.runMain(mainClass);
+            }
+
+            long[] times = new long[REPETITIONS];
+            for (int i = 0; i < REPETITIONS; i++) {
+                long start = System.nanoTime();
+                JasminClassLoader.runMain(mainClass);
+                times[i] = System.nanoTime() - start;
+            }
+
+            Arrays.sort(times);
+            return times[REPETITIONS / 2] / 1e6;
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    private static String toCsv(List<Row> rows) {
+        StringBuilder csv = new StringBuilder("kernel,flags,status,median_ms,bytecodes\n");
+        for (Row row : rows) {
+            csv.append(String.format(Locale.ROOT, "%s,%s,%s,%.3f,%d%n",
+                    row.kernel(), row.flags(), row.status(), row.millis(), row.bytecodes()));
+        }
+
+        return csv.toString();
+    }
+
+    private static Map<String, Row> readCsv(Path csv) throws IOException {
+        Map<String, Row> rows = new HashMap<>();
+
+        List<String> lines = Files.readAllLines(csv);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(",");
+            rows.put(fields[0] + " " + fields[1], new Row(fields[0], fields[1], fields[2],
+                    Double.parseDouble(fields[3]), Long.parseLong(fields[4]), null));
+        }
+
+        return rows;
+    }
+
+    // Uma linha por kernel e uma coluna por configuração, com o valor anterior e a variação quando há baseline
+    private static void print(String title, List<Row> rows, Map<String, Row> baseline, Function<Row, String> format,
+                              Function<Row, Double> value, PrintStream out) {
+        out.println(title);
+        out.printf("  %-18s", "kernel");
+        for (String flags : RuntimeBenchmark.FLAGS) {
+            out.printf(" %" + COLUMN_WIDTH + "s", flags);
+        }
+        out.println();
+
+        for (String kernel : RuntimeBenchmark.KERNELS) {
+            out.printf("  %-18s", kernel);
+
+            for (Row row : rows) {
+                if (!row.kernel().equals(kernel)) {
+                    continue;
+                }
+
+                String cell = row.status().equals(OK) ? format.apply(row) : row.status();
+                Row before = baseline.get(row.kernel() + " " + row.flags());
+                if (before != null && before.status().equals(OK) && row.status().equals(OK)) {
+                    double change = 100 * (value.apply(row) / value.apply(before) - 1);
+                    cell = format.apply(before) + " -> " + cell + String.format(Locale.ROOT, " (%+.0f%%)", change);
+                }
+
+                out.printf(" %" + COLUMN_WIDTH + "s", cell);
+            }
+
+            out.println();
+        }
+
+        out.println();
+    }
+}
@@ -0,0 +1,187 @@
+package pt.up.fe.comp2025;
+
+import com.sun.management.ThreadMXBean;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2025.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2025.backend.JasminGenerator;
+import pt.up.fe.comp2025.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2025.optimization.RegisterAllocation;
+import pt.up.fe.comp2025.parser.JmmParserImpl;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Compile time and allocated memory of each stage of the compiler versus the size of the program, for synthetic
+ * programs of increasing size.
+ * <p>
+ * Unlike the JMH benchmarks, which measure one input at a time, this runs every size in one go, so growth that is
+ * worse than linear (e.g. the interference graph of the register allocation) shows up in a single table. Results are
+ * written as CSV, one row per stage and size, and printed with a bar per row.
+ * <p>
+ * Arguments: the output directory, optionally followed by the sizes (numbers of methods) to measure.
+ */
+public class ScalingReport {
+
+    private static final int[] DEFAULT_SIZES = {10, 20, 50, 100, 200, 400};
+
+    private static final int WARMUP = 3;
+
+    private static final int REPETITIONS = 7;
+
+    // Número de registos usado na alocação (-r), o mesmo dos benchmarks
+    private static final int MAX_REGISTERS = 4;
+
+    private static final int BAR_WIDTH = 40;
+
+    private static final List<String> STAGES = List.of("parse", "symbolTable", "semantics", "optimizeAst", "toOllir",
+            "optimizeOllir", "allocateRegisters", "jasmin");
+
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Tempos (ns) e memória alocada (bytes) de cada fase na repetição atual
+    private final Map<String, long[]> current = new HashMap<>();
+
+    private record Row(String stage, int methods, int lines, double millis, double megabytes) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path outputDir = Path.of(args.length > 0 ? args[0] : "build/reports/scaling");
+        int[] sizes = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : DEFAULT_SIZES;
+
+        // As várias fases escrevem mensagens de debug, que não devem entrar na medição
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+
+        List<Row> rows;
+        try {
+            rows = new ScalingReport().run(sizes);
+        } finally {
+            System.setOut(stdout);
+        }
+
+        Files.createDirectories(outputDir);
+        Path csv = outputDir.resolve("scaling.csv");
+        Files.writeString(csv, toCsv(rows));
+
+        print(rows, stdout);
+        stdout.println("Results written to " + csv);
+    }
+
+    private List<Row> run(int[] sizes) {
+        List<Row> rows = new ArrayList<>();
+
+        for (int methods : sizes) {
+            String code = BenchmarkInput.synthetic(methods);
+            int lines = (int) code.lines().count();
+
+            Map<String, List<long[]>> samples = new HashMap<>();
+            for (int i = 0; i < WARMUP + REPETITIONS; i++) {
+                current.clear();
+                compile(code);
+
+                if (i >= WARMUP) {
+                    current.forEach((stage, sample) -> samples.computeIfAbsent(stage, s -> new ArrayList<>()).add(sample));
+                }
+            }
+
+            for (String stage : STAGES) {
+                List<long[]> stageSamples = samples.get(stage);
+                rows.add(new Row(stage, methods, lines, median(stageSamples, 0) / 1e6, median(stageSamples, 1) / 1e6));
+            }
+        }
+
+        return rows;
+    }
+
+    private void compile(String code) {
+        Map<String, String> config = new HashMap<>();
+        Map<String, String> optimizeConfig = new HashMap<>();
+        optimizeConfig.put(ConfigOptions.getOptimize(), "true");
+
+        var analysis = new JmmAnalysisImpl();
+        var optimization = new JmmOptimizationImpl();
+
+        JmmParserResult parserResult = measure("parse", () -> new JmmParserImpl().parse(code, config));
+        JmmSemanticsResult symbolTableResult = measure("symbolTable", () -> analysis.buildSymbolTable(parserResult));
+        JmmSemanticsResult semanticsResult = measure("semantics", () -> analysis.semanticAnalysis(symbolTableResult));
+
+        // As otimizações da AST alteram a árvore, por isso usam uma árvore própria, analisada fora da medição
+        JmmSemanticsResult toOptimize = analysis.semanticAnalysis(
+                analysis.buildSymbolTable(new JmmParserImpl().parse(code, optimizeConfig)));
+        measure("optimizeAst", () -> optimization.optimize(toOptimize));
+
+        OllirResult ollirResult = measure("toOllir", () -> optimization.toOllir(semanticsResult));
+        ollirResult.getOllirClass();
+
+        OllirResult toOptimizeOllir = new OllirResult(ollirResult.getOllirCode(), optimizeConfig);
+        toOptimizeOllir.getOllirClass();
+        measure("optimizeOllir", () -> optimization.optimize(toOptimizeOllir));
+
+        measure("allocateRegisters", () -> new RegisterAllocation(MAX_REGISTERS).apply(ollirResult));
+        measure("jasmin", () -> new JasminGenerator(ollirResult).build());
+    }
+
+    private <T> T measure(String stage, Supplier<T> action) {
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+
+        T result = action.get();
+
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        current.put(stage, new long[]{elapsed, allocated});
+
+        return result;
+    }
+
+    private static double median(List<long[]> samples, int index) {
+        long[] values = samples.stream().mapToLong(sample -> sample[index]).sorted().toArray();
+        int middle = values.length / 2;
+
+        return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2.0;
+    }
+
+    private static String toCsv(List<Row> rows) {
+        StringBuilder csv = new StringBuilder("stage,methods,lines,median_ms,allocated_mb\n");
+        for (Row row : rows) {
+            csv.append(String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.3f%n",
+                    row.stage(), row.methods(), row.lines(), row.millis(), row.megabytes()));
+        }
+
+        return csv.toString();
+    }
+
+    // Uma barra por tamanho, relativa ao maior tempo da fase, e o expoente do crescimento em relação ao tamanho anterior
+    private static void print(List<Row> rows, PrintStream out) {
+        for (String stage : STAGES) {
+            List<Row> stageRows = rows.stream().filter(row -> row.stage().equals(stage)).toList();
+            double maxMillis = stageRows.stream().mapToDouble(Row::millis).max().orElse(0);
+
+            out.println(stage);
+            out.printf(Locale.ROOT, "  %7s %7s %11s %11s %6s%n", "methods", "lines", "ms", "MB", "growth");
+
+            Row previous = null;
+            for (Row row : stageRows) {
+                String growth = previous == null || previous.millis() == 0 ? "" : String.format(Locale.ROOT, "%.2f",
+                        Math.log(row.millis() / previous.millis()) / Math.log((double) row.lines() / previous.lines()));
+                int bar = maxMillis == 0 ? 0 : (int) Math.round(BAR_WIDTH * row.millis() / maxMillis);
+
+                out.printf(Locale.ROOT, "  %7d %7d %11.3f %11.3f %6s %s%n", row.methods(), row.lines(), row.millis(),
+                        row.megabytes(), growth, "#".repeat(bar));
+                previous = row;
+            }
+
+            out.println();
+        }
+    }
+}
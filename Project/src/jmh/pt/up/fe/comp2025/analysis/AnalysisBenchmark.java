@@ -0,0 +1,28 @@
+package pt.up.fe.comp2025.analysis;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2025.BenchmarkInput;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Symbol table construction and the semantic analysis passes, measured separately.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    @Benchmark
+    public JmmSemanticsResult buildSymbolTable(BenchmarkInput input) {
+        return new JmmAnalysisImpl().buildSymbolTable(input.parserResult);
+    }
+
+    @Benchmark
+    public JmmSemanticsResult semanticAnalysis(BenchmarkInput input) {
+        return new JmmAnalysisImpl().semanticAnalysis(input.symbolTableResult);
+    }
+}
@@ -0,0 +1,22 @@
+package pt.up.fe.comp2025.backend;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp2025.BenchmarkInput;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jasmin generation from the already parsed OLLIR of each benchmark input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JasminBackendBenchmark {
+
+    @Benchmark
+    public String build(BenchmarkInput input) {
+        return new JasminGenerator(input.ollirResult).build();
+    }
+}
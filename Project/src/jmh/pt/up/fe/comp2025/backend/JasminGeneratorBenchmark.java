@@ -0,0 +1,82 @@
+package pt.up.fe.comp2025.backend;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jasmin generation of a single large method, built from synthetic OLLIR with many locals, arithmetic and array
+ * accesses, so the cost is dominated by operand loads, stores and type descriptors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JasminGeneratorBenchmark {
+
+    @Param({"1000", "10000"})
+    public int statements;
+
+    private OllirResult ollirResult;
+
+    private PrintStream stdout;
+
+    @Setup
+    public void setup() {
+        // O gerador ainda escreve mensagens de debug, que não devem entrar na medição
+        stdout = System.out;
+        System.setOut(new PrintStream(PrintStream.nullOutputStream()));
+
+        // O OLLIR é lido uma só vez, fora da medição
+        ollirResult = new OllirResult(generateOllir(statements), Collections.emptyMap());
+        ollirResult.getOllirClass();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public String build() {
+        return new JasminGenerator(ollirResult).build();
+    }
+
+    static String generateOllir(int statements) {
+        int locals = 64;
+        var code = new StringBuilder(statements * 64);
+
+        code.append("Bench {\n");
+        code.append(".construct Bench().V {\ninvokespecial(this, \"<init>\").V;\n}\n");
+        code.append(".method public run(a.array.i32, o.Bench).i32 {\n");
+
+        for (int i = 0; i < locals; i++) {
+            code.append("v").append(i).append(".i32 :=.i32 ").append(i).append(".i32;\n");
+        }
+
+        for (int i = 0; i < statements; i++) {
+            String target = "v" + (i % locals);
+            String left = "v" + ((i * 7 + 3) % locals);
+            String right = "v" + ((i * 13 + 5) % locals);
+
+            switch (i % 4) {
+                case 0 -> code.append(target).append(".i32 :=.i32 ").append(left).append(".i32 +.i32 ")
+                        .append(right).append(".i32;\n");
+                case 1 -> code.append(target).append(".i32 :=.i32 ").append(left).append(".i32 *.i32 ")
+                        .append(i % 100).append(".i32;\n");
+                case 2 -> code.append(target).append(".i32 :=.i32 a.array.i32[").append(left)
+                        .append(".i32].i32;\n");
+                default -> code.append("a.array.i32[").append(left).append(".i32].i32 :=.i32 ")
+                        .append(right).append(".i32;\n");
+            }
+        }
+
+        code.append("ret.i32 v0.i32;\n}\n}\n");
+        return code.toString();
+    }
+}
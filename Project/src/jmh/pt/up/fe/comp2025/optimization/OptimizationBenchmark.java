@@ -0,0 +1,85 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.BenchmarkInput;
+import pt.up.fe.comp2025.ConfigOptions;
+import pt.up.fe.comp2025.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2025.parser.JmmParserImpl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OLLIR generation, the AST and OLLIR optimizations enabled by -o, and register allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptimizationBenchmark {
+
+    // Número de registos usado na alocação (-r)
+    private static final int MAX_REGISTERS = 4;
+
+    /**
+     * The AST optimizations rewrite the tree in place, so each invocation gets a freshly analysed one.
+     */
+    @State(Scope.Thread)
+    public static class FreshSemantics {
+
+        public JmmSemanticsResult semanticsResult;
+
+        @Setup(Level.Invocation)
+        public void setup(BenchmarkInput input) {
+            Map<String, String> config = new HashMap<>(input.config);
+            config.put(ConfigOptions.getOptimize(), "true");
+
+            var analysis = new JmmAnalysisImpl();
+            semanticsResult = analysis.semanticAnalysis(
+                    analysis.buildSymbolTable(new JmmParserImpl().parse(input.code, config)));
+        }
+    }
+
+    /**
+     * The OLLIR of the input with -o set, as the OLLIR optimizations only run under it.
+     */
+    @State(Scope.Benchmark)
+    public static class OptimizedConfig {
+
+        public OllirResult ollirResult;
+
+        @Setup(Level.Trial)
+        public void setup(BenchmarkInput input) {
+            Map<String, String> config = new HashMap<>(input.config);
+            config.put(ConfigOptions.getOptimize(), "true");
+
+            ollirResult = new OllirResult(input.ollirResult.getOllirCode(), config);
+            ollirResult.getOllirClass();
+        }
+    }
+
+    @Benchmark
+    public OllirResult toOllir(BenchmarkInput input) {
+        return new JmmOptimizationImpl().toOllir(input.semanticsResult);
+    }
+
+    @Benchmark
+    public JmmSemanticsResult optimizeAst(FreshSemantics fresh) {
+        return new JmmOptimizationImpl().optimize(fresh.semanticsResult);
+    }
+
+    @Benchmark
+    public OllirResult optimizeOllir(OptimizedConfig optimized) {
+        return new JmmOptimizationImpl().optimize(optimized.ollirResult);
+    }
+
+    @Benchmark
+    public OllirResult allocateRegisters(BenchmarkInput input) {
+        // A alocação altera as tabelas de variáveis, mas repeti-la sobre o mesmo código dá os mesmos registos
+        return new RegisterAllocation(MAX_REGISTERS).apply(input.ollirResult);
+    }
+}
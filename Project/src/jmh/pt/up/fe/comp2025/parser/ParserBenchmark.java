@@ -0,0 +1,23 @@
+package pt.up.fe.comp2025.parser;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2025.BenchmarkInput;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexing, parsing and AST construction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Benchmark
+    public JmmParserResult parse(BenchmarkInput input) {
+        return new JmmParserImpl().parse(input.code, input.config);
+    }
+}
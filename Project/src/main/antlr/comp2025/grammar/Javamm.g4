@@ -45,7 +45,7 @@ importDecl
 classDecl
     : CLASS name=ID (EXTENDS sname=ID)? // class declaration with optional superclass
        '{'
-        varDecl*
+        (varDecl | constDecl)*
         methodDecl*
         '}'
     ;
@@ -54,14 +54,18 @@ varDecl
     : type name=ID ';'
     ;
 
+constDecl
+    : CONST type name=ID '=' value=(INTEGER | 'true' | 'false') ';'
+    ;
+
 type
-    : name=(INT | BOOLEAN | STRING | ID) ('[' ']') # ArrayType
+    : name=(INT | BOOLEAN | STRING | ID) (dims+='[' ']')+ # ArrayType
     | name=(INT | BOOLEAN | STRING | ID)           # PrimitiveType
     | name=VOID                                    # VoidType
     ;
 
-methodDecl locals[boolean isPublic=false, boolean isStatic=false]
-    : (PUBLIC {$isPublic=true;})?
+methodDecl locals[boolean isPublic=false, boolean isPrivate=false, boolean isStatic=false]
+    : (PUBLIC {$isPublic=true;} | PRIVATE {$isPrivate=true;})?
       ( (STATIC {$isStatic=true;})? type name=ID '(' (param (',' param)*)? ')' | (STATIC {$isStatic=true;}) type name=MAIN '(' STRING '[' ']' ID ')' )
       '{' varDecl* stmt* '}'
     ;
@@ -83,18 +87,19 @@ stmt
 
 expr
     : '('expr')' #ExprExpr
-    | op= '!' expr #NotExpr
     | expr '[' expr ']' #ArrayAccessExpr
     | expr '.' 'length' #ArrayLengthExpr
     | name='length' '(' ')' #MethodLength
     | expr '.' expr #MethodCall
+    | op= '!' expr #NotExpr
     | expr (op= '*'  | op= '/') expr #BinaryExpr
     | expr (op= '+' | op= '-') expr #BinaryExpr
     | expr (op= '>' | op= '>=' | op= '<' | op= '<=') expr #Comparison
     | expr (op= '==' | op= '!=') expr #Equality
-    | expr (op= '&&' | op= '||') expr #Logical
+    | expr op= '&&' expr #Logical
+    | expr op= '||' expr #Logical
     | '[' expr (',' expr)* ']' #ArrayExpr
-    | 'new' INT '[' expr (',' expr)*  ']' #NewArrayExpr
+    | 'new' name=(INT | BOOLEAN | STRING | ID) '[' expr (',' expr)*  ']' #NewArrayExpr
     | 'new' name=ID '(' exprList? ')' #NewClassExpr
     | name=ID '(' (expr (',' expr)*)? ')' #MethodRefExpr
     | name=ID #VarRefExpr
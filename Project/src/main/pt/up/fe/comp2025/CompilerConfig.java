@@ -10,15 +10,20 @@ public class CompilerConfig {
     private static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String METRICS = "metrics";
 
+    /**
+     * Value of the metrics option ({@code -m=run}) that also runs the program, to count the executed instructions.
+     */
+    public static final String METRICS_RUN = "run";
 
-    static Map<String, String> shortToLong = new HashMap<>();
 
-    static {
-        shortToLong.put("i", CompilerConfig.INPUT_FILE);
-        shortToLong.put("o", CompilerConfig.OPTIMIZE);
-        shortToLong.put("r", CompilerConfig.REGISTER);
-    }
+    // Imutável, porque é partilhado por todas as compilações (incluindo as que correm em paralelo nos testes)
+    private static final Map<String, String> SHORT_TO_LONG = Map.of(
+            "i", CompilerConfig.INPUT_FILE,
+            "o", CompilerConfig.OPTIMIZE,
+            "r", CompilerConfig.REGISTER,
+            "m", CompilerConfig.METRICS);
 
 
     public static Optional<File> getInputFile(Map<String, String> config) {
@@ -40,6 +45,22 @@ public class CompilerConfig {
         return Integer.parseInt(config.getOrDefault(REGISTER, "-1"));
     }
 
+    /**
+     * True if the metrics of the generated bytecode should be printed ({@code -m} or {@code -m=run}).
+     */
+    public static boolean getMetrics(Map<String, String> config) {
+        String metrics = config.getOrDefault(METRICS, "false");
+        if (!metrics.equals("true") && !metrics.equals("false") && !metrics.equals(METRICS_RUN)) {
+            throw new RuntimeException("Option '-m' expects 'true', 'false' or '" + METRICS_RUN + "', got '" + metrics + "'");
+        }
+
+        return !metrics.equals("false");
+    }
+
+    public static boolean getMetricsRun(Map<String, String> config) {
+        return getMetrics(config) && config.get(METRICS).equals(METRICS_RUN);
+    }
+
 
     public static Map<String, String> getDefault() {
 
@@ -53,12 +74,12 @@ public class CompilerConfig {
 
     private static String getLongOpt(String shortOpt) {
 
-        return shortToLong.get(shortOpt);
+        return SHORT_TO_LONG.get(shortOpt);
     }
 
     private static boolean isShortOpt(String shortOpt) {
 
-        return shortToLong.containsKey(shortOpt);
+        return SHORT_TO_LONG.containsKey(shortOpt);
     }
 
     public static Map<String, String> parseArgs(String[] args) {
@@ -106,6 +127,7 @@ public class CompilerConfig {
         // Verify if values are valid
         getOptimize(config);
         getRegisterAllocation(config);
+        getMetrics(config);
 
         return config;
     }
@@ -6,6 +6,7 @@ import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp2025.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2025.backend.BytecodeMetrics;
 import pt.up.fe.comp2025.backend.JasminBackendImpl;
 import pt.up.fe.comp2025.optimization.JmmOptimizationImpl;
 import pt.up.fe.comp2025.parser.JmmParserImpl;
@@ -43,9 +44,10 @@ public class Launcher {
         TestUtils.noErrors(semanticsResult.getReports());
 
 
-        // Optimization stage
+        // Optimization stage (as otimizações só alteram o código com -o ou -r)
         JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
+        semanticsResult = ollirGen.optimize(semanticsResult);
+        OllirResult ollirResult = ollirGen.optimize(ollirGen.toOllir(semanticsResult));
         TestUtils.noErrors(ollirResult.getReports());
 
         // Print OLLIR code
@@ -58,6 +60,14 @@ public class Launcher {
 
         // Print Jasmin code
         //System.out.println(jasminResult.getJasminCode());
+
+        // Bytecode metrics per method (-m), including the executed instructions (-m=run)
+        if (CompilerConfig.getMetrics(config)) {
+            var metrics = CompilerConfig.getMetricsRun(config)
+                    ? BytecodeMetrics.ofRun(jasminResult)
+                    : BytecodeMetrics.of(jasminResult);
+            System.out.println("Bytecode metrics:\n" + metrics);
+        }
     }
 
 }
@@ -21,6 +21,21 @@ public class IncompatibleType extends AnalysisVisitor {
         addVisit(Kind.ASSIGN_STMT, this::visitAssignStmt);
         addVisit(Kind.IF_STMT, this::visitIfStmt);
         addVisit(Kind.WHILE_STMT, this::visitWhileStmt);
+        addVisit(Kind.CONST_DECL, this::visitConstDecl);
+    }
+
+    private Void visitConstDecl(JmmNode constDecl, SymbolTable table) {
+        Type declaredType = TypeUtils.convertType(constDecl.getChild(0));
+        String value = constDecl.get("value");
+        String valueType = value.equals("true") || value.equals("false") ? "boolean" : "int";
+
+        // O valor de um campo const é sempre um literal int ou boolean
+        if (declaredType.isArray() || !declaredType.getName().equals(valueType)) {
+            addTypeError(constDecl, String.format("Cannot initialize const field '%s' of type %s%s with a %s.",
+                    constDecl.get("name"), declaredType.getName(), declaredType.isArray() ? "[]" : "", valueType));
+        }
+
+        return null;
     }
 
     private Void visitBinaryExpr(JmmNode expr, SymbolTable table) {
@@ -103,6 +118,12 @@ public class IncompatibleType extends AnalysisVisitor {
             return null;
         }
 
+        if (isConstField(assign.getChild(0), jmmTable)) {
+            addTypeError(assign, String.format("Cannot assign a value to const field '%s'.",
+                    assign.getChild(0).get("name")));
+            return null;
+        }
+
         // Check array literal assignments
         if (rightExpr.getKind().equals(Kind.ARRAY_EXPR.toString())) {
             if (!varType.isArray()) {
@@ -182,6 +203,21 @@ public class IncompatibleType extends AnalysisVisitor {
         return table.getImports().contains(source.getName());
     }
 
+    // A variável é um campo const que não está escondido por um parâmetro ou variável local do método
+    private boolean isConstField(JmmNode target, JmmSymbolTable table) {
+        if (!target.getKind().equals(Kind.VAR_REF_EXPR.toString()) || !table.isConstant(target.get("name"))) {
+            return false;
+        }
+
+        String name = target.get("name");
+        String method = target.getAncestor(Kind.METHOD_DECL).map(node -> node.get("name")).orElse("");
+        var locals = table.getLocalVariables(method);
+        var params = table.getParameters(method);
+
+        return (locals == null || locals.stream().noneMatch(local -> local.getName().equals(name)))
+                && (params == null || params.stream().noneMatch(param -> param.getName().equals(name)));
+    }
+
     private boolean isPrimitive(String name) {
         return name.equals("int") || name.equals("boolean");
     }
@@ -108,17 +108,8 @@ public class UndeclaredMethod extends AnalysisVisitor {
         String methodName = methodRef.get("name");
 
         if (table.getMethods().contains(methodName)) {
-            // Apenas os argumentos do método, não todos os nós filhos
-            List<JmmNode> args = new ArrayList<>();
-
-            // Verificar se existem argumentos no nó
-            for (JmmNode child : methodRef.getChildren()) {
-                if (child.getKind().equals("Argument") ||
-                        child.getKind().equals("ExprStmt") ||
-                        !child.hasAttribute("name")) {
-                    args.add(child);
-                }
-            }
+            // Os filhos de name(...) são exatamente os argumentos, incluindo variáveis
+            List<JmmNode> args = methodRef.getChildren();
 
             List<Symbol> params = table.getParameters(methodName);
 
@@ -164,6 +155,12 @@ public class UndeclaredMethod extends AnalysisVisitor {
             return false;
         }
 
+        // An array can be passed in place of the variable arguments
+        if (isVarargs && args.size() == params.size()
+                && typesAreCompatible(lastParam.getType(), TypeUtils.getExprType(args.getLast(), table), table)) {
+            return true;
+        }
+
         // Check varargs arguments
         if (isVarargs) {
             Type varargElementType = new Type(lastParam.getType().getName(), false);
@@ -267,7 +264,7 @@ public class UndeclaredMethod extends AnalysisVisitor {
         if (objectNode.getKind().equals("ThisExpr")) {
             String methodName = methodNode.get("name");
             if (table.getMethods().contains(methodName)) {
-                List<JmmNode> args = methodCall.getChildren().subList(0, methodCall.getNumChildren());
+                List<JmmNode> args = methodNode.getChildren();
                 List<Symbol> params = table.getParameters(methodName);
                 if (!areArgumentsCompatible(args, params, (JmmSymbolTable) table)) {
                     addTypeError(methodCall, "Incompatible arguments for method '" + methodName + "'.");
@@ -17,6 +17,7 @@ public enum Kind {
     PROGRAM,
     CLASS_DECL,
     VAR_DECL,
+    CONST_DECL,
     TYPE,
     METHOD_DECL,
     PARAM,
@@ -41,7 +42,10 @@ public enum Kind {
     NEW_ARRAY_EXPR,
     ARRAY_LENGTH_EXPR,
     THIS_EXPR,
-    EXPR_EXPR
+    EXPR_EXPR,
+    NOT_EXPR,
+    EQUALITY,
+    BLOCK_STMT
     ;
 
 
@@ -5,6 +5,8 @@ import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
 
+import java.util.List;
+
 /**
  * Utility methods regarding types.
  */
@@ -33,10 +35,60 @@ public class TypeUtils {
         return new Type("String", false);
     }
 
+    /**
+     * Type of an array with the given number of dimensions. The elements of an array with more than one dimension are
+     * arrays too, so {@code int[][]} is an array whose elements are {@code int[]}, and its name is {@code int[]}.
+     */
+    public static Type newArrayType(String elementName, int dimensions) {
+        return new Type(elementName + "[]".repeat(dimensions - 1), true);
+    }
+
+    /**
+     * Type of an array whose elements have the given type.
+     */
+    public static Type newArrayType(Type elementType) {
+        return new Type(elementType.isArray() ? elementType.getName() + "[]" : elementType.getName(), true);
+    }
+
+    /**
+     * Type of the elements of an array type (an array type itself if the array has more than one dimension).
+     */
+    public static Type getElementType(Type arrayType) {
+        String name = arrayType.getName();
+        if (name.endsWith("[]")) {
+            return new Type(name.substring(0, name.length() - 2), true);
+        }
+
+        return new Type(name, false);
+    }
+
+    /**
+     * Number of dimensions of a type, 0 if it is not an array.
+     */
+    public static int getDimensions(Type type) {
+        if (!type.isArray()) {
+            return 0;
+        }
+
+        return 1 + (type.getName().length() - getBaseName(type).length()) / 2;
+    }
+
+    /**
+     * Name of the type without dimensions, e.g. {@code int} for {@code int[][]}.
+     */
+    public static String getBaseName(Type type) {
+        int dims = type.getName().indexOf("[]");
+        return dims < 0 ? type.getName() : type.getName().substring(0, dims);
+    }
+
     public static Type convertType(JmmNode typeNode) {
         var name = typeNode.get("name");
-        var isArray = typeNode.getKind().equals("ArrayType");
-        return new Type(name, isArray);
+        if (typeNode.getKind().equals("ArrayType")) {
+            int dimensions = typeNode.hasAttribute("dims") ? ((List<?>) typeNode.getObject("dims")).size() : 1;
+            return newArrayType(name, Math.max(dimensions, 1));
+        }
+
+        return new Type(name, false);
     }
     /**
      * Gets the {@link Type} of an arbitrary expression.
@@ -54,12 +106,17 @@ public class TypeUtils {
         String kind = expr.getKind();
 
         return switch (kind) {
-            case "IntegerLiteral", "ArrayAccessExpr", "ArrayLengthExpr", "MethodLength" -> new Type("int", false);
+            case "IntegerLiteral", "ArrayLengthExpr", "MethodLength" -> new Type("int", false);
+            case "ArrayAccessExpr" -> getElementType(expr.getChild(0), table);
             case "BooleanLiteral", "NotExpr", "Comparison", "Equality", "Logical" -> new Type("boolean", false);
             case "StringLiteral" -> new Type("String", false);
             case "VarRefExpr" -> getVarType(expr, table);
             case "BinaryExpr" -> getBinaryExprType(expr, table);
-            case "NewArrayExpr", "ArrayExpr" -> new Type("int", true);
+            case "NewArrayExpr" -> newArrayType(expr.hasAttribute("name") ? expr.get("name") : "int",
+                    expr.getNumChildren());
+            case "ArrayExpr" -> expr.getNumChildren() > 0
+                    ? newArrayType(getExprType(expr.getChild(0), table))
+                    : new Type("int", true);
             case "NewClassExpr" -> new Type(expr.get("name"), false);
             case "MethodCall" -> getMethodCallType(expr, table);
             case "MethodRefExpr" -> getMethodRefType(expr, table);
@@ -69,13 +126,23 @@ public class TypeUtils {
         };
     }
 
+    // Tipo dos elementos de um array (int quando não se sabe, como antes de haver arrays de outros tipos)
+    private static Type getElementType(JmmNode arrayExpr, JmmSymbolTable table) {
+        Type arrayType = getExprType(arrayExpr, table);
+        if (arrayType == null || !arrayType.isArray() || arrayType.getName().equals("unknown")) {
+            return newIntType();
+        }
+
+        return getElementType(arrayType);
+    }
+
     public static Type getVarType(JmmNode varRef, JmmSymbolTable table) {
         if (varRef.getKind().equals("ArrayAccessExpr")) {
             JmmNode arrayExpr = varRef.getChildren().get(0);
             Type arrayType = getVarType(arrayExpr, table);
             // Verificar se é realmente um array
             if (arrayType.isArray()) {
-                return new Type(arrayType.getName(), false);
+                return getElementType(arrayType);
             } else {
                 return null;
             }
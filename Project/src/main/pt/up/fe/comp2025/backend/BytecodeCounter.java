@@ -0,0 +1,174 @@
+package pt.up.fe.comp2025.backend;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts the bytecode instructions executed by a program compiled to Jasmin.
+ * <p>
+ * The Jasmin code is instrumented so that each basic block starts by adding its number of instructions to a static
+ * counter of its method. Only the instructions of the generated class are counted, not the ones of {@code libs-jmm}
+ * or of the JDK, and the instrumentation itself is left out of the count.
+ */
+public class BytecodeCounter {
+
+    /**
+     * Prefix of the static fields that count executed instructions, followed by the index of the method.
+     */
+    public static final String COUNTER_PREFIX = "executedBytecodes$";
+
+    // O incremento do contador usa dois longs na pilha
+    private static final int COUNTER_STACK = 4;
+
+    // Tamanho da pilha que o Jasmin usa nos métodos sem .limit stack
+    private static final int DEFAULT_STACK = 1;
+
+    private static final String TAB = "   ";
+
+    // Instruções depois das quais o bloco básico acaba
+    private static final Set<String> BLOCK_ENDS = Set.of("goto", "goto_w", "return", "ireturn", "areturn", "athrow",
+            "tableswitch", "lookupswitch");
+
+    private BytecodeCounter() {
+    }
+
+    /**
+     * Runs the main method of the class and returns the number of bytecode instructions it executed.
+     */
+    public static long count(String jasminCode, String... args) {
+        return countPerMethod(jasminCode, args).values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Runs the main method of the class and returns the number of bytecode instructions executed in each method,
+     * by name and descriptor (e.g. {@code fib(I)I}), in the order of the class.
+     */
+    public static Map<String, Long> countPerMethod(String jasminCode, String... args) {
+        List<String> methods = getMethods(jasminCode);
+        var mainClass = new JasminClassLoader().define(instrument(jasminCode));
+        JasminClassLoader.runMain(mainClass, args);
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < methods.size(); i++) {
+                var counter = mainClass.getDeclaredField(COUNTER_PREFIX + i);
+                counter.setAccessible(true);
+                counts.merge(methods.get(i), counter.getLong(null), Long::sum);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not read the bytecode counters of " + mainClass.getName(), e);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Name and descriptor of each method of the Jasmin code, in the order they are declared.
+     */
+    public static List<String> getMethods(String jasminCode) {
+        List<String> methods = new ArrayList<>();
+        for (String line : jasminCode.split("\n")) {
+            String trimmed = line.strip();
+            if (trimmed.startsWith(".method")) {
+                methods.add(trimmed.substring(trimmed.lastIndexOf(' ') + 1));
+            }
+        }
+
+        return methods;
+    }
+
+    /**
+     * Jasmin code of the same class, with a static field per method ({@link #COUNTER_PREFIX} followed by the index of
+     * the method) that counts the instructions executed in it.
+     */
+    public static String instrument(String jasminCode) {
+        int numMethods = getMethods(jasminCode).size();
+        String className = null;
+        var code = new StringBuilder(jasminCode.length() * 2);
+
+        // Instruções e comentários do bloco básico atual, escritos só quando o bloco acaba
+        List<String> block = new ArrayList<>();
+        int blockInstructions = 0;
+        boolean inMethod = false;
+        boolean hasStackLimit = false;
+        int methodStart = 0;
+        int methodIndex = -1;
+        String counter = null;
+
+        for (String line : jasminCode.split("\n")) {
+            String trimmed = line.strip();
+            String first = trimmed.isEmpty() ? "" : trimmed.split("\\s+")[0];
+
+            if (!inMethod) {
+                code.append(line).append('\n');
+
+                if (first.equals(".class")) {
+                    className = trimmed.substring(trimmed.lastIndexOf(' ') + 1);
+                } else if (first.equals(".super")) {
+                    // O Jasmin só aceita campos antes dos métodos
+                    for (int i = 0; i < numMethods; i++) {
+                        code.append(".field public static '").append(COUNTER_PREFIX).append(i).append("' J\n");
+                    }
+                } else if (first.equals(".method")) {
+                    inMethod = true;
+                    hasStackLimit = false;
+                    methodStart = code.length();
+                    methodIndex++;
+                    counter = className + "/" + COUNTER_PREFIX + methodIndex + " J";
+                }
+                continue;
+            }
+
+            if (first.equals(".end")) {
+                flush(code, block, blockInstructions, counter);
+                blockInstructions = 0;
+                if (!hasStackLimit) {
+                    code.insert(methodStart, TAB + ".limit stack " + (DEFAULT_STACK + COUNTER_STACK) + "\n");
+                }
+                code.append(line).append('\n');
+                inMethod = false;
+            } else if (first.equals(".limit") && trimmed.split("\\s+")[1].equals("stack")) {
+                int stack = Integer.parseInt(trimmed.split("\\s+")[2]);
+                code.append(TAB).append(".limit stack ").append(stack + COUNTER_STACK).append('\n');
+                hasStackLimit = true;
+            } else if (first.startsWith(".")) {
+                code.append(line).append('\n');
+            } else if (trimmed.endsWith(":")) {
+                // Um label começa um novo bloco, porque pode ser o destino de um salto
+                flush(code, block, blockInstructions, counter);
+                blockInstructions = 0;
+                code.append(line).append('\n');
+            } else {
+                block.add(line);
+
+                if (!first.isEmpty() && !first.startsWith(";")) {
+                    blockInstructions++;
+
+                    if (BLOCK_ENDS.contains(first) || first.startsWith("if")) {
+                        flush(code, block, blockInstructions, counter);
+                        blockInstructions = 0;
+                    }
+                }
+            }
+        }
+
+        return code.toString();
+    }
+
+    private static void flush(StringBuilder code, List<String> block, int instructions, String counter) {
+        if (instructions > 0) {
+            code.append(TAB).append("getstatic ").append(counter).append('\n');
+            code.append(TAB).append("ldc2_w ").append(instructions).append('\n');
+            code.append(TAB).append("ladd").append('\n');
+            code.append(TAB).append("putstatic ").append(counter).append('\n');
+        }
+
+        for (String line : block) {
+            code.append(line).append('\n');
+        }
+        block.clear();
+    }
+}
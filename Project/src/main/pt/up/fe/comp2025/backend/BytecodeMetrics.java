@@ -0,0 +1,245 @@
+package pt.up.fe.comp2025.backend;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Size and instruction mix of each method of a class compiled to Jasmin and, when the program is run, the number of
+ * instructions executed in each method.
+ * <p>
+ * The sizes, {@code max_stack} and {@code max_locals} are read from the assembled class file, so they are the ones the
+ * JVM sees (e.g. after the assembler adds {@code wide}). The instruction mix counts the mnemonics of the Jasmin code.
+ */
+public class BytecodeMetrics {
+
+    /**
+     * Executed instructions of a method whose program was not run.
+     */
+    public static final long NOT_RUN = -1;
+
+    /**
+     * Metrics of one method. The key is the name followed by the descriptor, e.g. {@code fib(I)I}.
+     */
+    public record MethodMetrics(String key, int codeSize, int instructions, int maxStack, int maxLocals,
+                                Map<String, Integer> instructionMix, long executedInstructions) {
+
+        public String name() {
+            return key.substring(0, key.indexOf('('));
+        }
+
+        /**
+         * Number of instructions with the given mnemonic.
+         */
+        public int count(String mnemonic) {
+            return instructionMix.getOrDefault(mnemonic, 0);
+        }
+    }
+
+    // Tamanho do código, max_stack e max_locals de um método no ficheiro .class
+    private record CodeAttribute(int codeSize, int maxStack, int maxLocals) {
+    }
+
+    private final Map<String, MethodMetrics> methods;
+
+    private BytecodeMetrics(Map<String, MethodMetrics> methods) {
+        this.methods = methods;
+    }
+
+    /**
+     * Static metrics of the compiled class, without running it.
+     */
+    public static BytecodeMetrics of(JasminResult jasminResult) {
+        return of(jasminResult.getJasminCode(), Map.of());
+    }
+
+    /**
+     * Metrics of the compiled class, including the instructions executed by each method when main runs with the given
+     * arguments. The program is run in this JVM, with an instrumented copy of the class (see {@link BytecodeCounter}).
+     */
+    public static BytecodeMetrics ofRun(JasminResult jasminResult, String... args) {
+        String jasminCode = jasminResult.getJasminCode();
+        return of(jasminCode, BytecodeCounter.countPerMethod(jasminCode, args));
+    }
+
+    private static BytecodeMetrics of(String jasminCode, Map<String, Long> executed) {
+        Map<String, CodeAttribute> codeAttributes = readCodeAttributes(JasminClassLoader.assemble(jasminCode));
+        Map<String, Map<String, Integer>> mixes = getInstructionMixes(jasminCode);
+
+        Map<String, MethodMetrics> methods = new LinkedHashMap<>();
+        for (var entry : mixes.entrySet()) {
+            String key = entry.getKey();
+            // Os métodos abstratos não têm atributo Code
+            var code = codeAttributes.getOrDefault(key, new CodeAttribute(0, 0, 0));
+            int instructions = entry.getValue().values().stream().mapToInt(Integer::intValue).sum();
+
+            methods.put(key, new MethodMetrics(key, code.codeSize(), instructions, code.maxStack(), code.maxLocals(),
+                    entry.getValue(), executed.getOrDefault(key, NOT_RUN)));
+        }
+
+        return new BytecodeMetrics(methods);
+    }
+
+    public Collection<MethodMetrics> getMethods() {
+        return methods.values();
+    }
+
+    /**
+     * Metrics of the method with the given name, or of the given name and descriptor (e.g. {@code fib(I)I}) when the
+     * name is overloaded.
+     */
+    public MethodMetrics getMethod(String nameOrKey) {
+        var method = methods.get(nameOrKey);
+        if (method != null) {
+            return method;
+        }
+
+        return methods.values().stream()
+                .filter(metrics -> metrics.name().equals(nameOrKey))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Could not find method '" + nameOrKey + "'"));
+    }
+
+    public int getTotalCodeSize() {
+        return methods.values().stream().mapToInt(MethodMetrics::codeSize).sum();
+    }
+
+    /**
+     * Instructions executed in all methods, or {@link #NOT_RUN} if the program was not run.
+     */
+    public long getTotalExecutedInstructions() {
+        if (methods.values().stream().anyMatch(method -> method.executedInstructions() == NOT_RUN)) {
+            return NOT_RUN;
+        }
+
+        return methods.values().stream().mapToLong(MethodMetrics::executedInstructions).sum();
+    }
+
+    /**
+     * One line per method, followed by its instruction mix from the most to the least used instruction.
+     */
+    @Override
+    public String toString() {
+        var table = new StringBuilder();
+        table.append(String.format("%-32s %6s %6s %6s %6s %12s%n", "method", "bytes", "instr", "stack", "locals",
+                "executed"));
+
+        for (var method : methods.values()) {
+            String executed = method.executedInstructions() == NOT_RUN ? "-"
+                    : String.valueOf(method.executedInstructions());
+            table.append(String.format("%-32s %6d %6d %6d %6d %12s%n", method.key(), method.codeSize(),
+                    method.instructions(), method.maxStack(), method.maxLocals(), executed));
+
+            var mix = new ArrayList<>(method.instructionMix().entrySet());
+            mix.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            table.append("    ").append(String.join(" ", mix.stream()
+                    .map(entry -> entry.getKey() + "=" + entry.getValue())
+                    .toList())).append('\n');
+        }
+
+        table.append(String.format("%-32s %6d", "total", getTotalCodeSize()));
+        long executed = getTotalExecutedInstructions();
+        if (executed != NOT_RUN) {
+            table.append(String.format(" %6s %6s %6s %12d", "", "", "", executed));
+        }
+
+        return table.append('\n').toString();
+    }
+
+    // Número de vezes que cada instrução aparece em cada método, pela ordem do código
+    private static Map<String, Map<String, Integer>> getInstructionMixes(String jasminCode) {
+        Map<String, Map<String, Integer>> mixes = new LinkedHashMap<>();
+        Map<String, Integer> current = null;
+
+        for (String line : jasminCode.split("\n")) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith(";") || trimmed.endsWith(":")) {
+                continue;
+            }
+
+            if (trimmed.startsWith(".method")) {
+                current = mixes.computeIfAbsent(trimmed.substring(trimmed.lastIndexOf(' ') + 1),
+                        key -> new TreeMap<>());
+            } else if (trimmed.startsWith(".end method")) {
+                current = null;
+            } else if (current != null && !trimmed.startsWith(".")) {
+                current.merge(trimmed.split("\\s+")[0], 1, Integer::sum);
+            }
+        }
+
+        return mixes;
+    }
+
+    // Lê os atributos Code dos métodos de um ficheiro .class (JVMS, capítulo 4)
+    private static Map<String, CodeAttribute> readCodeAttributes(byte[] classFile) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(classFile))) {
+            in.skipBytes(8); // magic, minor_version, major_version
+
+            int constantPoolCount = in.readUnsignedShort();
+            String[] utf8 = new String[constantPoolCount];
+            for (int i = 1; i < constantPoolCount; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1 -> utf8[i] = in.readUTF();
+                    case 7, 8, 16, 19, 20 -> in.skipBytes(2);
+                    case 15 -> in.skipBytes(3);
+                    case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipBytes(4);
+                    case 5, 6 -> {
+                        // Os longs e doubles ocupam duas entradas
+                        in.skipBytes(8);
+                        i++;
+                    }
+                    default -> throw new RuntimeException("Unknown constant pool tag " + tag);
+                }
+            }
+
+            in.skipBytes(6); // access_flags, this_class, super_class
+            in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+
+            int fieldsCount = in.readUnsignedShort();
+            for (int i = 0; i < fieldsCount; i++) {
+                in.skipBytes(6);
+                skipAttributes(in);
+            }
+
+            Map<String, CodeAttribute> methods = new HashMap<>();
+            int methodsCount = in.readUnsignedShort();
+            for (int i = 0; i < methodsCount; i++) {
+                in.skipBytes(2);
+                String key = utf8[in.readUnsignedShort()] + utf8[in.readUnsignedShort()];
+
+                int attributesCount = in.readUnsignedShort();
+                for (int j = 0; j < attributesCount; j++) {
+                    String name = utf8[in.readUnsignedShort()];
+                    int length = in.readInt();
+
+                    if (name.equals("Code")) {
+                        int maxStack = in.readUnsignedShort();
+                        int maxLocals = in.readUnsignedShort();
+                        int codeSize = in.readInt();
+                        methods.put(key, new CodeAttribute(codeSize, maxStack, maxLocals));
+                        in.skipBytes(length - 8);
+                    } else {
+                        in.skipBytes(length);
+                    }
+                }
+            }
+
+            return methods;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the assembled class file", e);
+        }
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributesCount = in.readUnsignedShort();
+        for (int i = 0; i < attributesCount; i++) {
+            in.skipBytes(2);
+            in.skipBytes(in.readInt());
+        }
+    }
+}
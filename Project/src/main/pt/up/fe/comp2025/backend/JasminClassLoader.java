@@ -0,0 +1,101 @@
+package pt.up.fe.comp2025.backend;
+
+import jasmin.ClassFile;
+import pt.up.fe.comp.TestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Loads classes assembled from Jasmin code in memory, together with the helper classes of {@code libs-jmm}
+ * ({@code io}, {@code BoardBase}, {@code Quicksort}, ...), without writing class files or starting a JVM.
+ * <p>
+ * The helper classes are loaded by this loader, and not by the one of the compiler, because generated code calls
+ * their package-private methods and both have to be in the same runtime package. Each instance is isolated from the
+ * others, so the static state of one program does not leak into the next.
+ */
+public class JasminClassLoader extends URLClassLoader {
+
+    public JasminClassLoader() {
+        super(new URL[]{getLibsUrl()}, ClassLoader.getPlatformClassLoader());
+    }
+
+    private static URL getLibsUrl() {
+        try {
+            return new File(TestUtils.getLibsClasspath()).toURI().toURL();
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("Could not find the libs-jmm classes", e);
+        }
+    }
+
+    /**
+     * Assembles Jasmin code into the bytes of a class file.
+     */
+    public static byte[] assemble(String jasminCode) {
+        return assemble(jasminCode, new ClassFile());
+    }
+
+    private static byte[] assemble(String jasminCode, ClassFile classFile) {
+        try {
+            classFile.readJasmin(new StringReader(jasminCode), "jasmin", true);
+
+            if (classFile.errorCount() > 0) {
+                throw new RuntimeException("Found " + classFile.errorCount() + " errors while assembling Jasmin code:\n"
+                        + jasminCode);
+            }
+
+            var bytes = new ByteArrayOutputStream();
+            classFile.write(bytes);
+            return bytes.toByteArray();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Exception while assembling Jasmin code: " + e.getMessage() + "\n" + jasminCode, e);
+        }
+    }
+
+    /**
+     * Assembles the Jasmin code of a class and defines it in this loader.
+     */
+    public Class<?> define(String jasminCode) {
+        var classFile = new ClassFile();
+        byte[] bytes = assemble(jasminCode, classFile);
+
+        return defineClass(classFile.getClassName().replace('/', '.'), bytes, 0, bytes.length);
+    }
+
+    /**
+     * Calls the main method of the class. Exceptions thrown by the program are rethrown as they are when unchecked.
+     */
+    public static void runMain(Class<?> mainClass, String... args) {
+        Method main;
+        try {
+            main = mainClass.getMethod("main", String[].class);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Class " + mainClass.getName() + " has no main method", e);
+        }
+
+        // As classes geradas não são públicas, mas a JVM corre o main delas na mesma
+        main.setAccessible(true);
+
+        try {
+            main.invoke(null, (Object) args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Main method of " + mainClass.getName() + " is not accessible", e);
+        }
+    }
+}
@@ -2,29 +2,29 @@ package pt.up.fe.comp2025.backend;
 
 import org.specs.comp.ollir.*;
 import org.specs.comp.ollir.inst.*;
+import org.specs.comp.ollir.type.ArrayType;
+import org.specs.comp.ollir.type.ClassKind;
+import org.specs.comp.ollir.type.ClassType;
 import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.specs.util.classmap.FunctionClassMap;
+import pt.up.fe.specs.util.classmap.BiConsumerClassMap;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
-import pt.up.fe.specs.util.utilities.StringLines;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * Generates Jasmin code from an OllirResult.
  * <p>
- * One JasminGenerator instance per OllirResult.
+ * One JasminGenerator instance per OllirResult. Every generator writes its instructions directly into a
+ * {@link JasminWriter}, so the class is emitted in a single pass.
  */
 public class JasminGenerator {
 
-    private static final String NL = "\n";
-    private static final String TAB = "   ";
-
     private final OllirResult ollirResult;
 
     List<Report> reports;
@@ -33,14 +33,17 @@ public class JasminGenerator {
 
     Method currentMethod;
 
-    Deque<String> currentLabelStack = new ArrayDeque<>();
-    String currentLabel;
+    // Registos e descritores das variáveis do método atual
+    RegisterTable registers;
+
     int currentLabelNum = 0;
-    boolean insideLabelBranch = false;
 
     private final JasminUtils types;
 
-    private final FunctionClassMap<TreeNode, String> generators;
+    private final BiConsumerClassMap<TreeNode, JasminWriter> generators;
+
+    // Campos estáticos da classe, acedidos com getstatic/putstatic
+    private final Set<String> staticFields = new HashSet<>();
 
     public JasminGenerator(OllirResult ollirResult) {
         System.out.println("=============== INICIANDO JASMIN GENERATOR ===============");
@@ -51,10 +54,14 @@ public class JasminGenerator {
         currentMethod = null;
 
         types = new JasminUtils(ollirResult);
-        System.out.println("JasminGenerator: Iniciando gerador de código");
 
-        this.generators = new FunctionClassMap<>();
-        System.out.println("JasminGenerator: Registrando geradores para cada tipo de nó");
+        for (var field : ollirResult.getOllirClass().getFields()) {
+            if (field.isStaticField()) {
+                staticFields.add(field.getFieldName());
+            }
+        }
+
+        this.generators = new BiConsumerClassMap<>();
         generators.put(ClassUnit.class, this::generateClassUnit);
         generators.put(Method.class, this::generateMethod);
         generators.put(AssignInstruction.class, this::generateAssign);
@@ -73,53 +80,28 @@ public class JasminGenerator {
         generators.put(UnaryOpInstruction.class, this::generateUnaryOp);
         generators.put(ArrayLengthInstruction.class, this::generateArrayLength);
         generators.put(ArrayOperand.class, this::generateArrayRef);
+        generators.put(GetFieldInstruction.class, this::generateGetField);
+        generators.put(PutFieldInstruction.class, this::generatePutField);
     }
 
-    private String generateSingleOpCond(SingleOpCondInstruction condInst) {
-        StringBuilder code = new StringBuilder();
-
-        try {
-            // Gerar código para o operando - usar getOperands() diretamente da SingleOpCondInstruction
-            code.append(apply(condInst.getOperands().get(0)));
-
-            SingleOpInstruction inst = condInst.getCondition();
-
-            if (inst.toString().contains("NOTB") ||
-                    (inst.getClass().getSimpleName().equals("UnaryOpInstruction") &&
-                            inst.toString().contains("NOT"))) {
-                code.append("iconst_1").append(NL);
-                code.append("ixor").append(NL);
-            }
-
-            // Usar ifne para testar se não é zero
-            code.append("ifne ").append(condInst.getLabel()).append(NL);
-            currentLabelStack.push(condInst.getLabel());
-
-        } catch (Exception e) {
-            System.out.println("ERRO generateSingleOpCond: " + e.getMessage());
-            e.printStackTrace();
-        }
-
-        return code.toString();
+    private void generateSingleOpCond(SingleOpCondInstruction condInst, JasminWriter out) {
+        // O operando é um booleano, salta se não for zero
+        apply(condInst.getOperands().get(0), out);
+        out.instruction("ifne", condInst.getLabel());
     }
 
-    private String apply(TreeNode node) {
+    private void apply(TreeNode node, JasminWriter out) {
         if (node == null) {
             System.out.println("ERRO apply: O nó é NULL!");
-            return "";
+            return;
         }
 
-        var code = new StringBuilder();
-        System.out.println("DEBUG apply: Processando nó do tipo " + node.getClass().getSimpleName());
-
         try {
-            code.append(generators.apply(node));
+            generators.accept(node, out);
         } catch (Exception e) {
             System.out.println("ERRO apply: Falha ao processar nó " + node.getClass().getSimpleName() + ": " + e.getMessage());
             e.printStackTrace();
         }
-
-        return code.toString();
     }
 
     public List<Report> getReports() {
@@ -129,647 +111,603 @@ public class JasminGenerator {
     public String build() {
         System.out.println("DEBUG build: Iniciando construção do código Jasmin");
 
-        try {
-            // This way, build is idempotent
-            if (code == null) {
-                code = apply(ollirResult.getOllirClass());
-            }
+        // This way, build is idempotent
+        if (code == null) {
+            var builder = new StringBuilder(estimateCodeSize());
+            build(builder);
+            code = builder.toString();
+        }
+
+        System.out.println("DEBUG build: Código Jasmin construído com sucesso");
+        return code;
+    }
 
-            System.out.println("DEBUG build: Código Jasmin construído com sucesso");
+    /**
+     * Writes the Jasmin code of the class directly into the given sink, e.g. a buffered file writer.
+     */
+    public void build(Appendable sink) {
+        try {
+            apply(ollirResult.getOllirClass(), new JasminWriter(sink));
         } catch (Exception e) {
             System.out.println("ERRO build: Falha ao construir código Jasmin: " + e.getMessage());
             e.printStackTrace();
         }
-
-        return code;
     }
 
-    private String generateOpCond(OpCondInstruction opCond) {
-        System.out.println("DEBUG generateOpCond: Processando instrução OpCond");
-        StringBuilder code = new StringBuilder();
-
-        code.append(apply(opCond.getCondition()));
-        code.append("ifne ").append(opCond.getLabel()).append(NL);
-        currentLabelStack.push(opCond.getLabel());
+    // Cerca de 16 caracteres por instrução gerada, com folga para os cabeçalhos
+    private int estimateCodeSize() {
+        int instructions = ollirResult.getOllirClass().getMethods().stream()
+                .mapToInt(method -> method.getInstructions().size())
+                .sum();
 
-        return code.toString();
+        return 512 + instructions * 64;
     }
 
-    private String generateArrayRef(ArrayOperand arrayOp) {
-        StringBuilder code = new StringBuilder();
+    private void generateOpCond(OpCondInstruction opCond, JasminWriter out) {
+        var condition = opCond.getCondition();
 
-        String arrayName = arrayOp.getName();
-        var reg = currentMethod.getVarTable().get(arrayName);
-
-        if (reg.getVirtualReg() <= MAX_DIRECT_REGISTER) {
-            code.append("aload_").append(reg.getVirtualReg()).append(NL);
+        // Comparações saltam diretamente, sem materializar o booleano
+        if (condition instanceof BinaryOpInstruction binaryOp && isComparison(binaryOp.getOperation().getOpType())) {
+            generateCompareJump(binaryOp, opCond.getLabel(), out);
+        } else if (condition instanceof UnaryOpInstruction unaryOp && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            apply(unaryOp.getOperand(), out);
+            out.instruction("ifeq", opCond.getLabel());
         } else {
-            code.append("aload ").append(reg.getVirtualReg()).append(NL);
+            apply(condition, out);
+            out.instruction("ifne", opCond.getLabel());
         }
+    }
+
+    private void generateArrayRef(ArrayOperand arrayOp, JasminWriter out) {
+        out.register("aload", registers.getRegister(arrayOp.getName()));
 
         // Carregar o índice
         for (Element index : arrayOp.getIndexOperands()) {
-            code.append(apply(index));
+            apply(index, out);
         }
+    }
 
-        return code.toString();
+    /**
+     * Prefix of the load and store instructions for the elements of the array: {@code i} for int, {@code b} for
+     * boolean (one byte per element) and {@code a} for references, including the inner arrays of a matrix.
+     */
+    private String getArrayAccessPrefix(ArrayOperand arrayOp) {
+        var slot = registers.get(arrayOp.getName());
+        int indexCount = arrayOp.getIndexOperands().size();
+
+        // Cada índice tira uma dimensão ao descritor do array: [[I com um índice dá [I, com dois dá I
+        String elementDescriptor = slot != null && slot.descriptor().startsWith("[".repeat(indexCount))
+                ? slot.descriptor().substring(indexCount)
+                : types.getConvertedType(arrayOp.getType());
+
+        return switch (elementDescriptor) {
+            case "I" -> "i";
+            case "Z" -> "b";
+            default -> "a";
+        };
     }
 
-    private String generateClassUnit(ClassUnit classUnit) {
+    private void generateClassUnit(ClassUnit classUnit, JasminWriter out) {
         System.out.println("DEBUG generateClassUnit: Gerando código para a classe " + classUnit.getClassName());
-        var code = new StringBuilder();
 
         try {
             // generate class name
             var className = ollirResult.getOllirClass().getClassName();
-            code.append(".class ").append(className).append(NL).append(NL);
+            out.append(".class ");
+            if (isFinalClass(className)) {
+                out.append("final ");
+            }
+            out.append(className).newLine().newLine();
 
             // generate super class name (if exists)
             var fullSuperClass = classUnit.getSuperClass() != null ? classUnit.getSuperClass() : "java/lang/Object";
-            code.append(".super ").append(fullSuperClass).append(NL).append(NL);
+            out.append(".super ").append(fullSuperClass).newLine().newLine();
 
             // generate fields
-            System.out.println("DEBUG generateClassUnit: Gerando campos, quantidade: " + classUnit.getFields().size());
             for (var field : classUnit.getFields()) {
-                System.out.println("DEBUG generateClassUnit: Gerando campo " + field.getFieldName());
-                code.append(".field ").append(types.getModifier(field.getFieldAccessModifier()))
-                        .append("'").append(field.getFieldName()).append("'").append(" ")
-                        .append(types.getConvertedType(field.getFieldType())).append(NL);
+                out.append(".field ").append(types.getModifier(field.getFieldAccessModifier()));
+                if (field.isStaticField()) {
+                    out.append("static ");
+                }
+                if (field.isFinalField()) {
+                    out.append("final ");
+                }
+                out.append('\'').append(field.getFieldName()).append('\'').append(' ')
+                        .append(types.getConvertedType(field.getFieldType()));
+                // Valor inicial de um campo final estático, que fica no atributo ConstantValue
+                if (field.isInitialized()) {
+                    out.append(" = ").append(field.getInitialValue());
+                }
+                out.newLine();
             }
 
             // generate a single constructor method
-            var defaultConstructor = """
-                    ;default constructor
-                    .method public <init>()V
-                        aload_0
-                        invokespecial %s/<init>()V
-                        return
-                    .end method
-                    """.formatted(fullSuperClass);
-            code.append(defaultConstructor);
+            out.append(";default constructor").newLine()
+                    .append(".method public <init>()V").newLine()
+                    .append("    aload_0").newLine()
+                    .append("    invokespecial ").append(fullSuperClass).append("/<init>()V").newLine()
+                    .append("    return").newLine()
+                    .append(".end method").newLine();
 
             // generate code for all other methods
-            System.out.println("DEBUG generateClassUnit: Gerando métodos, quantidade: " + ollirResult.getOllirClass().getMethods().size());
             for (var method : ollirResult.getOllirClass().getMethods()) {
-                System.out.println("DEBUG generateClassUnit: Processando método " + method.getMethodName());
-
                 // Ignore constructor, since there is always one constructor
                 // that receives no arguments, and has been already added
                 // previously
                 if (method.isConstructMethod()) {
-                    System.out.println("DEBUG generateClassUnit: Ignorando construtor");
                     continue;
                 }
 
-                code.append(apply(method));
+                apply(method, out);
             }
         } catch (Exception e) {
             System.out.println("ERRO generateClassUnit: " + e.getMessage());
             e.printStackTrace();
         }
+    }
 
-        return code.toString();
+    // O isFinalClass() do ClassUnit devolve a flag de static, por isso o final é procurado no cabeçalho da classe
+    private boolean isFinalClass(String className) {
+        return Pattern.compile("(?m)^\\s*(?:\\w+\\s+)*final\\s+(?:\\w+\\s+)*" + Pattern.quote(className) + "\\b")
+                .matcher(ollirResult.getOllirCode())
+                .find();
     }
 
-    private String generateMethod(Method method) {
+    private void generateMethod(Method method, JasminWriter out) {
         System.out.println("DEBUG generateMethod: Gerando código para método " + method.getMethodName());
         // set method
         currentMethod = method;
-
-        var code = new StringBuilder();
+        registers = new RegisterTable(method, types);
 
         try {
-            // calculate modifier
-            var modifier = types.getModifier(method.getMethodAccessModifier());
-
-            var methodName = method.getMethodName();
-
-            var params = method.getParams().stream()
-                    .map(param -> types.getConvertedType(param.getType()))
-                    .collect(Collectors.joining());
-            var returnType = types.getConvertedType(method.getReturnType());
-
-            code.append("\n.method ").append(modifier);
+            out.newLine().append(".method ").append(types.getModifier(method.getMethodAccessModifier()));
             if (method.isStaticMethod()) {
-                code.append("static ");
+                out.append("static ");
+            }
+            out.append(method.getMethodName()).append('(');
+            for (var param : method.getParams()) {
+                out.append(types.getConvertedType(param.getType()));
             }
-            code.append(methodName);
-            code.append("(").append(params).append(")").append(returnType).append(NL);
+            out.append(')').append(types.getConvertedType(method.getReturnType())).newLine();
 
             // Add limits
-            int maxStack = findLimitStack(method);
-            int maxLocals = findLimitLocals(method);
-            System.out.println("DEBUG generateMethod: Limites - stack: " + maxStack + ", locals: " + maxLocals);
-            code.append(TAB).append(".limit stack ").append(maxStack).append(NL);
-            code.append(TAB).append(".limit locals ").append(maxLocals).append(NL);
-
-            System.out.println("DEBUG generateMethod: Processando instruções do método, quantidade: " + method.getInstructions().size());
-
-            int insideBranchCntr = 0;
-            for (int i = 0; i < method.getInstructions().size(); i++) {
-                var inst = method.getInstructions().get(i);
-
-                // Se estiver dentro de um bloco condicional e já passou uma instrução, insere o endif
-                if (insideLabelBranch && insideBranchCntr == 1) {
-                    code.append(TAB).append(currentLabel).append(":").append(NL);
-                    insideLabelBranch = false;
-                    insideBranchCntr = 0;
+            out.indent().append(".limit stack ").append(findLimitStack(method)).newLine();
+            out.indent().append(".limit locals ").append(findLimitLocals(method)).newLine();
+
+            var instructions = method.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                var inst = instructions.get(i);
+
+                // Labels que apontam para esta instrução
+                for (String label : method.getLabels(inst)) {
+                    out.label(label);
                 }
 
-                // Se for a primeira instrução após o branch, apenas marca o contador
-                if (insideLabelBranch) {
-                    insideBranchCntr++;
+                // tmp := i + c; i := tmp; passa a ser apenas iinc
+                if (isIncrementThroughTemp(method, i)) {
+                    var target = (Operand) ((AssignInstruction) instructions.get(i + 1)).getDest();
+                    var binaryOp = (BinaryOpInstruction) ((AssignInstruction) inst).getRhs();
+                    generateIinc(target.getName(), getIincStep(binaryOp, target.getName()), out);
+                    i++;
+                    continue;
                 }
 
-                var instCode = StringLines.getLines(apply(inst)).stream()
-                        .collect(Collectors.joining(NL + TAB, TAB, NL));
-                code.append(instCode);
-            }
+                apply(inst, out);
 
-            code.append(".end method\n");
-            System.out.println("DEBUG generateMethod: Finalizado método " + method.getMethodName());
+                // Uma chamada usada como instrução deixa o valor de retorno na pilha
+                if (inst instanceof CallInstruction call && !(call instanceof InvokeSpecialInstruction)
+                        && !types.getConvertedType(call.getReturnType()).equals("V")) {
+                    out.instruction("pop");
+                }
+            }
 
+            out.append(".end method").newLine();
         } catch (Exception e) {
             e.printStackTrace();
         }
 
         // unset method
         currentMethod = null;
-        return code.toString();
+        registers = null;
     }
 
-    private String generateAssign(AssignInstruction assign) {
-        System.out.println("DEBUG generateAssign: Processando instrução de atribuição");
-
-        var code = new StringBuilder();
-
+    private void generateAssign(AssignInstruction assign, JasminWriter out) {
         try {
             // Se o destino é um array, precisamos gerar código especial para armazenamento em array
             if (assign.getDest() instanceof ArrayOperand arrayOp) {
                 // Carregar referência do array e índice
-                code.append(generateArrayRef(arrayOp));
+                generateArrayRef(arrayOp, out);
                 // Carregar o valor
-                code.append(apply(assign.getRhs()));
-                // Gerar instrução iastore sempre para arrays de inteiros/booleanos
-                code.append("iastore").append(NL);
-                return code.toString();
+                apply(assign.getRhs(), out);
+                out.instruction(getArrayAccessPrefix(arrayOp) + "astore");
+                return;
             }
 
             // Se o RHS é uma OpCondInstruction, não processar aqui
             if (assign.getRhs() instanceof OpCondInstruction) {
-                return "";
+                return;
             }
 
-            // generate code for loading what's on the right
-            System.out.println("DEBUG generateAssign: Gerando código para o lado direito");
-            String appliedString = apply(assign.getRhs());
-            code.append(appliedString);
+            // store value in the stack in destination
+            var lhs = assign.getDest();
 
-            // exit if iinc optimization applied
-            if (appliedString.contains("iinc")) {
-                return code.toString();
+            // i = i + c, i = c + i e i = i - c são feitos diretamente no registo com iinc
+            if (assign.getRhs() instanceof BinaryOpInstruction binaryOp && lhs instanceof Operand dest
+                    && !(dest instanceof ArrayOperand)) {
+                Integer step = getIincStep(binaryOp, dest.getName());
+                if (step != null) {
+                    generateIinc(dest.getName(), step, out);
+                    return;
+                }
             }
 
-            // store value in the stack in destination
-            var lhs = assign.getDest();
+            // generate code for loading what's on the right
+            apply(assign.getRhs(), out);
 
             if (!(lhs instanceof Operand operand)) {
                 System.out.println("ERRO: LHS não é um Operand: " + lhs.getClass().getName());
                 throw new NotImplementedException(lhs.getClass());
             }
 
-            System.out.println("DEBUG generateAssign: Armazenando valor em " + operand.getName());
-
-            var reg = currentMethod.getVarTable().get(operand.getName());
-            var type = types.getConvertedType(operand.getType());
-            System.out.println("DEBUG generateAssign: Tipo: " + type + ", Registro: " + reg.getVirtualReg());
-
-            boolean isIntegerType = type.equals("I") || type.equals("Z");
-            String storePrefix = isIntegerType ? "istore" : "astore";
-
-            if (reg.getVirtualReg() <= MAX_DIRECT_REGISTER) {
-                code.append(storePrefix).append("_").append(reg.getVirtualReg()).append(NL);
-            } else {
-                code.append(storePrefix).append(" ").append(reg.getVirtualReg()).append(NL);
-            }
+            var slot = registers.get(operand.getName());
+            out.register(slot.store(), slot.register());
         } catch (Exception e) {
             System.out.println("ERRO generateAssign: " + e.getMessage());
             e.printStackTrace();
         }
-
-        return code.toString();
     }
 
-    private String generateSingleOp(SingleOpInstruction singleOp) {
-        System.out.println("DEBUG generateSingleOp: Processando instrução de operação única");
-        StringBuilder code = new StringBuilder();
+    private void generateSingleOp(SingleOpInstruction singleOp, JasminWriter out) {
+        Element operand = singleOp.getSingleOperand();
 
-        try {
-            Element operand = singleOp.getSingleOperand();
+        // Check if the operand is a array operand
+        if (operand instanceof ArrayOperand arrayOp) {
+            // Load array reference and index
+            generateArrayRef(arrayOp, out);
 
-            // Check if the operand is a array operand
-            if (operand instanceof ArrayOperand) {
-                ArrayOperand arrayOp = (ArrayOperand) operand;
+            // iaload, baload ou aaload, conforme o tipo dos elementos
+            out.instruction(getArrayAccessPrefix(arrayOp) + "aload");
+            return;
+        }
 
-                // Load array reference and index
-                code.append(generateArrayRef(arrayOp));
+        apply(operand, out);
+    }
 
-                // Add iaload to read the array element
-                code.append("iaload").append(NL);
-                return code.toString();
-            }
+    private void generateLiteral(LiteralElement literal, JasminWriter out) {
+        String value = literal.getLiteral();
+        String type = types.getConvertedType(literal.getType());
 
-            return apply(operand);
-        } catch (Exception e) {
-            System.out.println("ERRO generateSingleOp: " + e.getMessage());
-            e.printStackTrace();
-            return "";
+        if (type.equals("I")) {
+            // Usar constantes ao invés de valores hardcoded
+            generateIntConstant(Integer.parseInt(value), out);
+        } else if (type.equals("Z")) {
+            // Melhorar comparação de booleanos
+            out.instruction(value.equals("true") || value.equals("1") ? "iconst_1" : "iconst_0");
+        } else {
+            out.instruction("ldc", value);
         }
     }
 
-    private String generateLiteral(LiteralElement literal) {
-        try {
-            String value = literal.getLiteral();
-            String type = literal.getType().toString();
-            System.out.println("DEBUG generateLiteral: Processando literal " + value + " do tipo " + type);
-
-            if (type.equals("INT32")) {
-                int intValue = Integer.parseInt(value);
-                // Usar constantes ao invés de valores hardcoded
-                if (intValue >= -1 && intValue <= 5) {
-                    return "iconst_" + intValue + NL;
-                }
-                if (intValue >= Byte.MIN_VALUE && intValue <= Byte.MAX_VALUE) {
-                    return "bipush " + intValue + NL;
-                }
-                if (intValue >= Short.MIN_VALUE && intValue <= Short.MAX_VALUE) {
-                    return "sipush " + intValue + NL;
-                }
-                return "ldc " + value + NL;
-            } else if (type.equals("BOOLEAN")) {
-                // Melhorar comparação de booleanos
-                return value.equals("true") || value.equals("1") ? "iconst_1" + NL : "iconst_0" + NL;
-            }
+    private void generateOperand(Operand operand, JasminWriter out) {
+        // O parser de OLLIR trata true.bool e false.bool como operandos
+        if (operand.getName().equals("true") || operand.getName().equals("false")) {
+            out.instruction(operand.getName().equals("true") ? "iconst_1" : "iconst_0");
+            return;
+        }
 
-            return "ldc " + value + NL;
-        } catch (Exception e) {
-            System.out.println("ERRO generateLiteral: " + e.getMessage());
-            e.printStackTrace();
-            return "";
+        var slot = registers.get(operand.getName());
+        if (slot == null) {
+            System.out.println("ERRO generateOperand: Registro não encontrado para " + operand.getName());
+            return;
         }
+
+        out.register(slot.load(), slot.register());
     }
 
-    private static final int MAX_DIRECT_REGISTER = 3;
+    // Limites da constante do iinc (com wide)
+    private static final int MIN_IINC_STEP = Short.MIN_VALUE;
+    private static final int MAX_IINC_STEP = Short.MAX_VALUE;
+
+    /**
+     * The constant added to the variable if the operation is {@code var + c}, {@code c + var} or {@code var - c} and
+     * the result fits in an iinc, or null otherwise.
+     */
+    private Integer getIincStep(BinaryOpInstruction binaryOp, String varName) {
+        var opType = binaryOp.getOperation().getOpType();
+        Element left = binaryOp.getLeftOperand();
+        Element right = binaryOp.getRightOperand();
+
+        Integer step = null;
+        if (opType == OperationType.ADD && isOperandNamed(left, varName)) {
+            step = getIntLiteral(right);
+        } else if (opType == OperationType.ADD && isOperandNamed(right, varName)) {
+            step = getIntLiteral(left);
+        } else if (opType == OperationType.SUB && isOperandNamed(left, varName)) {
+            Integer value = getIntLiteral(right);
+            step = value != null ? -value : null;
+        }
 
-    private String generateOperand(Operand operand) {
-        System.out.println("DEBUG generateOperand: Processando operando " + operand.getName());
-        try {
-            var reg = currentMethod.getVarTable().get(operand.getName());
-            if (reg == null) {
-                System.out.println("ERRO generateOperand: Registro não encontrado para " + operand.getName());
-                return "";
-            }
+        return step != null && step >= MIN_IINC_STEP && step <= MAX_IINC_STEP ? step : null;
+    }
 
-            var type = types.getConvertedType(operand.getType());
-            System.out.println("DEBUG generateOperand: Tipo: " + type + ", Registro: " + reg.getVirtualReg());
+    private static boolean isOperandNamed(Element element, String name) {
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand) && operand.getName().equals(name);
+    }
 
-            boolean isIntegerType = type.equals("I") || type.equals("Z");
-            String loadPrefix = isIntegerType ? "iload" : "aload";
+    private Integer getIntLiteral(Element element) {
+        if (!(element instanceof LiteralElement literal) || !types.isIntLike(literal.getType())) {
+            return null;
+        }
 
-            if (reg.getVirtualReg() <= MAX_DIRECT_REGISTER) {
-                return loadPrefix + "_" + reg.getVirtualReg() + NL;
-            } else {
-                return loadPrefix + " " + reg.getVirtualReg() + NL;
-            }
-        } catch (Exception e) {
-            System.out.println("ERRO generateOperand: " + e.getMessage());
-            e.printStackTrace();
-            return "";
+        try {
+            return Integer.parseInt(literal.getLiteral());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void generateIinc(String varName, int step, JasminWriter out) {
+        // Somar 0 não muda a variável
+        if (step != 0) {
+            out.instruction("iinc", registers.getRegister(varName), step);
         }
     }
 
-    private static final String LITERAL_ONE = "1";
+    private boolean isIncrementThroughTemp(Method method, int index) {
+        var instructions = method.getInstructions();
+        if (index + 1 >= instructions.size()) {
+            return false;
+        }
+
+        if (!(instructions.get(index) instanceof AssignInstruction inc)
+                || !(inc.getDest() instanceof Operand temp) || temp instanceof ArrayOperand
+                || !(inc.getRhs() instanceof BinaryOpInstruction)) {
+            return false;
+        }
+
+        var next = instructions.get(index + 1);
+        if (!method.getLabels(next).isEmpty()
+                || !(next instanceof AssignInstruction copy) || !(copy.getDest() instanceof Operand var)
+                || var instanceof ArrayOperand
+                || !(copy.getRhs() instanceof SingleOpInstruction single)
+                || !isOperandNamed(single.getSingleOperand(), temp.getName())
+                || getIincStep((BinaryOpInstruction) inc.getRhs(), var.getName()) == null) {
+            return false;
+        }
 
-    private boolean canOptimizeWithIinc(BinaryOpInstruction binaryOp) {
-        return binaryOp.getOperation().getOpType() == OperationType.ADD &&
-                binaryOp.getRightOperand() instanceof LiteralElement literal &&
-                LITERAL_ONE.equals(literal.getLiteral()) &&
-                binaryOp.getLeftOperand() instanceof Operand;
+        // O temporário não pode ser lido em mais nenhum sítio
+        return registers.getUseCount(temp.getName()) == 2;
     }
 
-    private String generateIincOptimization(BinaryOpInstruction binaryOp) {
-        Operand leftOp = (Operand) binaryOp.getLeftOperand();
-        var reg = currentMethod.getVarTable().get(leftOp.getName());
-        return "iinc " + reg.getVirtualReg() + " 1" + NL;
+    // Expoente k se o elemento for o literal 2^k (com k >= 1), ou -1 caso contrário
+    private int getPowerOfTwoShift(Element element) {
+        if (!(element instanceof LiteralElement literal)) {
+            return -1;
+        }
+
+        try {
+            int value = Integer.parseInt(literal.getLiteral());
+            if (value > 1 && Integer.bitCount(value) == 1) {
+                return Integer.numberOfTrailingZeros(value);
+            }
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        return -1;
     }
 
     private boolean isZeroLiteral(Element element) {
         return element instanceof LiteralElement literal && "0".equals(literal.getLiteral());
     }
 
-    private String generateBinaryOp(BinaryOpInstruction binaryOp) {
-        StringBuilder code = new StringBuilder();
+    private void generateBinaryOp(BinaryOpInstruction binaryOp, JasminWriter out) {
+        var opType = binaryOp.getOperation().getOpType();
 
-        // Verificar se é uma adição de constante 1 (caso para otimização iinc)
-        if (canOptimizeWithIinc(binaryOp)) {
-            return generateIincOptimization(binaryOp);
-        }
-
-        boolean isLHSZero = isZeroLiteral(binaryOp.getLeftOperand());
-        boolean isRHSZero = isZeroLiteral(binaryOp.getRightOperand());
+        // Multiplicar por uma potência de 2 é um shift
+        if (opType == OperationType.MUL) {
+            int leftShift = getPowerOfTwoShift(binaryOp.getLeftOperand());
+            int rightShift = getPowerOfTwoShift(binaryOp.getRightOperand());
 
-        var typePrefix = "i";
-        String compareInst = "";
-        boolean isCompInstr = false;
+            if (rightShift > 0 || leftShift > 0) {
+                apply(rightShift > 0 ? binaryOp.getLeftOperand() : binaryOp.getRightOperand(), out);
+                generateIntConstant(rightShift > 0 ? rightShift : leftShift, out);
+                out.instruction("ishl");
+                return;
+            }
+        }
 
-        switch (binaryOp.getOperation().getOpType()) {
+        switch (opType) {
             case ADD, SUB, MUL, DIV, ANDB, ORB -> {
-                code.append(apply(binaryOp.getLeftOperand()));
-                code.append(apply(binaryOp.getRightOperand()));
-                code.append(typePrefix).append(getOperationSuffix(binaryOp.getOperation().getOpType())).append(NL);
-            }
-            case LTH -> {
-                if (isRHSZero) {
-                    code.append(apply(binaryOp.getLeftOperand()));
-                    compareInst = "iflt";
-                } else if (isLHSZero) {
-                    code.append(apply(binaryOp.getRightOperand()));
-                    compareInst = "ifgt";
-                } else {
-                    code.append(apply(binaryOp.getLeftOperand()));
-                    code.append(apply(binaryOp.getRightOperand()));
-                    compareInst = "if_icmplt";
-                }
-                isCompInstr = true;
-            }
-            case LTE -> {
-                if (isRHSZero) {
-                    code.append(apply(binaryOp.getLeftOperand()));
-                    compareInst = "ifle";
-                } else if (isLHSZero) {
-                    code.append(apply(binaryOp.getRightOperand()));
-                    compareInst = "ifge";
-                } else {
-                    code.append(apply(binaryOp.getLeftOperand()));
-                    code.append(apply(binaryOp.getRightOperand()));
-                    compareInst = "if_icmple";
-                }
-                isCompInstr = true;
-            }
-            case GTH -> {
-                if (isRHSZero) {
-                    code.append(apply(binaryOp.getLeftOperand()));
-                    compareInst = "ifgt";
-                } else if (isLHSZero) {
-                    code.append(apply(binaryOp.getRightOperand()));
-                    compareInst = "iflt";
-                } else {
-                    code.append(apply(binaryOp.getLeftOperand()));
-                    code.append(apply(binaryOp.getRightOperand()));
-                    compareInst = "if_icmpgt";
-                }
-                isCompInstr = true;
+                apply(binaryOp.getLeftOperand(), out);
+                apply(binaryOp.getRightOperand(), out);
+                out.instruction(getOperationInstruction(opType));
+            }
+            case LTH, LTE, GTH, GTE, EQ, NEQ -> {
+                // A comparação salta para j_true quando é verdadeira, e o resultado é materializado em 0 ou 1
+                int condNum = currentLabelNum++;
+                generateCompareJump(binaryOp, "j_true_" + condNum, out);
+                out.instruction("iconst_0");
+                out.begin("goto j_end").append(condNum).end();
+                out.append("j_true_").append(condNum).append(':').newLine();
+                out.instruction("iconst_1");
+                out.append("j_end").append(condNum).append(':').newLine();
             }
-            case GTE -> {
-                if (isRHSZero) {
-                    code.append(apply(binaryOp.getLeftOperand()));
-                    compareInst = "ifge";
-                } else if (isLHSZero) {
-                    code.append(apply(binaryOp.getRightOperand()));
-                    compareInst = "ifle";
-                } else {
-                    code.append(apply(binaryOp.getLeftOperand()));
-                    code.append(apply(binaryOp.getRightOperand()));
-                    compareInst = "if_icmpge";
-                }
-                isCompInstr = true;
-            }
-            case EQ -> {
-                code.append(apply(binaryOp.getLeftOperand()));
-                code.append(apply(binaryOp.getRightOperand()));
-                compareInst = "if_icmpeq";
-                isCompInstr = true;
-            }
-            default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
+            default -> throw new NotImplementedException(opType);
         }
+    }
 
-        if (isCompInstr) {
-            int condNum = currentLabelNum++;
-            code.append(compareInst).append(" j_true_").append(condNum).append(NL);
-            code.append(TAB).append("iconst_0").append(NL);
-            code.append(TAB).append("goto j_end").append(condNum).append(NL);
-            code.append("j_true_").append(condNum).append(":").append(NL);
-            code.append(TAB).append("iconst_1").append(NL);
-            code.append("j_end").append(condNum).append(":").append(NL);
+    private void generateIntConstant(int value, JasminWriter out) {
+        if (value == -1) {
+            // -1 tem a sua própria instrução, iconst_m1
+            out.instruction("iconst_m1");
+        } else if (value >= 0 && value <= 5) {
+            out.begin("iconst_").append(value).end();
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            out.instruction("bipush", value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            out.instruction("sipush", value);
+        } else {
+            out.instruction("ldc", value);
         }
+    }
 
-        return code.toString();
+    private static boolean isComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH, LTE, GTH, GTE, EQ, NEQ -> true;
+            default -> false;
+        };
     }
 
-    private String getOperationSuffix(OperationType opType) {
+    /**
+     * Jumps to the label if the comparison is true, using the if&lt;cond&gt; form when comparing with zero.
+     */
+    private void generateCompareJump(BinaryOpInstruction binaryOp, String label, JasminWriter out) {
+        var opType = binaryOp.getOperation().getOpType();
+
+        if (isZeroLiteral(binaryOp.getRightOperand())) {
+            apply(binaryOp.getLeftOperand(), out);
+            out.instruction(getZeroCompareInstruction(opType), label);
+        } else if (isZeroLiteral(binaryOp.getLeftOperand())) {
+            // 0 < x é o mesmo que x > 0
+            apply(binaryOp.getRightOperand(), out);
+            out.instruction(getZeroCompareInstruction(swapComparison(opType)), label);
+        } else {
+            apply(binaryOp.getLeftOperand(), out);
+            apply(binaryOp.getRightOperand(), out);
+            out.instruction(getCompareInstruction(opType), label);
+        }
+    }
+
+    private static String getZeroCompareInstruction(OperationType opType) {
         return switch (opType) {
-            case ADD -> "add";
-            case SUB -> "sub";
-            case MUL -> "mul";
-            case DIV -> "div";
-            case ANDB -> "and";
-            case ORB -> "or";
+            case LTH -> "iflt";
+            case LTE -> "ifle";
+            case GTH -> "ifgt";
+            case GTE -> "ifge";
+            case EQ -> "ifeq";
+            case NEQ -> "ifne";
             default -> throw new NotImplementedException(opType);
         };
     }
 
-    private String generateUnaryOp(UnaryOpInstruction unaryOp) {
-        var code = new StringBuilder();
+    private static String getCompareInstruction(OperationType opType) {
+        return switch (opType) {
+            case LTH -> "if_icmplt";
+            case LTE -> "if_icmple";
+            case GTH -> "if_icmpgt";
+            case GTE -> "if_icmpge";
+            case EQ -> "if_icmpeq";
+            case NEQ -> "if_icmpne";
+            default -> throw new NotImplementedException(opType);
+        };
+    }
 
-        code.append(apply(unaryOp.getOperand()));
+    private static OperationType swapComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTH;
+            case LTE -> OperationType.GTE;
+            case GTH -> OperationType.LTH;
+            case GTE -> OperationType.LTE;
+            default -> opType;
+        };
+    }
+
+    private static String getOperationInstruction(OperationType opType) {
+        return switch (opType) {
+            case ADD -> "iadd";
+            case SUB -> "isub";
+            case MUL -> "imul";
+            case DIV -> "idiv";
+            case ANDB -> "iand";
+            case ORB -> "ior";
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+
+    private void generateUnaryOp(UnaryOpInstruction unaryOp, JasminWriter out) {
+        apply(unaryOp.getOperand(), out);
 
         if (unaryOp.getOperation().getOpType() == OperationType.NOTB) {
-            code.append("iconst_1").append(NL);
-            code.append("ixor").append(NL);
+            out.instruction("iconst_1");
+            out.instruction("ixor");
         } else {
             throw new NotImplementedException("BITWISE Error: " + unaryOp.getOperation().getOpType());
         }
-
-        return code.toString();
     }
 
-    private String generateArrayLength(ArrayLengthInstruction arrayLengthInst) {
-        StringBuilder code = new StringBuilder();
-
-        code.append(apply(arrayLengthInst.getCaller()));
-
-        code.append("arraylength").append(NL);
-
-        return code.toString();
+    private void generateArrayLength(ArrayLengthInstruction arrayLengthInst, JasminWriter out) {
+        apply(arrayLengthInst.getCaller(), out);
+        out.instruction("arraylength");
     }
 
-    private String generateReturn(ReturnInstruction returnInst) {
-        System.out.println("DEBUG generateReturn: Processando instrução de retorno");
-        var code = new StringBuilder();
-
-        try {
-            if (returnInst.hasReturnValue()) {
-                System.out.println("DEBUG generateReturn: Tem valor de retorno");
-                returnInst.getOperand().map(this::apply).ifPresent(code::append);
+    private void generateReturn(ReturnInstruction returnInst, JasminWriter out) {
+        if (!returnInst.hasReturnValue()) {
+            out.instruction("return");
+            return;
+        }
 
-                var type = types.getConvertedType(returnInst.getReturnType());
-                System.out.println("DEBUG generateReturn: Tipo de retorno: " + type);
+        returnInst.getOperand().ifPresent(operand -> apply(operand, out));
 
-                switch (type) {
-                    case "I", "Z" -> code.append("ireturn");
-                    case "V" -> code.append("return");
-                    default -> code.append("areturn");
-                }
-                ;
-            } else {
-                System.out.println("DEBUG generateReturn: Sem valor de retorno");
-                code.append("return");
-            }
-        } catch (Exception e) {
-            System.out.println("ERRO generateReturn: " + e.getMessage());
-            e.printStackTrace();
+        switch (types.getConvertedType(returnInst.getReturnType())) {
+            case "I", "Z" -> out.instruction("ireturn");
+            case "V" -> out.instruction("return");
+            default -> out.instruction("areturn");
         }
-
-        code.append(NL);
-        return code.toString();
     }
 
-    private String generateNew(NewInstruction newInst) {
-        System.out.println("DEBUG generateNew: Processando instrução new");
-        StringBuilder code = new StringBuilder();
-
+    private void generateNew(NewInstruction newInst, JasminWriter out) {
         try {
-            // Para alocação de arrays, precisamos processar apenas o tamanho
-            boolean isArrayAllocation = false;
-
-            // Verificar se é alocação de array olhando o tipo do caller
-            String callerTypeStr = newInst.getCaller().getType().toString();
-            if (callerTypeStr.contains("[]")) {
-                isArrayAllocation = true;
-            }
+            var callerType = newInst.getCaller().getType();
 
-            System.out.println("DEBUG generateNew: É alocação de array? " + isArrayAllocation);
-            System.out.println("DEBUG generateNew: Tipo do caller: " + newInst.getCaller().getType());
+            if (callerType instanceof ArrayType) {
+                // Para arrays, processar apenas o tamanho, o primeiro operando é o marcador "array"
+                for (var argument : newInst.getArguments()) {
+                    apply(argument, out);
+                }
 
-            if (isArrayAllocation) {
-                // Para arrays, processar apenas o operando que representa o tamanho
-                // Pular o primeiro operando se for "array"
-                for (int i = 0; i < newInst.getOperands().size(); i++) {
-                    var operand = newInst.getOperands().get(i);
-                    String opStr = operand.toString();
+                String type = types.getConvertedType(callerType);
 
-                    // Pular operandos que contêm "array." pois são marcadores, não variáveis reais
-                    if (!opStr.contains("array.")) {
-                        System.out.println("DEBUG generateNew: Processando operando de tamanho " + opStr);
-                        code.append(apply(operand));
-                    }
+                // Com mais de um tamanho, todas as dimensões são criadas de uma vez
+                int dimensions = newInst.getArguments().size();
+                if (dimensions > 1) {
+                    out.instruction("multianewarray", type + " " + dimensions);
+                    return;
                 }
 
-                String type = types.getConvertedType(newInst.getCaller().getType());
-                System.out.println("DEBUG generateNew: Tipo convertido: " + type);
-
                 switch (type) {
-                    case "[I" -> code.append("newarray int").append(NL);
-                    case "[Z" -> code.append("newarray boolean").append(NL);
+                    case "[I" -> out.instruction("newarray", "int");
+                    case "[Z" -> out.instruction("newarray", "boolean");
                     default -> {
                         // Para outros tipos de array
                         String elementType = type.substring(1); // Remove o [
                         if (elementType.startsWith("L") && elementType.endsWith(";")) {
                             elementType = elementType.substring(1, elementType.length() - 1);
                         }
-                        code.append("anewarray ").append(elementType).append(NL);
+                        out.instruction("anewarray", elementType);
                     }
                 }
             } else {
                 // Para criação de objetos normais
-                String typeStr = newInst.getCaller().getType().toString();
-                String className = extractNameInParentheses(typeStr);
-                System.out.println("DEBUG generateNew: Criando nova instância de " + className);
-                code.append("new ").append(className).append(NL);
-                //code.append("dup").append(NL);
+                out.instruction("new", ((ClassType) callerType).getName());
             }
         } catch (Exception e) {
             System.out.println("ERRO generateNew: " + e.getMessage());
             e.printStackTrace();
         }
-
-        return code.toString();
     }
 
-    private String generateInvoke(CallInstruction invoke) {
-        System.out.println("DEBUG generateInvoke: Processando chamada de método " + invoke.getClass().getSimpleName());
-        var code = new StringBuilder();
-
+    private void generateInvoke(CallInstruction invoke, JasminWriter out) {
         try {
             // Se for invocação de método não-estático, precisamos carregar a referência ao objeto
             if (!(invoke instanceof InvokeStaticInstruction)) {
-                System.out.println("DEBUG generateInvoke: Carregando referência do objeto");
-                code.append(apply(invoke.getCaller()));
+                apply(invoke.getCaller(), out);
             }
 
-            System.out.println("DEBUG generateInvoke: Número de argumentos: " + invoke.getArguments().size());
             for (var arg : invoke.getArguments()) {
-                System.out.println("DEBUG generateInvoke: Processando argumento " + arg);
-                code.append(apply(arg));
-            }
-
-            String methodFullName = invoke.getMethodName() != null ? invoke.getMethodName().toString() : "null";
-            String classFullName = invoke.getCaller() != null ? invoke.getCaller().toString() : "null";
-            System.out.println("DEBUG generateInvoke: methodFullName=" + methodFullName);
-            System.out.println("DEBUG generateInvoke: classFullName=" + classFullName);
-
-            String methodName;
-            String className;
-
-            // Extrair nome do método
-            if (methodFullName.contains(": ")) {
-                methodFullName = methodFullName.substring(methodFullName.indexOf(": ") + 2);
-            }
-            if (methodFullName.contains("(")) {
-                methodName = methodFullName.substring(0, methodFullName.indexOf("("));
-            } else if (methodFullName.contains(".")) {
-                methodName = methodFullName.substring(0, methodFullName.indexOf("."));
-            } else {
-                methodName = methodFullName;
+                apply(arg, out);
             }
 
-            // Extrair nome da classe
-            if (classFullName.contains("this.")) {
-                // Se é uma referência "this", usar o nome da classe atual
-                className = ollirResult.getOllirClass().getClassName();
-            } else if (classFullName.contains(".")) {
-                className = classFullName.substring(classFullName.lastIndexOf(".") + 1);
-
-                if (className.startsWith("OBJECT")) {
-                    className = extractNameInParentheses(className);
-                } else {
-                    className = classFullName.substring(0, classFullName.lastIndexOf("."));
-                }
-
-                if (className.contains(" ")) {
-                    className = className.substring(className.lastIndexOf(" ") + 1);
-                }
-            } else {
-                className = classFullName;
-            }
-
-            System.out.println("DEBUG generateInvoke: methodName=" + methodName);
-            System.out.println("DEBUG generateInvoke: className=" + className);
-
-            var returnType = types.getConvertedType(invoke.getReturnType());
-            System.out.println("DEBUG generateInvoke: returnType=" + returnType);
-
-            var paramTypes = invoke.getArguments().stream()
-                    .map(op -> {
-                        String type = types.getConvertedType(op.getType());
-                        System.out.println("DEBUG generateInvoke: paramType=" + type);
-                        return type;
-                    })
-                    .collect(Collectors.joining());
-
-            var methodDescriptor = "(" + paramTypes + ")" + returnType;
-            System.out.println("DEBUG generateInvoke: methodDescriptor=" + methodDescriptor);
-
             String invokeType = switch (invoke) {
                 case InvokeSpecialInstruction ignored -> "invokespecial";
                 case InvokeStaticInstruction ignored -> "invokestatic";
@@ -777,30 +715,78 @@ public class JasminGenerator {
                 default -> throw new IllegalArgumentException("Unsupported invoke type: " + invoke.getClass());
             };
 
-            System.out.println("DEBUG generateInvoke: invokeType=" + invokeType);
-            System.out.println("DEBUG generateInvoke: Instrução completa: " + invokeType + " " + className + "/" + methodName + methodDescriptor);
-
-            code.append(invokeType).append(" ").append(className).append("/")
-                    .append(methodName).append(methodDescriptor).append(NL);
-
+            out.begin(invokeType).append(' ').append(getInvokeOwner(invoke.getCaller())).append('/')
+                    .append(getInvokeMethodName(invoke)).append('(');
+            for (var arg : invoke.getArguments()) {
+                out.append(types.getConvertedType(arg.getType()));
+            }
+            out.append(')').append(types.getConvertedType(invoke.getReturnType())).end();
         } catch (Exception e) {
             System.out.println("ERRO em generateInvoke: " + e.getMessage());
             e.printStackTrace();
         }
+    }
+
+    // O nome do método vem como literal, possivelmente entre aspas
+    private static String getInvokeMethodName(CallInstruction invoke) {
+        String name = ((LiteralElement) invoke.getMethodName()).getLiteral();
 
-        return code.toString();
+        if (name.length() > 1 && name.startsWith("\"") && name.endsWith("\"")) {
+            return name.substring(1, name.length() - 1);
+        }
+
+        return name;
     }
 
-    private String generateGoto(GotoInstruction gotoInst) {
-        var code = new StringBuilder();
+    private String getInvokeOwner(Element caller) {
+        if (caller.getType() instanceof ClassType classType) {
+            // this pertence à classe atual, e nas chamadas estáticas o operando é o próprio nome da classe
+            if (classType.getKind() == ClassKind.THIS) {
+                return ollirResult.getOllirClass().getClassName();
+            }
+            if (classType.getKind() == ClassKind.CLASS && caller instanceof Operand operand) {
+                return operand.getName();
+            }
+
+            return classType.getName();
+        }
+
+        return ollirResult.getOllirClass().getClassName();
+    }
+
+    private void generateGoto(GotoInstruction gotoInst, JasminWriter out) {
+        out.instruction("goto", gotoInst.getLabel());
+    }
+
+    // Um campo estático é acedido em OLLIR como os outros (ex: getfield(this, x.i32)), mas sem carregar o objeto
+    private void generateGetField(GetFieldInstruction getField, JasminWriter out) {
+        boolean isStatic = staticFields.contains(getField.getField().getName());
+        if (!isStatic) {
+            apply(getField.getObject(), out);
+        }
+        out.begin(isStatic ? "getstatic" : "getfield").append(' ').append(getFieldOwner(getField.getObject())).append('/')
+                .append(getField.getField().getName()).append(' ')
+                .append(types.getConvertedType(getField.getField().getType())).end();
+    }
 
-        code.append("goto ").append(gotoInst.getLabel()).append(NL);
-        if (!currentLabelStack.isEmpty()) code.append(currentLabelStack.pop()).append(":").append(NL);
+    private void generatePutField(PutFieldInstruction putField, JasminWriter out) {
+        boolean isStatic = staticFields.contains(putField.getField().getName());
+        if (!isStatic) {
+            apply(putField.getObject(), out);
+        }
+        apply(putField.getValue(), out);
+        out.begin(isStatic ? "putstatic" : "putfield").append(' ').append(getFieldOwner(putField.getObject())).append('/')
+                .append(putField.getField().getName()).append(' ')
+                .append(types.getConvertedType(putField.getField().getType())).end();
+    }
 
-        currentLabel = gotoInst.getLabel();
-        insideLabelBranch = true;
+    // Os campos acedidos no código Java-- pertencem sempre à classe atual
+    private String getFieldOwner(Operand object) {
+        if (object.getType() instanceof ClassType classType) {
+            return classType.getName();
+        }
 
-        return code.toString();
+        return ollirResult.getOllirClass().getClassName();
     }
 
     // +++ Auxiliary Methods +++
@@ -840,15 +826,17 @@ public class JasminGenerator {
             }
             return stackUsage;
         } else if (inst instanceof AssignInstruction assign) {
+            // Guardar num array precisa da referência e do índice por baixo do valor
+            int destUsage = assign.getDest() instanceof ArrayOperand ? 2 : 0;
             Instruction rhs = assign.getRhs();
             if (rhs instanceof CallInstruction call) {
                 int stackUsage = call.getArguments().size();
                 if (!(call instanceof InvokeStaticInstruction)) {
                     stackUsage++;
                 }
-                return stackUsage;
+                return destUsage + Math.max(stackUsage, 1);
             } else {
-                return 1; // Other assignments need at least 1 space
+                return destUsage + Math.max(calculateStackUsageForInstruction(rhs), 1);
             }
         } else if (inst instanceof SingleOpInstruction) {
             return 1;
@@ -903,30 +891,4 @@ public class JasminGenerator {
                         (inst instanceof AssignInstruction assign &&
                                 assign.getDest() instanceof ArrayOperand));
     }
-
-    private String extractNameInParentheses(String str) {
-        System.out.println("DEBUG extractNameInParentheses: Extraindo nome de " + str);
-        try {
-            int start = str.indexOf('(');
-            int end = str.indexOf(')');
-            if (start >= 0 && end > start) {
-                String result = str.substring(start + 1, end);
-                System.out.println("DEBUG extractNameInParentheses: Nome extraído: " + result);
-                return result;
-            }
-
-            // Alternativa: tenta extrair pelo último ponto
-            if (str.contains(".")) {
-                String result = str.substring(str.lastIndexOf(".") + 1);
-                System.out.println("DEBUG extractNameInParentheses: Nome extraído alternativo: " + result);
-                return result;
-            }
-        } catch (Exception e) {
-            System.out.println("ERRO extractNameInParentheses: " + e.getMessage());
-            e.printStackTrace();
-        }
-
-        System.out.println("DEBUG extractNameInParentheses: Formato não reconhecido, retornando string original");
-        return str;
-    }
-}
\ No newline at end of file
+}
@@ -11,8 +11,15 @@ import java.util.Map;
 
 public class JasminUtils {
 
+    private static final int MAX_CACHED_DIMENSIONS = 4;
+
     private final OllirResult ollirResult;
 
+    private final Map<String, String> classDescriptors = new HashMap<>();
+
+    // Descritores de arrays por descritor do elemento, indexados pelo número de dimensões
+    private final Map<String, String[]> arrayDescriptors = new HashMap<>();
+
     public JasminUtils(OllirResult ollirResult) {
         // Can be useful to have if you expand this class with more methods
         this.ollirResult = ollirResult;
@@ -27,30 +34,49 @@ public class JasminUtils {
 
 
     public String getConvertedType(Type type) {
-        if (type != null) {
-            switch (type.toString()) {
-                case "INT32" -> {
-                    return "I";
-                }
-                case "BOOLEAN" -> {
-                    return "Z";
-                }
-                case "STRING" -> {
-                    return "Ljava/lang/String;";
-                }
-                case "VOID" -> {
-                    return "V";
-                }
-                case "INT32[]", "BOOLEAN[]", "STRING[]" -> {
-                    ArrayType arrayType = (ArrayType) type;
-                    return "[" + getConvertedType(arrayType.getElementType());
-                }
-                default -> {
-                    return type.toString();
-                }
-            }
-        } else {
+        if (type == null) {
             return "V";
         }
+
+        // Os descritores de classes e arrays são guardados para não voltar a construir a mesma String
+        return switch (type) {
+            case BuiltinType builtinType -> getConvertedKind(builtinType.getKind());
+            case ArrayType arrayType -> getArrayDescriptor(arrayType);
+            case ClassType classType -> classDescriptors.computeIfAbsent(classType.getName(), name -> "L" + name + ";");
+            default -> type.toString();
+        };
+    }
+
+    private static String getConvertedKind(BuiltinKind kind) {
+        return switch (kind) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case STRING -> "Ljava/lang/String;";
+            case VOID -> "V";
+        };
+    }
+
+    private String getArrayDescriptor(ArrayType arrayType) {
+        String elementDescriptor = getConvertedType(arrayType.getElementType());
+        String[] byDimensions = arrayDescriptors.computeIfAbsent(elementDescriptor, element -> new String[MAX_CACHED_DIMENSIONS + 1]);
+
+        int dimensions = Math.max(arrayType.getNumDimensions(), 1);
+        if (dimensions > MAX_CACHED_DIMENSIONS) {
+            return "[".repeat(dimensions) + elementDescriptor;
+        }
+
+        if (byDimensions[dimensions] == null) {
+            byDimensions[dimensions] = "[".repeat(dimensions) + elementDescriptor;
+        }
+
+        return byDimensions[dimensions];
+    }
+
+    /**
+     * True if values of the type are loaded and stored with the int instructions (iload, istore, ...).
+     */
+    public boolean isIntLike(Type type) {
+        return type instanceof BuiltinType builtinType
+                && (builtinType.getKind() == BuiltinKind.INT32 || builtinType.getKind() == BuiltinKind.BOOLEAN);
     }
 }
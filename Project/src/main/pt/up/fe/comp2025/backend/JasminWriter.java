@@ -0,0 +1,105 @@
+package pt.up.fe.comp2025.backend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Append-only sink for Jasmin code.
+ * <p>
+ * Generators emit opcodes and operands through this class, which writes them straight into the underlying
+ * {@link Appendable} and takes care of indentation and line endings, so no intermediate strings are built per node.
+ */
+public class JasminWriter {
+
+    private static final String TAB = "   ";
+    private static final char NL = '\n';
+
+    // Registos até este valor têm instruções próprias, como iload_3
+    private static final int MAX_DIRECT_REGISTER = 3;
+
+    private final Appendable out;
+
+    public JasminWriter(Appendable out) {
+        this.out = out;
+    }
+
+    public JasminWriter instruction(String opcode) {
+        return begin(opcode).end();
+    }
+
+    public JasminWriter instruction(String opcode, CharSequence operand) {
+        return begin(opcode).append(' ').append(operand).end();
+    }
+
+    public JasminWriter instruction(String opcode, int operand) {
+        return begin(opcode).append(' ').append(operand).end();
+    }
+
+    public JasminWriter instruction(String opcode, int first, int second) {
+        return begin(opcode).append(' ').append(first).append(' ').append(second).end();
+    }
+
+    /**
+     * Writes a load or store, using the short form (e.g. {@code istore_1}) when the register has one.
+     * <p>
+     * Registers above 255 need the {@code wide} prefix, which Jasmin adds by itself from the operand (it does not
+     * accept an explicit {@code wide}), the same as for {@code iinc} with a constant outside a byte.
+     */
+    public JasminWriter register(String opcode, int register) {
+        begin(opcode).append(register <= MAX_DIRECT_REGISTER ? '_' : ' ');
+        return append(register).end();
+    }
+
+    public JasminWriter label(String label) {
+        return append(label).append(':').newLine();
+    }
+
+    /**
+     * Starts an instruction whose operands are appended by the caller, and finished with {@link #end()}.
+     */
+    public JasminWriter begin(String opcode) {
+        return indent().append(opcode);
+    }
+
+    public JasminWriter end() {
+        return newLine();
+    }
+
+    public JasminWriter indent() {
+        return append(TAB);
+    }
+
+    public JasminWriter newLine() {
+        return append(NL);
+    }
+
+    public JasminWriter append(CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return this;
+    }
+
+    public JasminWriter append(char c) {
+        try {
+            out.append(c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return this;
+    }
+
+    public JasminWriter append(int value) {
+        // Um StringBuilder escreve o número sem criar uma String
+        if (out instanceof StringBuilder builder) {
+            builder.append(value);
+            return this;
+        }
+
+        return append(Integer.toString(value));
+    }
+}
@@ -0,0 +1,81 @@
+package pt.up.fe.comp2025.backend;
+
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.tree.TreeNode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Register, descriptor and load/store instructions of every variable of a method.
+ * <p>
+ * Built once per method, so generating a load or a store is a single lookup instead of going through the variable
+ * table and converting the type of the operand every time.
+ */
+public class RegisterTable {
+
+    /**
+     * Where a variable lives and which instructions move it to and from the stack.
+     */
+    public record Slot(int register, String descriptor, String load, String store) {
+    }
+
+    private final Method method;
+
+    private final Map<String, Slot> slots;
+
+    // Número de vezes que cada variável aparece nas instruções do método, calculado só quando é preciso
+    private Map<String, Integer> uses;
+
+    public RegisterTable(Method method, JasminUtils types) {
+        this.method = method;
+
+        var varTable = method.getVarTable();
+        slots = new HashMap<>(varTable.size() * 2);
+
+        for (var entry : varTable.entrySet()) {
+            var descriptor = entry.getValue();
+            var type = descriptor.getVarType();
+            boolean isIntLike = types.isIntLike(type);
+
+            slots.put(entry.getKey(), new Slot(descriptor.getVirtualReg(), types.getConvertedType(type),
+                    isIntLike ? "iload" : "aload", isIntLike ? "istore" : "astore"));
+        }
+    }
+
+    /**
+     * The slot of the variable, or null if the method has no variable with that name.
+     */
+    public Slot get(String name) {
+        return slots.get(name);
+    }
+
+    public int getRegister(String name) {
+        return slots.get(name).register();
+    }
+
+    /**
+     * Number of times the variable appears in the instructions of the method, counting both reads and writes.
+     */
+    public int getUseCount(String name) {
+        if (uses == null) {
+            uses = new HashMap<>();
+            for (var inst : method.getInstructions()) {
+                countUses(inst);
+            }
+        }
+
+        return uses.getOrDefault(name, 0);
+    }
+
+    private void countUses(TreeNode node) {
+        if (node instanceof Operand operand) {
+            uses.merge(operand.getName(), 1, Integer::sum);
+        }
+
+        for (var child : node.getChildren()) {
+            countUses(child);
+        }
+    }
+}
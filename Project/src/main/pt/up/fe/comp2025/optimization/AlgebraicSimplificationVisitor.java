@@ -0,0 +1,175 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Simplifies expressions using algebraic identities, such as {@code x * 1}, {@code x + 0}, {@code x - x} and
+ * {@code !!b}, complementing {@link ConstantFoldingVisitor}, which only handles literal operands.
+ * <p>
+ * Rules that drop an operand are only applied when the dropped expression has no side effects and cannot throw.
+ */
+public class AlgebraicSimplificationVisitor extends AJmmVisitor<Boolean, Boolean> {
+
+    // Expressões que podem ser removidas sem mudar o comportamento do programa
+    private static final Set<String> PURE_KINDS = Set.of("IntegerLiteral", "BooleanLiteral", "VarRefExpr", "ThisExpr",
+            "BinaryExpr", "Comparison", "Equality", "Logical", "NotExpr", "ExprExpr");
+
+    private final SymbolTable symbolTable;
+    private boolean changed = false;
+
+    public AlgebraicSimplificationVisitor(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        addVisits();
+    }
+
+    private void addVisits() {
+        addVisit("BinaryExpr", this::visitBinaryExpr);
+        addVisit("Logical", this::visitLogical);
+        addVisit("NotExpr", this::visitNotExpr);
+        addVisit("ExprExpr", this::visitExprExpr);
+
+        setDefaultVisit(this::defaultVisit);
+    }
+
+    private Boolean visitBinaryExpr(JmmNode node, Boolean data) {
+        visitAllChildren(node, data);
+
+        JmmNode left = node.getChildren().get(0);
+        JmmNode right = node.getChildren().get(1);
+
+        switch (node.get("op")) {
+            case "+" -> {
+                // x + 0 = 0 + x = x
+                if (isIntLiteral(right, 0)) {
+                    replaceWith(node, left);
+                } else if (isIntLiteral(left, 0)) {
+                    replaceWith(node, right);
+                }
+            }
+            case "-" -> {
+                // x - 0 = x, x - x = 0
+                if (isIntLiteral(right, 0)) {
+                    replaceWith(node, left);
+                } else if (isSameVar(left, right)) {
+                    replaceWithInt(node, 0);
+                }
+            }
+            case "*" -> {
+                // x * 1 = 1 * x = x, x * 0 = 0 * x = 0
+                if (isIntLiteral(right, 1)) {
+                    replaceWith(node, left);
+                } else if (isIntLiteral(left, 1)) {
+                    replaceWith(node, right);
+                } else if ((isIntLiteral(right, 0) && isPure(left)) || (isIntLiteral(left, 0) && isPure(right))) {
+                    replaceWithInt(node, 0);
+                }
+            }
+            case "/" -> {
+                // x / 1 = x
+                if (isIntLiteral(right, 1)) {
+                    replaceWith(node, left);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private Boolean visitLogical(JmmNode node, Boolean data) {
+        visitAllChildren(node, data);
+
+        JmmNode left = node.getChildren().get(0);
+        JmmNode right = node.getChildren().get(1);
+        boolean isAnd = node.get("op").equals("&&");
+
+        // O operando neutro desaparece: b && true = true && b = b, b || false = false || b = b
+        if (isBoolLiteral(right, isAnd)) {
+            replaceWith(node, left);
+        } else if (isBoolLiteral(left, isAnd)) {
+            replaceWith(node, right);
+        }
+        // false && b = false, true || b = true, já que b nunca é avaliado
+        else if (isBoolLiteral(left, !isAnd)) {
+            replaceWith(node, left);
+        }
+        // b && false = false, b || true = true, se b não tiver efeitos
+        else if (isBoolLiteral(right, !isAnd) && isPure(left)) {
+            replaceWith(node, right);
+        }
+
+        return true;
+    }
+
+    private Boolean visitNotExpr(JmmNode node, Boolean data) {
+        visitAllChildren(node, data);
+
+        // !!b = b
+        JmmNode operand = node.getChildren().get(0);
+        if (operand.getKind().equals("NotExpr")) {
+            replaceWith(node, operand.getChildren().get(0));
+        }
+
+        return true;
+    }
+
+    private Boolean visitExprExpr(JmmNode node, Boolean data) {
+        visitAllChildren(node, data);
+
+        // Os parêntesis já estão representados pela forma da árvore
+        replaceWith(node, node.getChildren().get(0));
+
+        return true;
+    }
+
+    private boolean isIntLiteral(JmmNode node, int value) {
+        return node.getKind().equals("IntegerLiteral") && node.get("value").equals(String.valueOf(value));
+    }
+
+    private boolean isBoolLiteral(JmmNode node, boolean value) {
+        return node.getKind().equals("BooleanLiteral") && node.get("value").equals(String.valueOf(value));
+    }
+
+    private boolean isSameVar(JmmNode left, JmmNode right) {
+        return left.getKind().equals("VarRefExpr") && right.getKind().equals("VarRefExpr")
+                && left.get("name").equals(right.get("name"));
+    }
+
+    // Sem chamadas, alocações nem acessos que possam lançar exceções (arrays e divisões)
+    private boolean isPure(JmmNode node) {
+        return node.getDescendantsAndSelfStream()
+                .allMatch(n -> PURE_KINDS.contains(n.getKind()) && !(n.getKind().equals("BinaryExpr") && n.get("op").equals("/")));
+    }
+
+    private void replaceWith(JmmNode node, JmmNode replacement) {
+        node.replace(replacement);
+        changed = true;
+    }
+
+    private void replaceWithInt(JmmNode node, int value) {
+        JmmNode resultNode = new JmmNodeImpl(Collections.singletonList("IntegerLiteral"));
+        resultNode.put("value", String.valueOf(value));
+
+        replaceWith(node, resultNode);
+    }
+
+    private Boolean defaultVisit(JmmNode node, Boolean data) {
+        return visitAllChildren(node, data);
+    }
+
+    public boolean optimize(JmmNode root) {
+        changed = false;
+        visit(root, true);
+        return changed;
+    }
+
+    @Override
+    protected void buildVisitor() {
+        // Método requerido pela classe pai
+    }
+}
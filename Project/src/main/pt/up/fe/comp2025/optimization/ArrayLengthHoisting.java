@@ -0,0 +1,134 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static pt.up.fe.comp2025.optimization.OllirTextUtils.indentOf;
+
+/**
+ * Moves the {@code arraylength} of canonical {@code while (i < a.length)} loops out of the loop, over the OLLIR code.
+ * <p>
+ * When the loop header computes {@code t := arraylength(a)} and {@code a} is never reassigned inside the loop, the
+ * length is computed once before the loop label and kept in {@code t}, so the loop compares the index against a
+ * local that does not change. Any other {@code arraylength(a)} in the loop becomes a copy of {@code t}. Only the
+ * header, which always runs before the body, is hoisted from, so a null array still fails at the same point.
+ */
+public class ArrayLengthHoisting {
+
+    private static final Pattern ASSIGN_PATTERN = Pattern.compile("^([\\w$]+)(\\.[\\w.$]+)\\s*:=");
+    private static final Pattern LENGTH_PATTERN =
+            Pattern.compile("^([\\w$]+)\\.i32 :=\\.i32 arraylength\\(([\\w$]+)(\\.array\\.[\\w$]+)\\)\\.i32;$");
+
+    private int hoistedCount = 0;
+
+    public int getHoistedCount() {
+        return hoistedCount;
+    }
+
+    public OllirResult apply(OllirResult ollirResult) {
+        String hoisted = apply(ollirResult.getOllirCode());
+
+        if (hoistedCount == 0) {
+            return ollirResult;
+        }
+
+        return new OllirResult(hoisted, ollirResult.getConfig());
+    }
+
+    public String apply(String ollirCode) {
+        List<String> lines = new ArrayList<>(Arrays.asList(ollirCode.split("\n", -1)));
+
+        // Cada loop começa num label e acaba no último goto para esse label
+        for (int start = 0; start < lines.size(); start++) {
+            int end = OllirTextUtils.findBackEdge(lines, start);
+            if (end != -1) {
+                start += hoistLoop(lines, start, end);
+            }
+        }
+
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Hoists the array lengths computed in the header of the loop between the given lines, returning the number of
+     * lines moved before the loop label.
+     */
+    private int hoistLoop(List<String> lines, int start, int end) {
+        Set<String> assigned = findAssignedVars(lines, start, end);
+        int hoisted = 0;
+
+        // O cabeçalho vai até ao primeiro salto, que é sempre executado antes do corpo
+        int i = start + 1;
+        while (i <= end) {
+            String line = lines.get(i).trim();
+            if (line.startsWith("if ") || line.startsWith("goto ") || OllirTextUtils.labelOf(line) != null) {
+                break;
+            }
+
+            Matcher length = LENGTH_PATTERN.matcher(line);
+            if (!length.matches() || assigned.contains(length.group(2)) || countAssignments(lines, start, end, length.group(1)) != 1) {
+                i++;
+                continue;
+            }
+
+            String lengthVar = length.group(1);
+            String array = length.group(2) + length.group(3);
+
+            // O comprimento não muda dentro do loop, por isso os outros arraylength passam a cópias
+            for (int j = i + 1; j <= end; j++) {
+                Matcher other = LENGTH_PATTERN.matcher(lines.get(j).trim());
+                if (other.matches() && (other.group(2) + other.group(3)).equals(array)) {
+                    lines.set(j, indentOf(lines.get(j)) + other.group(1) + ".i32 :=.i32 " + lengthVar + ".i32;");
+                }
+            }
+
+            lines.remove(i);
+            lines.add(start, indentOf(lines.get(start)) + line);
+            start++;
+            hoisted++;
+            hoistedCount++;
+            i++;
+        }
+
+        return hoisted;
+    }
+
+    private static Set<String> findAssignedVars(List<String> lines, int start, int end) {
+        Set<String> assigned = new HashSet<>();
+
+        for (int i = start + 1; i <= end; i++) {
+            Matcher assign = ASSIGN_PATTERN.matcher(lines.get(i).trim());
+            if (assign.find()) {
+                assigned.add(assign.group(1));
+            }
+        }
+
+        return assigned;
+    }
+
+    // Número de atribuições a uma variável no método que contém o loop
+    private static int countAssignments(List<String> lines, int start, int end, String var) {
+        int first = start;
+        while (first > 0 && !lines.get(first).trim().startsWith(".method")) {
+            first--;
+        }
+
+        int count = 0;
+        for (int i = first; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (i > end && (line.startsWith(".method") || line.equals("}"))) {
+                break;
+            }
+
+            Matcher assign = ASSIGN_PATTERN.matcher(line);
+            if (assign.find() && assign.group(1).equals(var)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -24,11 +24,15 @@ public class ConstantFoldingVisitor extends AJmmVisitor<Boolean, Boolean> {
         addVisit("ArithmeticOp", this::visitBinaryOp);
         addVisit("ComparisonOp", this::visitBinaryOp);
         addVisit("LogicalOp", this::visitBinaryOp);
+        addVisit("Comparison", this::visitBinaryOp);
+        addVisit("Equality", this::visitBinaryOp);
+        addVisit("Logical", this::visitBinaryOp);
 
         // Operações unárias
         addVisit("UnaryExpr", this::visitUnaryOp);
         addVisit("UnaryOp", this::visitUnaryOp);
         addVisit("NotOp", this::visitUnaryOp);
+        addVisit("NotExpr", this::visitUnaryOp);
 
         // Default para outros nós
         setDefaultVisit(this::defaultVisit);
@@ -4,14 +4,18 @@ package pt.up.fe.comp2025.optimization;
     import pt.up.fe.comp.jmm.ast.AJmmVisitor;
     import pt.up.fe.comp.jmm.ast.JmmNode;
     import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+    import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
 
     import java.util.Collections;
     import java.util.HashMap;
+    import java.util.HashSet;
     import java.util.Map;
+    import java.util.Set;
 
     public class ConstantPropagationVisitor extends AJmmVisitor<Map<String, JmmNode>, Boolean> {
         private final SymbolTable symbolTable;
         private boolean changed = false;
+        private String currentMethod;
 
         public ConstantPropagationVisitor(SymbolTable symbolTable) {
             this.symbolTable = symbolTable;
@@ -39,6 +43,7 @@ package pt.up.fe.comp2025.optimization;
             addVisit("ReturnStmt", this::visitReturnStmt);
             addVisit("Return", this::visitReturnStmt);
             addVisit("IfElseStmt", this::visitIfStmt);
+            addVisit("IfStmt", this::visitIfStmt);
             addVisit("WhileStmt", this::visitWhileStmt);
             addVisit("MethodDecl", this::visitMethodDecl);
             addVisit("MainMethod", this::visitMethodDecl);
@@ -59,7 +64,8 @@ package pt.up.fe.comp2025.optimization;
 
             String varName = getVarName(lhs);
 
-            if (varName != null) {
+            // Só as variáveis locais são propagadas, os campos podem mudar em qualquer chamada
+            if (varName != null && isLocal(varName)) {
                 // Se o lado direito é um literal, adiciona à tabela de constantes
                 if (isLiteral(rhs)) {
                     constants.put(varName, rhs);
@@ -73,21 +79,8 @@ package pt.up.fe.comp2025.optimization;
         }
 
         private Boolean visitReturnStmt(JmmNode node, Map<String, JmmNode> constants) {
-            // Se o nó de retorno tem uma expressão
-            if (!node.getChildren().isEmpty()) {
-                JmmNode expr = node.getChildren().get(0);
-                String varName = getVarName(expr);
-
-                // Se a expressão de retorno é uma referência a variável
-                if (varName != null && constants.containsKey(varName)) {
-                    // Substitui a variável pelo seu valor constante
-                    JmmNode constantValue = createLiteralCopy(constants.get(varName));
-                    expr.replace(constantValue);
-                    changed = true;
-                }
-            }
-
-            return true;
+            // Propaga as constantes em toda a expressão de retorno
+            return visitAllChildren(node, constants);
         }
 
         private Boolean visitBinaryExpr(JmmNode node, Map<String, JmmNode> constants) {
@@ -106,11 +99,49 @@ package pt.up.fe.comp2025.optimization;
                 JmmNode constantValue = createLiteralCopy(constants.get(varName));
                 node.replace(constantValue);
                 changed = true;
+            } else if (varName != null && !isLocal(varName) && getConstantField(varName) != null) {
+                // Os campos const nunca mudam, por isso valem o literal da declaração em todo o lado
+                String value = getConstantField(varName);
+                JmmNode literal = new JmmNodeImpl(Collections.singletonList(
+                        value.equals("true") || value.equals("false") ? "BooleanLiteral" : "IntegerLiteral"));
+                literal.put("value", value);
+                node.replace(literal);
+                changed = true;
             }
 
             return true;
         }
 
+        private String getConstantField(String varName) {
+            return symbolTable instanceof JmmSymbolTable table ? table.getConstantValue(varName) : null;
+        }
+
+        private boolean isLocal(String varName) {
+            if (currentMethod == null) {
+                return false;
+            }
+
+            var locals = symbolTable.getLocalVariables(currentMethod);
+            var params = symbolTable.getParameters(currentMethod);
+
+            return (locals != null && locals.stream().anyMatch(local -> local.getName().equals(varName)))
+                    || (params != null && params.stream().anyMatch(param -> param.getName().equals(varName)));
+        }
+
+        // Variáveis atribuídas dentro de um bloco, incluindo blocos aninhados
+        private Set<String> getAssignedVars(JmmNode node) {
+            Set<String> assigned = new HashSet<>();
+
+            for (JmmNode assign : node.getDescendants("AssignStmt")) {
+                String varName = getVarName(assign.getChildren().get(0));
+                if (varName != null) {
+                    assigned.add(varName);
+                }
+            }
+
+            return assigned;
+        }
+
         private String getVarName(JmmNode node) {
             if (node.hasAttribute("name")) {
                 return node.get("name");
@@ -187,6 +218,12 @@ package pt.up.fe.comp2025.optimization;
         }
 
         private Boolean visitWhileStmt(JmmNode node, Map<String, JmmNode> constants) {
+            // A condição e o corpo são executados várias vezes, por isso as variáveis alteradas no corpo
+            // deixam de ser constantes logo à entrada do loop
+            if (node.getChildren().size() > 1) {
+                getAssignedVars(node.getChildren().get(1)).forEach(constants::remove);
+            }
+
             // Visita a condição do loop
             visit(node.getChildren().get(0), constants);
 
@@ -197,19 +234,9 @@ package pt.up.fe.comp2025.optimization;
             if (node.getChildren().size() > 1) {
                 visit(node.getChildren().get(1), constants);
 
-                // Depois de visitar o corpo do loop, verificar quais variáveis foram modificadas
-                Map<String, JmmNode> afterLoopConstants = new HashMap<>();
-                for (String var : beforeLoop.keySet()) {
-                    // Manter apenas constantes não alteradas dentro do loop
-                    if (constants.containsKey(var) &&
-                            nodesHaveSameValue(beforeLoop.get(var), constants.get(var))) {
-                        afterLoopConstants.put(var, beforeLoop.get(var));
-                    }
-                }
-
-                // Atualizar o mapa de constantes
+                // O corpo pode não ser executado, por isso ficam as constantes de antes do loop
                 constants.clear();
-                constants.putAll(afterLoopConstants);
+                constants.putAll(beforeLoop);
             }
 
             return true;
@@ -218,6 +245,7 @@ package pt.up.fe.comp2025.optimization;
         private Boolean visitMethodDecl(JmmNode node, Map<String, JmmNode> constants) {
             // Usar mapa novo para constantes locais do método
             Map<String, JmmNode> methodConstants = new HashMap<>();
+            currentMethod = node.get("name");
             return visitAllChildren(node, methodConstants);
         }
 
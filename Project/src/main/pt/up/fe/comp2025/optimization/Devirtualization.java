@@ -0,0 +1,156 @@
+package pt.up.fe.comp2025.optimization;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces the virtual calls to the methods of the class whose target is known, over the OLLIR code.
+ * <p>
+ * Each file is compiled on its own and holds a single class, so no class in the compilation set extends it: like
+ * inlining, this takes the compiled classes as the whole program, and the class is marked {@code final}. Then:
+ * <ul>
+ *     <li>the calls to a private method use {@code invokespecial}, which needs no method lookup;</li>
+ *     <li>a private method that never uses {@code this} becomes static, and its calls use {@code invokestatic}. Calls to
+ *     methods that become static do not count as uses of {@code this}.</li>
+ * </ul>
+ * A method is only made static when every call to it is on {@code this} or on a local that only holds objects just
+ * created, since a call on a null object would otherwise no longer fail.
+ */
+public class Devirtualization {
+
+    private static final Pattern METHOD_HEADER_PATTERN =
+            Pattern.compile("^\\.method\\s+((?:(?:public|private|static|final|varargs)\\s+)*)([\\w$]+)\\(.*\\{$");
+    private static final Pattern CALL_PATTERN =
+            Pattern.compile("invokevirtual\\(([\\w$]+)(?:\\.[\\w.$]+)?,\\s*\"([\\w$]+)\"");
+    private static final Pattern THIS_PATTERN = Pattern.compile("\\bthis\\b");
+
+    private int devirtualizedCount = 0;
+
+    public int getDevirtualizedCount() {
+        return devirtualizedCount;
+    }
+
+    public String apply(String ollirCode, String className) {
+        List<String> lines = new ArrayList<>(Arrays.asList(ollirCode.split("\n", -1)));
+
+        // Início e fim de cada método, e quais os privados de instância
+        List<int[]> methodRanges = new ArrayList<>();
+        Map<String, int[]> privateMethods = new LinkedHashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            Matcher header = METHOD_HEADER_PATTERN.matcher(lines.get(i).trim());
+            if (!header.matches()) {
+                continue;
+            }
+
+            int start = i;
+            while (i + 1 < lines.size() && !lines.get(i).trim().equals("}")) {
+                i++;
+            }
+
+            methodRanges.add(new int[]{start, i});
+            String modifiers = header.group(1);
+            if (modifiers.contains("private") && !modifiers.contains("static")) {
+                privateMethods.put(header.group(2), new int[]{start, i});
+            }
+        }
+
+        // Só podem ficar estáticos os métodos chamados apenas sobre objetos que não são null
+        Set<String> candidates = new HashSet<>(privateMethods.keySet());
+        for (int[] range : methodRanges) {
+            Set<String> nonNull = OllirTextUtils.findNonNullLocals(lines, range[0], range[1]);
+            for (int i = range[0] + 1; i < range[1]; i++) {
+                Matcher call = CALL_PATTERN.matcher(lines.get(i));
+                while (call.find()) {
+                    if (!nonNull.contains(call.group(1))) {
+                        candidates.remove(call.group(2));
+                    }
+                }
+            }
+        }
+
+        // Tira os que usam this para outra coisa que não chamar um dos candidatos, até não haver alterações
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var it = candidates.iterator(); it.hasNext(); ) {
+                int[] range = privateMethods.get(it.next());
+                if (usesThis(lines, range, candidates)) {
+                    it.remove();
+                    changed = true;
+                }
+            }
+        }
+
+        for (String name : privateMethods.keySet()) {
+            if (candidates.contains(name)) {
+                int start = privateMethods.get(name)[0];
+                lines.set(start, lines.get(start).replaceFirst("\\.method\\s+private\\s+", ".method private static "));
+            }
+        }
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            Matcher call = CALL_PATTERN.matcher(line);
+            StringBuilder result = new StringBuilder();
+            while (call.find()) {
+                String method = call.group(2);
+                String replacement;
+                if (candidates.contains(method)) {
+                    replacement = "invokestatic(" + className + ", \"" + method + "\"";
+                } else if (privateMethods.containsKey(method)) {
+                    replacement = "invokespecial" + call.group().substring("invokevirtual".length());
+                } else {
+                    continue;
+                }
+
+                call.appendReplacement(result, Matcher.quoteReplacement(replacement));
+                devirtualizedCount++;
+            }
+            call.appendTail(result);
+            lines.set(i, result.toString());
+        }
+
+        markFinal(lines, className);
+        if (devirtualizedCount == 0) {
+            return ollirCode;
+        }
+
+        return String.join("\n", lines);
+    }
+
+    private static boolean usesThis(List<String> lines, int[] range, Set<String> candidates) {
+        for (int i = range[0] + 1; i < range[1]; i++) {
+            String line = lines.get(i);
+            if (!THIS_PATTERN.matcher(line).find()) {
+                continue;
+            }
+
+            // As chamadas aos candidatos vão deixar de usar this
+            Matcher call = CALL_PATTERN.matcher(line);
+            StringBuilder rest = new StringBuilder();
+            while (call.find()) {
+                call.appendReplacement(rest, candidates.contains(call.group(2)) ? "" : "$0");
+            }
+            call.appendTail(rest);
+
+            if (THIS_PATTERN.matcher(rest).find()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Acrescenta final ao cabeçalho da classe
+    private void markFinal(List<String> lines, String className) {
+        Pattern classHeader = Pattern.compile("^" + Pattern.quote(className) + "(\\s+extends\\s+[\\w$.]+)?\\s*\\{$");
+        for (int i = 0; i < lines.size(); i++) {
+            if (classHeader.matcher(lines.get(i).trim()).matches()) {
+                lines.set(i, "final " + lines.get(i).trim());
+                devirtualizedCount++;
+                return;
+            }
+        }
+    }
+}
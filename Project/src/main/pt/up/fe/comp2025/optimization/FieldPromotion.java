@@ -0,0 +1,383 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static pt.up.fe.comp2025.optimization.OllirTextUtils.indentOf;
+
+/**
+ * Keeps the fields that a loop reads or writes in locals while the loop runs, over the OLLIR code.
+ * <p>
+ * The field is read once before the loop label, every {@code getfield} in the loop becomes a copy of the local and
+ * every {@code putfield} an assignment to it. When the loop writes the field, its value is stored back at each exit:
+ * after the label the loop condition jumps to, and before each {@code ret} inside the loop. The object must be
+ * {@code this} or a local that only ever holds new objects (e.g. after inlining) and is not assigned in the loop, so
+ * reading the field before the loop cannot fail.
+ * <p>
+ * A field is only promoted when nothing in the loop can see it in memory. Calls to methods of the class are looked up
+ * in a summary of the fields each method reads and writes, including through the methods it calls. Calls to imported
+ * classes are assumed to only reach the objects passed to them, so a call that receives an object of the class (or a
+ * call to an inherited method) is assumed to read and write every field. A field accessed through more than one
+ * object in the loop is not promoted, since the objects may be the same.
+ */
+public class FieldPromotion {
+
+    private static final Pattern METHOD_PATTERN = Pattern.compile("^\\.method\\s.*?([\\w$]+)\\(.*\\{$");
+    private static final Pattern ASSIGN_PATTERN = Pattern.compile("^([\\w$]+)(?:\\.[\\w.$]+)?\\s*:=\\s*\\.[\\w.$]+\\s+(.*);$");
+    private static final Pattern GETFIELD_PATTERN =
+            Pattern.compile("^(\\S+)\\s*:=(\\.[\\w.$]+)\\s+getfield\\(([^,]+),\\s*([\\w$]+)(\\.[\\w.$]+)\\)\\.[\\w.$]+;$");
+    private static final Pattern PUTFIELD_PATTERN =
+            Pattern.compile("^putfield\\(([^,]+),\\s*([\\w$]+)(\\.[\\w.$]+),\\s*(.+)\\)\\.V;$");
+    private static final Pattern FIELD_ACCESS_PATTERN = Pattern.compile("(?:get|put)field\\(([^,]+),\\s*([\\w$]+)\\.");
+    private static final Pattern INVOKE_PATTERN =
+            Pattern.compile("(invokevirtual|invokestatic|invokespecial)\\(([^,)]+)(?:,\\s*\"([^\"]*)\")?([^)]*)\\)");
+
+    /**
+     * Fields a method or a piece of code may read and write, by name.
+     */
+    private static class Effects {
+        final Set<String> reads = new HashSet<>();
+        final Set<String> writes = new HashSet<>();
+        boolean all = false;
+
+        // Junta os efeitos de outro, devolvendo se algo mudou
+        boolean add(Effects other) {
+            boolean changed = reads.addAll(other.reads) | writes.addAll(other.writes);
+            if (other.all && !all) {
+                all = true;
+                changed = true;
+            }
+            return changed;
+        }
+
+        boolean mayRead(String field) {
+            return all || reads.contains(field);
+        }
+
+        boolean mayWrite(String field) {
+            return all || writes.contains(field);
+        }
+    }
+
+    // Acessos a um campo de this dentro de um loop
+    private static class FieldAccess {
+        String object;
+        String type;
+        boolean written = false;
+    }
+
+    private int promotedCount = 0;
+    private int fieldCounter = 0;
+
+    public int getPromotedCount() {
+        return promotedCount;
+    }
+
+    public OllirResult apply(OllirResult ollirResult) {
+        String promoted = apply(ollirResult.getOllirCode(), ollirResult.getOllirClass().getClassName());
+
+        if (promotedCount == 0) {
+            return ollirResult;
+        }
+
+        return new OllirResult(promoted, ollirResult.getConfig());
+    }
+
+    public String apply(String ollirCode, String className) {
+        List<String> lines = new ArrayList<>(Arrays.asList(ollirCode.split("\n", -1)));
+        Map<String, Effects> summaries = summarizeMethods(lines, className);
+
+        // Cada loop começa num label e acaba no último goto para esse label
+        for (int start = 0; start < lines.size(); start++) {
+            int end = OllirTextUtils.findBackEdge(lines, start);
+            if (end != -1) {
+                start += promoteLoop(lines, start, end, summaries, className);
+            }
+        }
+
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Promotes the fields of the loop between the given lines, returning the number of lines added before the loop
+     * label.
+     */
+    private int promoteLoop(List<String> lines, int start, int end, Map<String, Effects> summaries, String className) {
+        int methodStart = start;
+        while (methodStart > 0 && !lines.get(methodStart).trim().startsWith(".method")) {
+            methodStart--;
+        }
+        int methodEnd = end;
+        while (methodEnd < lines.size() - 1 && !lines.get(methodEnd).trim().equals("}")) {
+            methodEnd++;
+        }
+
+        int exit = findExit(lines, start, end, methodStart, methodEnd);
+        if (exit == -2) {
+            return 0;
+        }
+
+        Set<String> nonNull = OllirTextUtils.findNonNullLocals(lines, methodStart, methodEnd);
+        Set<String> assignedInLoop = new HashSet<>();
+        for (int i = start + 1; i < end; i++) {
+            Matcher assign = ASSIGN_PATTERN.matcher(lines.get(i).trim());
+            if (assign.matches()) {
+                assignedInLoop.add(assign.group(1));
+            }
+        }
+
+        Map<String, FieldAccess> accesses = new LinkedHashMap<>();
+        Set<String> blocked = new HashSet<>();
+        Effects calls = new Effects();
+
+        for (int i = start + 1; i < end; i++) {
+            String line = lines.get(i).trim();
+
+            if (line.contains("invoke")) {
+                calls.add(effectsOf(line, summaries, className));
+            }
+
+            Matcher access = FIELD_ACCESS_PATTERN.matcher(line);
+            while (access.find()) {
+                String object = access.group(1).trim();
+                String field = access.group(2);
+
+                Matcher get = GETFIELD_PATTERN.matcher(line);
+                Matcher put = PUTFIELD_PATTERN.matcher(line);
+                boolean isGet = get.matches();
+                boolean isPut = !isGet && put.matches();
+
+                String objectName = object.contains(".") ? object.substring(0, object.indexOf('.')) : object;
+                boolean safeObject = isThis(object)
+                        || (nonNull.contains(objectName) && !assignedInLoop.contains(objectName));
+
+                var fieldAccess = accesses.computeIfAbsent(field, f -> new FieldAccess());
+                if (!safeObject || (!isGet && !isPut) || (fieldAccess.object != null && !fieldAccess.object.equals(object))) {
+                    blocked.add(field);
+                    continue;
+                }
+
+                fieldAccess.object = object;
+                fieldAccess.type = isGet ? get.group(5) : put.group(3);
+                fieldAccess.written |= isPut;
+            }
+        }
+
+        List<String> promoted = new ArrayList<>();
+        for (var entry : accesses.entrySet()) {
+            String field = entry.getKey();
+            boolean written = entry.getValue().written;
+
+            if (!blocked.contains(field) && !calls.mayWrite(field) && !(written && calls.mayRead(field))) {
+                promoted.add(field);
+            }
+        }
+
+        if (promoted.isEmpty()) {
+            return 0;
+        }
+
+        String indent = indentOf(lines.get(start));
+        Map<String, String> locals = new HashMap<>();
+        for (String field : promoted) {
+            locals.put(field, "pf" + (fieldCounter++) + "_" + field + accesses.get(field).type);
+        }
+
+        // Dentro do loop, os acessos ao campo passam a usar a variável local
+        for (int i = start + 1; i < end; i++) {
+            String line = lines.get(i).trim();
+
+            Matcher get = GETFIELD_PATTERN.matcher(line);
+            if (get.matches() && locals.containsKey(get.group(4))) {
+                lines.set(i, indentOf(lines.get(i)) + get.group(1) + " :=" + get.group(2) + " "
+                        + locals.get(get.group(4)) + ";");
+                continue;
+            }
+
+            Matcher put = PUTFIELD_PATTERN.matcher(line);
+            if (put.matches() && locals.containsKey(put.group(2))) {
+                String local = locals.get(put.group(2));
+                lines.set(i, indentOf(lines.get(i)) + local + " :=" + put.group(3) + " " + put.group(4).trim() + ";");
+            }
+        }
+
+        // Os campos escritos voltam para memória em cada saída do loop
+        List<String> stores = new ArrayList<>();
+        for (String field : promoted) {
+            var fieldAccess = accesses.get(field);
+            if (fieldAccess.written) {
+                stores.add("putfield(" + fieldAccess.object + ", " + field + fieldAccess.type + ", "
+                        + locals.get(field) + ").V;");
+            }
+        }
+
+        if (!stores.isEmpty()) {
+            if (exit >= 0) {
+                for (int j = stores.size() - 1; j >= 0; j--) {
+                    lines.add(exit + 1, indent + stores.get(j));
+                }
+            }
+
+            for (int i = end - 1; i > start; i--) {
+                if (OllirTextUtils.isReturn(lines.get(i))) {
+                    for (int j = stores.size() - 1; j >= 0; j--) {
+                        lines.add(i, indentOf(lines.get(i)) + stores.get(j));
+                    }
+                }
+            }
+        }
+
+        for (int j = promoted.size() - 1; j >= 0; j--) {
+            String field = promoted.get(j);
+            var fieldAccess = accesses.get(field);
+            lines.add(start, indent + locals.get(field) + " :=" + fieldAccess.type + " getfield(" + fieldAccess.object
+                    + ", " + field + fieldAccess.type + ")" + fieldAccess.type + ";");
+        }
+
+        promotedCount += promoted.size();
+        return promoted.size();
+    }
+
+    /**
+     * Line of the label the loop exits to, -1 if it only exits through {@code ret}, or -2 if the loop is not a single
+     * entry loop with a single exit label right after it.
+     */
+    private static int findExit(List<String> lines, int start, int end, int methodStart, int methodEnd) {
+        Set<String> inside = new HashSet<>();
+        for (int i = start; i <= end; i++) {
+            String label = OllirTextUtils.labelOf(lines.get(i));
+            if (label != null) {
+                inside.add(label);
+            }
+        }
+
+        String exitLabel = end + 1 < lines.size() ? OllirTextUtils.labelOf(lines.get(end + 1)) : null;
+        boolean exits = false;
+
+        for (int i = methodStart; i <= methodEnd; i++) {
+            String target = OllirTextUtils.jumpTargetOf(lines.get(i));
+            if (target == null) {
+                continue;
+            }
+
+            boolean fromInside = i > start && i <= end;
+
+            if (fromInside && !inside.contains(target)) {
+                // Todas as saídas vão para o label logo a seguir ao loop
+                if (!target.equals(exitLabel)) {
+                    return -2;
+                }
+                exits = true;
+            } else if (!fromInside && (inside.contains(target) || target.equals(exitLabel))) {
+                // Só se entra no loop pelo label do início, e só se chega ao label de saída pelo loop
+                return -2;
+            }
+        }
+
+        return exits ? end + 1 : -1;
+    }
+
+    /**
+     * Fields read and written by each method of the class, including through the methods it calls.
+     */
+    private static Map<String, Effects> summarizeMethods(List<String> lines, String className) {
+        Map<String, List<String>> bodies = new LinkedHashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            Matcher method = METHOD_PATTERN.matcher(lines.get(i).trim());
+            if (!method.matches()) {
+                continue;
+            }
+
+            List<String> body = new ArrayList<>();
+            while (++i < lines.size() && !lines.get(i).trim().equals("}")) {
+                body.add(lines.get(i).trim());
+            }
+            bodies.put(method.group(1), body);
+        }
+
+        Map<String, Effects> summaries = new HashMap<>();
+        for (var name : bodies.keySet()) {
+            summaries.put(name, new Effects());
+        }
+
+        // Ponto fixo: os efeitos de um método incluem os dos métodos que chama
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (var entry : bodies.entrySet()) {
+                var summary = summaries.get(entry.getKey());
+
+                for (String line : entry.getValue()) {
+                    Matcher get = GETFIELD_PATTERN.matcher(line);
+                    if (get.matches()) {
+                        changed |= summary.reads.add(get.group(4));
+                    }
+
+                    Matcher put = PUTFIELD_PATTERN.matcher(line);
+                    if (put.matches()) {
+                        changed |= summary.writes.add(put.group(2));
+                    }
+
+                    if (line.contains("invoke")) {
+                        changed |= summary.add(effectsOf(line, summaries, className));
+                    }
+                }
+            }
+        }
+
+        return summaries;
+    }
+
+    private static Effects effectsOf(String line, Map<String, Effects> summaries, String className) {
+        Effects effects = new Effects();
+
+        Matcher invoke = INVOKE_PATTERN.matcher(line);
+        while (invoke.find()) {
+            String kind = invoke.group(1);
+            String receiver = invoke.group(2).trim();
+            String method = invoke.group(3);
+            String args = invoke.group(4);
+
+            boolean ownReceiver = kind.equals("invokestatic") ? receiver.equals(className)
+                    : isThis(receiver) || receiver.endsWith("." + className);
+
+            if (kind.equals("invokespecial")) {
+                // Um construtor da classe só inicializa um objeto novo
+                if (!ownReceiver && passesObjectOfClass(args, className)) {
+                    effects.all = true;
+                }
+            } else if (ownReceiver) {
+                var summary = summaries.get(method);
+                if (summary == null) {
+                    // Método herdado, que não se conhece
+                    effects.all = true;
+                } else {
+                    effects.add(summary);
+                }
+            } else if (passesObjectOfClass(args, className)) {
+                effects.all = true;
+            }
+        }
+
+        return effects;
+    }
+
+    private static boolean passesObjectOfClass(String args, String className) {
+        for (String arg : args.split(",")) {
+            String operand = arg.trim();
+            if (isThis(operand) || operand.endsWith("." + className)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isThis(String operand) {
+        return operand.equals("this") || operand.startsWith("this.");
+    }
+}
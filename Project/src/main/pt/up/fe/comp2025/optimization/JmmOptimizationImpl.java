@@ -1,9 +1,11 @@
 package pt.up.fe.comp2025.optimization;
 
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2025.ConfigOptions;
 
 import java.util.*;
@@ -18,6 +20,12 @@ public class JmmOptimizationImpl implements JmmOptimization {
 
         // Create visitor that will generate the OLLIR code
         var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
+        visitor.setValueNumberingEnabled(ConfigOptions.getOptimize(semanticsResult.getConfig()));
+        visitor.setVarArgsSharingEnabled(ConfigOptions.getOptimize(semanticsResult.getConfig()));
+        visitor.setTailCallsEnabled(ConfigOptions.getOptimize(semanticsResult.getConfig()));
+        if (ConfigOptions.getOptimize(semanticsResult.getConfig())) {
+            visitor.setPurityAnalysis(new PurityAnalysis(semanticsResult.getSymbolTable(), semanticsResult.getRootNode()));
+        }
 
         // Visit the AST and obtain OLLIR code
         var ollirCode = visitor.visit(semanticsResult.getRootNode());
@@ -38,6 +46,10 @@ public class JmmOptimizationImpl implements JmmOptimization {
             int iterations = 0;
             int maxIterations = 10;
 
+            // Resumo de pureza dos métodos da classe (as otimizações não acrescentam efeitos, por isso serve para todas as
+            // iterações)
+            var purity = new PurityAnalysis(semanticsResult.getSymbolTable(), semanticsResult.getRootNode());
+
             // Loop principal de otimização
             while (iterationChanged && iterations < maxIterations) {
                 iterationChanged = false;
@@ -61,6 +73,24 @@ public class JmmOptimizationImpl implements JmmOptimization {
                     globalChanged = true;
                 }
 
+                // Calcular em tempo de compilação as chamadas a métodos puros com argumentos literais
+                PureCallFoldingVisitor callVisitor = new PureCallFoldingVisitor(semanticsResult.getSymbolTable(), purity);
+                boolean callChanged = callVisitor.optimize(semanticsResult.getRootNode());
+
+                if (callChanged) {
+                    iterationChanged = true;
+                    globalChanged = true;
+                }
+
+                // Aplicar simplificações algébricas (x * 1, x + 0, !!b, ...)
+                AlgebraicSimplificationVisitor simplifyVisitor = new AlgebraicSimplificationVisitor(semanticsResult.getSymbolTable());
+                boolean simplifyChanged = simplifyVisitor.optimize(semanticsResult.getRootNode());
+
+                if (simplifyChanged) {
+                    iterationChanged = true;
+                    globalChanged = true;
+                }
+
                 // Se não houve mudanças, interrompe as otimizações
                 if (!iterationChanged) {
                     break;
@@ -73,69 +103,70 @@ public class JmmOptimizationImpl implements JmmOptimization {
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
-        // Aplicar alocação de registradores se especificado
-        String registerLimit = ollirResult.getConfig().get(ConfigOptions.getRegister());
-        if (registerLimit != null) {
-            int maxRegisters = Integer.parseInt(registerLimit);
-            ollirResult = applyRegisterAllocation(ollirResult, maxRegisters);
+        if (ConfigOptions.getOptimize(ollirResult.getConfig())) {
+            ollirResult = applyTextPasses(ollirResult);
+        }
+
+        // Alocação de registos sobre o OLLIR já parsed (-r=-1, o valor por omissão, desativa a alocação)
+        int maxRegisters = ConfigOptions.getRegisterAllocation(ollirResult.getConfig());
+        if (maxRegisters >= 0) {
+            var allocation = new RegisterAllocation(maxRegisters);
+            ollirResult = allocation.apply(ollirResult);
+
+            // Quando -r=n não chega usam-se mais registos, com um aviso por método com quantos usa (-r=0 pede sempre o mínimo)
+            for (var method : ollirResult.getOllirClass().getMethods()) {
+                int required = allocation.getRequiredRegisters(method.getMethodName());
+                if (maxRegisters > 0 && required > maxRegisters) {
+                    ollirResult.getReports().add(Report.newWarn(Stage.OPTIMIZATION, -1, -1,
+                            "Method " + method.getMethodName() + " uses " + required
+                                    + " registers for its local variables, more than the " + maxRegisters
+                                    + " allowed by -r", null));
+                }
+            }
         }
 
         return ollirResult;
     }
 
-    private OllirResult applyRegisterAllocation(OllirResult ollirResult, int maxRegisters) {
-        try {
-            Map<String, String> registerMap = RegisterAllocation.allocateRegisters(ollirResult, maxRegisters);
-
-            String ollirCode = ollirResult.getOllirCode();
-            OllirResult optimized = new OllirResult(ollirCode, ollirResult.getConfig());
+    /**
+     * Passes over the OLLIR code, chained over the text so the code is parsed once at the end instead of after each
+     * pass.
+     */
+    private OllirResult applyTextPasses(OllirResult ollirResult) {
+        String code = ollirResult.getOllirCode();
 
-            var ollirClass = optimized.getOllirClass();
+        // Inlining de métodos pequenos, antes da alocação de registos para que esta veja as novas variáveis
+        var inlining = new MethodInlining();
+        code = inlining.apply(code, ollirResult.getOllirClass().getClassName());
 
-            for (var method : ollirClass.getMethods()) {
-                var varTable = method.getVarTable();
-                Map<Integer, List<String>> registerToVarsMap = new HashMap<>();
+        // Objetos da classe que não escapam do método (em geral depois do inlining) passam a um local por campo
+        var scalars = new ScalarReplacement();
+        code = scalars.apply(code, ollirResult.getOllirClass());
 
-                // Aplicar mapeamento de registradores
-                for (Map.Entry<String, String> entry : registerMap.entrySet()) {
-                    String varName = entry.getKey();
-                    String registerMapping = entry.getValue();
+        // Campos usados em loops ficam em variáveis locais enquanto o loop corre
+        var promotion = new FieldPromotion();
+        code = promotion.apply(code, ollirResult.getOllirClass().getClassName());
 
-                    String baseVarName = varName.contains(".") ? varName.substring(0, varName.indexOf('.')) : varName;
+        // Multiplicações de variáveis de indução passam a somas
+        var reduction = new StrengthReduction();
+        code = reduction.apply(code);
 
-                    if (varTable.containsKey(baseVarName)) {
-                        if (registerMapping.startsWith("r")) {
-                            int regNum = Integer.parseInt(registerMapping.substring(1, registerMapping.indexOf('.')));
+        // O comprimento dos arrays percorridos em loops é calculado uma só vez
+        var hoisting = new ArrayLengthHoisting();
+        code = hoisting.apply(code);
 
-                            varTable.get(baseVarName).setVirtualReg(regNum);
+        // Chamadas a métodos privados sem lookup, e os que não usam this passam a estáticos (depois do inlining, que só
+        // procura invokevirtual e invokestatic)
+        var devirtualization = new Devirtualization();
+        code = devirtualization.apply(code, ollirResult.getOllirClass().getClassName());
 
-                            registerToVarsMap.putIfAbsent(regNum, new ArrayList<>());
-                            registerToVarsMap.get(regNum).add(baseVarName);
-                        }
-                    }
-                }
-
-                // Alocar registradores para variáveis não mapeadas
-                int spillRegister = 1;
-                while (registerToVarsMap.containsKey(spillRegister)) {
-                    spillRegister++;
-                }
-
-                for (String varName : varTable.keySet()) {
-                    var descriptor = varTable.get(varName);
-                    if (descriptor.getVirtualReg() == -1) {
-                        descriptor.setVirtualReg(spillRegister);
-                        registerToVarsMap.computeIfAbsent(spillRegister, k -> new ArrayList<>()).add(varName);
-                    }
-                }
-            }
-
-            return optimized;
-
-        } catch (Exception e) {
-            System.err.println("Erro durante alocação de registros: " + e.getMessage());
-            e.printStackTrace();
+        if (inlining.getInlinedCount() + scalars.getReplacedCount() + promotion.getPromotedCount() + reduction.getReducedCount()
+                + hoisting.getHoistedCount() + devirtualization.getDevirtualizedCount() == 0) {
             return ollirResult;
         }
+
+        // O novo resultado mantém os relatórios das fases anteriores
+        var previous = new JmmSemanticsResult((JmmNode) null, null, ollirResult.getReports(), ollirResult.getConfig());
+        return new OllirResult(previous, code, Collections.emptyList());
     }
 }
@@ -0,0 +1,133 @@
+package pt.up.fe.comp2025.optimization;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local value numbering for the OLLIR generated by {@link OllirExprGeneratorVisitor}.
+ * <p>
+ * Keeps, for the basic block that is currently being generated, the temporary that already holds the value of each
+ * expression, so that an equal expression can reuse it instead of being computed again. Entries are invalidated when
+ * one of their operands is assigned, when memory is written (array stores, putfield and calls) and at every label,
+ * since a label starts a new basic block.
+ */
+public class LocalValueNumbering {
+
+    private static class Entry {
+        final String temp;
+        final Set<String> operands;
+        final boolean readsMemory;
+
+        Entry(String temp, Set<String> operands, boolean readsMemory) {
+            this.temp = temp;
+            this.operands = operands;
+            this.readsMemory = readsMemory;
+        }
+    }
+
+    private final Map<String, Entry> available = new HashMap<>();
+    private boolean enabled = false;
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        available.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Builds the key of a binary operation, ordering the operands of commutative operators so that
+     * {@code x * y} and {@code y * x} get the same value number.
+     */
+    public static String binaryKey(String lhs, String op, String type, String rhs) {
+        boolean commutative = op.equals("+") || op.equals("*") || op.equals("==") || op.equals("!=");
+        if (commutative && lhs.compareTo(rhs) > 0) {
+            return rhs + " " + op + type + " " + lhs;
+        }
+        return lhs + " " + op + type + " " + rhs;
+    }
+
+    /**
+     * Returns the temporary that already holds the value of the given expression, or null if there is none.
+     */
+    public String lookup(String key) {
+        if (!enabled) {
+            return null;
+        }
+
+        var entry = available.get(key);
+        return entry == null ? null : entry.temp;
+    }
+
+    /**
+     * Records that the given temporary holds the value of the expression.
+     *
+     * @param key          the expression, as built by the generator
+     * @param temp         the OLLIR code of the temporary (e.g. tmp3.i32)
+     * @param readsMemory  true if the value comes from an array element or a field
+     * @param operandCodes the OLLIR codes of the operands the value depends on
+     */
+    public void record(String key, String temp, boolean readsMemory, String... operandCodes) {
+        if (!enabled) {
+            return;
+        }
+
+        Set<String> operands = new HashSet<>();
+        for (String code : operandCodes) {
+            // Expressions with calls have side effects, so they never get a value number
+            if (code.contains("(")) {
+                return;
+            }
+
+            String name = operandName(code);
+            if (name != null) {
+                operands.add(name);
+            }
+        }
+
+        available.put(key, new Entry(temp, operands, readsMemory));
+    }
+
+    /**
+     * Invalidates every value that depends on the given variable, which has just been assigned.
+     */
+    public void killVar(String varName) {
+        available.values().removeIf(entry -> entry.operands.contains(varName));
+    }
+
+    /**
+     * Invalidates every value read from an array or a field, after a store or a call.
+     */
+    public void killMemory() {
+        Iterator<Entry> it = available.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().readsMemory) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Starts a new basic block.
+     */
+    public void clear() {
+        available.clear();
+    }
+
+    // Nome da variável de um operando OLLIR (a.i32 -> a), ou null se for um literal
+    private static String operandName(String code) {
+        int dotIndex = code.indexOf('.');
+        String name = dotIndex == -1 ? code : code.substring(0, dotIndex);
+
+        if (name.isEmpty() || Character.isDigit(name.charAt(0)) || name.equals("true") || name.equals("false")) {
+            return null;
+        }
+
+        return name;
+    }
+}
@@ -0,0 +1,460 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Inlines small methods of the compiled class into their call sites, working over the OLLIR code.
+ * <p>
+ * A call is inlined when the callee belongs to the same class, is not recursive (directly or through other methods of
+ * the class), is not varargs and its body has at most {@code budget} instructions. The callee locals, temporaries and
+ * labels are renamed, the arguments are assigned to the renamed parameters and every {@code ret} becomes an
+ * assignment to the destination of the call followed by a jump to the end of the inlined body. A virtual call is only
+ * inlined when its receiver cannot be null ({@code this} or a local that only holds new objects), so that a call on a
+ * null object still fails.
+ */
+public class MethodInlining {
+
+    public static final int DEFAULT_BUDGET = 16;
+
+    // Custo estimado de uma chamada: carregar o objeto, a instrução invoke e a criação da frame
+    private static final int CALL_OVERHEAD = 3;
+
+    private static final Pattern METHOD_HEADER_PATTERN =
+            Pattern.compile("^\\.method\\s+((?:(?:public|private|static|final|varargs)\\s+)*)([\\w$]+)\\((.*)\\)(\\.[\\w.$]+)\\s*\\{$");
+    private static final Pattern ASSIGN_CALL_PATTERN =
+            Pattern.compile("^(\\S+)\\s*:=\\s*(\\.[\\w.$]+)\\s+(invokevirtual|invokestatic)\\((.*)\\)(\\.[\\w.$]+);$");
+    private static final Pattern CALL_PATTERN =
+            Pattern.compile("^(invokevirtual|invokestatic)\\((.*)\\)(\\.[\\w.$]+);$");
+    private static final Pattern INVOKE_PATTERN =
+            Pattern.compile("invoke(?:virtual|static)\\(([^,]+), \"([\\w$]+)\"");
+    private static final Pattern ASSIGN_PATTERN = Pattern.compile("^([^\\s:]+)\\s*:=");
+    private static final Pattern RETURN_PATTERN = Pattern.compile("^ret(\\.[\\w.$]+)\\s*(.*);$");
+    private static final Pattern LABEL_PATTERN = Pattern.compile("^([\\w$]+):$");
+    private static final Pattern GOTO_PATTERN = Pattern.compile("goto\\s+([\\w$]+);$");
+    // Nome de uma variável seguido do tipo (a.i32, this.A), sem apanhar tipos nem literais
+    private static final Pattern OPERAND_NAME_PATTERN = Pattern.compile("(?<![\\w.$])([A-Za-z_$][\\w$]*)(?=\\.)");
+    private static final Pattern FIELD_POSITION_PATTERN = Pattern.compile("(?:get|put)field\\([^,]*,\\s*$");
+    private static final Pattern THIS_NAME_PATTERN = Pattern.compile("(?<![\\w.$])this(?=\\.)");
+    private static final Pattern THIS_PATTERN = Pattern.compile("(?<![\\w.$])this(?=[,)])");
+
+    /**
+     * A method of the OLLIR class, split into its header and instructions.
+     */
+    private static class OllirMethod {
+        final String header;
+        final String name;
+        final boolean isStatic;
+        final boolean isVarargs;
+        final List<String[]> params = new ArrayList<>(); // {nome, tipo}
+        final List<String> body;
+
+        OllirMethod(Matcher header, List<String> body) {
+            this.header = header.group(0);
+            String modifiers = header.group(1);
+            this.name = header.group(2);
+            this.isStatic = modifiers.contains("static");
+            this.isVarargs = modifiers.contains("varargs");
+            this.body = body;
+
+            for (String param : splitArguments(header.group(3))) {
+                int dotIndex = param.indexOf('.');
+                if (dotIndex > 0) {
+                    params.add(new String[]{param.substring(0, dotIndex), param.substring(dotIndex)});
+                }
+            }
+        }
+
+        int size() {
+            return (int) body.stream().filter(line -> !LABEL_PATTERN.matcher(line).matches()).count();
+        }
+    }
+
+    private final int budget;
+    private final List<String> report = new ArrayList<>();
+    private int inlinedCount = 0;
+    private int siteCounter = 0;
+
+    public MethodInlining() {
+        this(DEFAULT_BUDGET);
+    }
+
+    public MethodInlining(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Cost model report, one line per analysed call site.
+     */
+    public List<String> getReport() {
+        return report;
+    }
+
+    public int getInlinedCount() {
+        return inlinedCount;
+    }
+
+    public OllirResult apply(OllirResult ollirResult) {
+        String inlined = apply(ollirResult.getOllirCode(), ollirResult.getOllirClass().getClassName());
+
+        if (inlinedCount == 0) {
+            return ollirResult;
+        }
+
+        return new OllirResult(inlined, ollirResult.getConfig());
+    }
+
+    public String apply(String ollirCode, String className) {
+        List<String> lines = Arrays.asList(ollirCode.split("\n", -1));
+
+        // Separa o código em métodos, guardando onde começa e acaba cada um
+        Map<String, OllirMethod> methods = new LinkedHashMap<>();
+        Map<String, int[]> methodRanges = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            Matcher header = METHOD_HEADER_PATTERN.matcher(lines.get(i).trim());
+            if (!header.matches()) {
+                continue;
+            }
+
+            int start = i;
+            List<String> body = new ArrayList<>();
+            while (++i < lines.size() && !lines.get(i).trim().equals("}")) {
+                String line = lines.get(i).trim();
+                if (!line.isEmpty()) {
+                    body.add(line);
+                }
+            }
+
+            var method = new OllirMethod(header, body);
+            methods.put(method.name, method);
+            methodRanges.put(method.name, new int[]{start, i});
+        }
+
+        Set<String> recursive = findRecursiveMethods(methods, className);
+
+        // Processa primeiro os métodos folha, para que os seus corpos já estejam expandidos quando forem inlined
+        for (String methodName : bottomUpOrder(methods, className)) {
+            var method = methods.get(methodName);
+            List<String> newBody = new ArrayList<>();
+
+            List<String> methodLines = new ArrayList<>();
+            methodLines.add(method.header);
+            methodLines.addAll(method.body);
+            Set<String> nonNull = OllirTextUtils.findNonNullLocals(methodLines, 0, methodLines.size());
+
+            for (String line : method.body) {
+                List<String> expanded = tryInline(line, method, methods, recursive, nonNull, className);
+                newBody.addAll(expanded == null ? List.of(line) : expanded);
+            }
+
+            method.body.clear();
+            method.body.addAll(newBody);
+        }
+
+        // Reconstrói o código com os corpos atualizados
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            Matcher header = METHOD_HEADER_PATTERN.matcher(lines.get(i).trim());
+            if (header.matches() && methodRanges.containsKey(header.group(2))) {
+                var method = methods.get(header.group(2));
+                code.append(method.header).append("\n");
+                for (String inst : method.body) {
+                    code.append("   ").append(inst).append("\n");
+                }
+                code.append("}\n");
+                i = methodRanges.get(method.name)[1];
+                continue;
+            }
+
+            code.append(lines.get(i));
+            if (i < lines.size() - 1) {
+                code.append("\n");
+            }
+        }
+
+        return code.toString();
+    }
+
+    private List<String> tryInline(String line, OllirMethod caller, Map<String, OllirMethod> methods,
+                                   Set<String> recursive, Set<String> nonNull, String className) {
+        String dest = null;
+        String destType = null;
+        String callKind;
+        String callArgs;
+
+        Matcher assignCall = ASSIGN_CALL_PATTERN.matcher(line);
+        Matcher call = CALL_PATTERN.matcher(line);
+        if (assignCall.matches()) {
+            dest = assignCall.group(1);
+            destType = assignCall.group(2);
+            callKind = assignCall.group(3);
+            callArgs = assignCall.group(4);
+        } else if (call.matches()) {
+            callKind = call.group(1);
+            callArgs = call.group(2);
+        } else {
+            return null;
+        }
+
+        List<String> args = splitArguments(callArgs);
+        if (args.size() < 2 || !args.get(1).startsWith("\"")) {
+            return null;
+        }
+
+        String receiver = args.get(0);
+        String calleeName = args.get(1).substring(1, args.get(1).length() - 1);
+        List<String> callArgValues = args.subList(2, args.size());
+
+        var callee = methods.get(calleeName);
+        if (callee == null || !isOwnReceiver(callKind, receiver, className)) {
+            return null;
+        }
+
+        String site = caller.name + " -> " + calleeName;
+        int size = callee.size();
+        // Instruções poupadas por chamada vs. instruções acrescentadas ao chamador
+        int saved = CALL_OVERHEAD + callArgValues.size();
+        int growth = size + callee.params.size() - 1;
+
+        String rejection = null;
+        if (callee.name.equals("main") || callee.isVarargs) {
+            rejection = "entry point or varargs method";
+        } else if (callee == caller || recursive.contains(calleeName)) {
+            rejection = "recursive";
+        } else if (callee.isStatic != callKind.equals("invokestatic")) {
+            rejection = "call kind does not match the method";
+        } else if (callee.params.size() != callArgValues.size()) {
+            rejection = "argument count does not match";
+        } else if (!callee.isStatic && !nonNull.contains(nameOf(receiver))) {
+            rejection = "receiver may be null";
+        } else if (size > budget) {
+            rejection = "size " + size + " exceeds budget " + budget;
+        }
+
+        if (rejection != null) {
+            report.add(String.format("[inline] %s: kept call (%s)", site, rejection));
+            return null;
+        }
+
+        report.add(String.format("[inline] %s: inlined, size %d, budget %d, saves ~%d instructions per call, grows caller by %d",
+                site, size, budget, saved, growth));
+        inlinedCount++;
+
+        return expand(callee, receiver, callArgValues, dest, destType);
+    }
+
+    private List<String> expand(OllirMethod callee, String receiver, List<String> argValues, String dest, String destType) {
+        int site = siteCounter++;
+        String suffix = "_i" + site;
+        String endLabel = "inline_end" + site;
+
+        // Variáveis do método chamado: parâmetros e tudo o que é atribuído no corpo
+        Set<String> calleeVars = new HashSet<>();
+        for (String[] param : callee.params) {
+            calleeVars.add(param[0]);
+        }
+        for (String inst : callee.body) {
+            Matcher assign = ASSIGN_PATTERN.matcher(inst);
+            if (assign.find()) {
+                String target = assign.group(1);
+                int endIndex = target.contains("[") ? target.indexOf('[') : target.indexOf('.');
+                calleeVars.add(endIndex == -1 ? target : target.substring(0, endIndex));
+            }
+        }
+
+        List<String> code = new ArrayList<>();
+
+        // Os argumentos passam a ser atribuições aos parâmetros renomeados
+        for (int i = 0; i < callee.params.size(); i++) {
+            String[] param = callee.params.get(i);
+            code.add(param[0] + suffix + param[1] + " :=" + param[1] + " " + argValues.get(i) + ";");
+        }
+
+        String receiverName = nameOf(receiver);
+        boolean jumpsToEnd = false;
+
+        for (int i = 0; i < callee.body.size(); i++) {
+            String inst = renameOperands(callee.body.get(i), calleeVars, suffix);
+
+            // Dentro do corpo inlined, this passa a ser o objeto em que o método foi chamado
+            if (!receiverName.equals("this")) {
+                inst = THIS_NAME_PATTERN.matcher(inst).replaceAll(Matcher.quoteReplacement(receiverName));
+                inst = THIS_PATTERN.matcher(inst).replaceAll(Matcher.quoteReplacement(receiver));
+            }
+
+            Matcher label = LABEL_PATTERN.matcher(inst);
+            if (label.matches()) {
+                code.add(label.group(1) + suffix + ":");
+                continue;
+            }
+
+            Matcher jump = GOTO_PATTERN.matcher(inst);
+            if (jump.find()) {
+                inst = inst.substring(0, jump.start(1)) + jump.group(1) + suffix + ";";
+            }
+
+            Matcher ret = RETURN_PATTERN.matcher(inst);
+            if (ret.matches()) {
+                String value = ret.group(2).trim();
+                if (dest != null && !value.isEmpty()) {
+                    code.add(dest + " :=" + destType + " " + value + ";");
+                }
+
+                // O último ret cai diretamente no fim do corpo
+                if (i < callee.body.size() - 1) {
+                    code.add("goto " + endLabel + ";");
+                    jumpsToEnd = true;
+                }
+                continue;
+            }
+
+            code.add(inst);
+        }
+
+        if (jumpsToEnd) {
+            code.add(endLabel + ":");
+        }
+
+        return code;
+    }
+
+    private static String renameOperands(String inst, Set<String> vars, String suffix) {
+        Matcher matcher = OPERAND_NAME_PATTERN.matcher(inst);
+        StringBuilder renamed = new StringBuilder();
+        int last = 0;
+
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            boolean isFieldName = FIELD_POSITION_PATTERN.matcher(inst.substring(0, matcher.start())).find();
+
+            if (vars.contains(name) && !isFieldName) {
+                renamed.append(inst, last, matcher.end()).append(suffix);
+                last = matcher.end();
+            }
+        }
+
+        renamed.append(inst.substring(last));
+        return renamed.toString();
+    }
+
+    private static String nameOf(String operand) {
+        return operand.contains(".") ? operand.substring(0, operand.indexOf('.')) : operand;
+    }
+
+    private static boolean isOwnReceiver(String callKind, String receiver, String className) {
+        if (callKind.equals("invokestatic")) {
+            return receiver.equals(className);
+        }
+
+        if (receiver.equals("this")) {
+            return true;
+        }
+
+        // this.A ou uma variável local do tipo da própria classe (a.A)
+        int dotIndex = receiver.indexOf('.');
+        return dotIndex > 0 && receiver.indexOf('.', dotIndex + 1) == -1
+                && receiver.substring(dotIndex + 1).equals(className);
+    }
+
+    private static Map<String, Set<String>> buildCallGraph(Map<String, OllirMethod> methods, String className) {
+        Map<String, Set<String>> callGraph = new HashMap<>();
+
+        for (var method : methods.values()) {
+            Set<String> callees = new HashSet<>();
+            for (String inst : method.body) {
+                Matcher invoke = INVOKE_PATTERN.matcher(inst);
+                while (invoke.find()) {
+                    String callee = invoke.group(2);
+                    if (methods.containsKey(callee) && isOwnReceiver(inst.contains("invokestatic") ? "invokestatic" : "invokevirtual",
+                            invoke.group(1).trim(), className)) {
+                        callees.add(callee);
+                    }
+                }
+            }
+            callGraph.put(method.name, callees);
+        }
+
+        return callGraph;
+    }
+
+    // Métodos que conseguem chegar a si próprios no grafo de chamadas
+    private static Set<String> findRecursiveMethods(Map<String, OllirMethod> methods, String className) {
+        var callGraph = buildCallGraph(methods, className);
+        Set<String> recursive = new HashSet<>();
+
+        for (String method : callGraph.keySet()) {
+            Deque<String> worklist = new ArrayDeque<>(callGraph.get(method));
+            Set<String> visited = new HashSet<>();
+
+            while (!worklist.isEmpty()) {
+                String current = worklist.pop();
+                if (current.equals(method)) {
+                    recursive.add(method);
+                    break;
+                }
+
+                if (visited.add(current)) {
+                    worklist.addAll(callGraph.getOrDefault(current, Collections.emptySet()));
+                }
+            }
+        }
+
+        return recursive;
+    }
+
+    private static List<String> bottomUpOrder(Map<String, OllirMethod> methods, String className) {
+        var callGraph = buildCallGraph(methods, className);
+        List<String> order = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+
+        for (String method : methods.keySet()) {
+            visitPostOrder(method, callGraph, visited, order);
+        }
+
+        return order;
+    }
+
+    private static void visitPostOrder(String method, Map<String, Set<String>> callGraph, Set<String> visited, List<String> order) {
+        if (!visited.add(method)) {
+            return;
+        }
+
+        for (String callee : callGraph.getOrDefault(method, Collections.emptySet())) {
+            visitPostOrder(callee, callGraph, visited, order);
+        }
+
+        order.add(method);
+    }
+
+    // Divide os argumentos de uma chamada pelas vírgulas que não estão dentro de parêntesis ou aspas
+    private static List<String> splitArguments(String args) {
+        List<String> result = new ArrayList<>();
+        int depth = 0;
+        boolean inString = false;
+        int start = 0;
+
+        for (int i = 0; i < args.length(); i++) {
+            char c = args.charAt(i);
+            if (c == '"') {
+                inString = !inString;
+            } else if (!inString && c == '(') {
+                depth++;
+            } else if (!inString && c == ')') {
+                depth--;
+            } else if (!inString && depth == 0 && c == ',') {
+                result.add(args.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+
+        String last = args.substring(start).trim();
+        if (!last.isEmpty()) {
+            result.add(last);
+        }
+
+        return result;
+    }
+}
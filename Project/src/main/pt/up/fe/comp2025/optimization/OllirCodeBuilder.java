@@ -0,0 +1,82 @@
+package pt.up.fe.comp2025.optimization;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only OLLIR code, made of text and of other builders, which are kept by reference instead of copied.
+ * <p>
+ * The computation of an expression contains the computations of its operands, so copying them into a new string at
+ * each level makes deeply nested expressions quadratic. Here a parent only keeps a reference to the code of each
+ * child, and the text is put together once, by {@link #appendTo(StringBuilder)} or {@link #toString()}, when the
+ * statement that uses the expression is generated. A builder should not change after it is appended to another.
+ */
+public class OllirCodeBuilder {
+
+    // Cada segmento é uma String ou outro OllirCodeBuilder
+    private final List<Object> segments = new ArrayList<>();
+
+    // Texto ainda não fechado num segmento, para os pedaços pequenos não virarem um segmento cada
+    private final StringBuilder text = new StringBuilder();
+
+    public OllirCodeBuilder append(String code) {
+        text.append(code);
+        return this;
+    }
+
+    public OllirCodeBuilder append(int value) {
+        text.append(value);
+        return this;
+    }
+
+    public OllirCodeBuilder append(CharSequence code) {
+        text.append(code);
+        return this;
+    }
+
+    /**
+     * Appends the code of another builder, without copying it.
+     */
+    public OllirCodeBuilder append(OllirCodeBuilder code) {
+        if (code.isEmpty()) {
+            return this;
+        }
+
+        closeText();
+        segments.add(code);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return text.isEmpty() && segments.isEmpty();
+    }
+
+    /**
+     * Writes all the code, in order, to the given builder.
+     */
+    public void appendTo(StringBuilder out) {
+        for (Object segment : segments) {
+            if (segment instanceof OllirCodeBuilder child) {
+                child.appendTo(out);
+            } else {
+                out.append((String) segment);
+            }
+        }
+
+        out.append(text);
+    }
+
+    private void closeText() {
+        if (!text.isEmpty()) {
+            segments.add(text.toString());
+            text.setLength(0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        var out = new StringBuilder();
+        appendTo(out);
+        return out.toString();
+    }
+}
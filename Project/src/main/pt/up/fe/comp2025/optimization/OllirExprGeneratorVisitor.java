@@ -2,8 +2,8 @@ package pt.up.fe.comp2025.optimization;
 
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp2025.ast.TypeUtils;
 import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
 
@@ -17,7 +17,7 @@ import static pt.up.fe.comp2025.ast.Kind.*;
 /**
  * Generates OLLIR code from JmmNodes that are expressions.
  */
-public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExprResult> {
+public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult> {
 
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
@@ -32,10 +32,19 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     private final Map<String, String> constantValues = new HashMap<>();
     private boolean optimizationsEnabled = false;
 
-    public OllirExprGeneratorVisitor(SymbolTable table) {
+    // Reuse of values already computed in the current basic block
+    private final LocalValueNumbering valueNumbering = new LocalValueNumbering();
+
+    private final VarArgsLowering varArgs;
+
+    // Métodos puros, cujas chamadas repetidas reutilizam o valor (null quando não há análise)
+    private PurityAnalysis purity;
+
+    public OllirExprGeneratorVisitor(SymbolTable table, OptUtils ollirTypes) {
         this.table = table;
         this.types = new TypeUtils(table);
-        this.ollirTypes = new OptUtils(types);
+        this.ollirTypes = ollirTypes;
+        this.varArgs = new VarArgsLowering(table, ollirTypes);
     }
 
 
@@ -48,17 +57,32 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         addVisit(METHOD_CALL, this::visitMethodCall);
         addVisit(LOGICAL, this::visitLogicalExpr);
         addVisit(COMPARISON, this::visitComparisonExpr);
+        addVisit(EQUALITY, this::visitComparisonExpr);
         addVisit(BOOLEAN_LITERAL, this::visitBooleanLiteral);
         addVisit(ARRAY_ACCESS_EXPR, this::visitArrayAccess);
         addVisit(ARRAY_LENGTH_EXPR, this::visitArrayLength);
         addVisit(NEW_CLASS_EXPR, this::visitNewClassExpr);
         addVisit(EXPR_EXPR, this::visitExprExpr);
+        addVisit(NOT_EXPR, this::visitNotExpr);
         setDefaultVisit(this::defaultVisit);
     }
 
     public void setOptimizationsEnabled(boolean enabled) {
         this.optimizationsEnabled = enabled;
     }
+
+    public void setPurityAnalysis(PurityAnalysis purity) {
+        this.purity = purity;
+    }
+
+    public VarArgsLowering getVarArgsLowering() {
+        return varArgs;
+    }
+
+    public LocalValueNumbering getValueNumbering() {
+        return valueNumbering;
+    }
+
     public void registerConstantValue(String varName, String value, String typeString) {
         if (optimizationsEnabled) {
             constantValues.put(varName, value + typeString);
@@ -66,7 +90,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     }
 
     private OllirExprResult visitMethodCall(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
+        OllirCodeBuilder computation = new OllirCodeBuilder();
 
         if (node == null || node.getNumChildren() < 2) {
             return OllirExprResult.EMPTY;
@@ -97,44 +121,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         String methodName = node.getChild(1).get("name");
 
-        List<String> argCodes = new ArrayList<>();
-        JmmNode methodCallNode = node.getChild(1);
-        for (int i = 0; i < methodCallNode.getNumChildren(); i++) {
-            JmmNode argNode = methodCallNode.getChild(i);
-            OllirExprResult arg = visit(argNode);
-            computation.append(arg.getComputation());
-
-            String temp = arg.getCode();
-            // Se for uma chamada ou operação, forçamos atribuição temporária
-            if (argNode.getKind().equals("MethodCall") || arg.getCode().contains("invoke") || arg.getCode().contains("+")) {
-                String tmp = ollirTypes.nextTemp() + ".i32";
-                computation.append(tmp).append(" :=.i32 ").append(arg.getCode()).append(END_STMT);
-                temp = tmp;
-            }
-
-            argCodes.add(temp);
-        }
-
-        boolean isVarArgs = isVarArgsMethod(methodName);
-        if (isVarArgs) {
-            int numParams = table.getParameters(methodName).size() - 1;
-            int numArgs = (methodCallNode.getNumChildren() - numParams) - 1;
-            String arrayTemp = ollirTypes.nextTemp() + ".array.i32";
-            computation.append(arrayTemp).append(" :=.array.i32 new(array, ")
-                    .append(numArgs).append(".i32).array.i32;").append("\n");
-
-            for (int i = 1; i < numArgs + 1; i++) {
-                int idx = i + numParams;
-                OllirExprResult arg = visit(methodCallNode.getChild(idx));
-                computation.append(arg.getComputation());
-
-                String assign = arrayTemp + "[" + (i - 1) + ".i32].i32 :=.i32 " + arg.getCode() + ";\n";
-                computation.append(assign);
-            }
-
-            argCodes.clear();
-            argCodes.add(arrayTemp);
-        }
+        List<String> argCodes = visitArguments(node, computation);
 
         Type returnType = TypeUtils.getExprType(node, (JmmSymbolTable) table);
         String returnTypeStr = ollirTypes.toOllirType(returnType);
@@ -150,6 +137,26 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         }
         invocation.append(")").append(returnTypeStr);
 
+        // Uma chamada a um método puro não escreve nada e dá o mesmo valor para os mesmos argumentos
+        boolean isPureCall = purity != null && !isStaticCall && objectCode.endsWith("." + table.getClassName())
+                && purity.isPure(methodName) && !returnTypeStr.equals(".V");
+        if (isPureCall) {
+            String key = invocation.toString();
+            String available = valueNumbering.lookup(key);
+            if (available != null) {
+                return new OllirExprResult(available, computation);
+            }
+
+            String tempVar = ollirTypes.nextTemp() + returnTypeStr;
+            computation.append(tempVar).append(" :=").append(returnTypeStr).append(" ").append(invocation)
+                    .append(END_STMT);
+
+            List<String> operands = new ArrayList<>(argCodes);
+            operands.add(objectCode);
+            valueNumbering.record(key, tempVar, false, operands.toArray(new String[0]));
+            return new OllirExprResult(tempVar, computation);
+        }
+
         boolean haveTempArgs = false;
         for (String arg : argCodes) {
             if (arg.contains("tmp")) {
@@ -158,6 +165,9 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             }
 
         }
+        // A chamada pode escrever em arrays e campos
+        valueNumbering.killMemory();
+
         // Decide se deve guardar em temporário ou não
         if (!returnTypeStr.equals(".V") && haveTempArgs) {
             String tempVar = ollirTypes.nextTemp() + returnTypeStr;
@@ -169,24 +179,65 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         return new OllirExprResult(invocation.toString(), computation);
     }
 
-    private OllirExprResult visitNewArrayExpr(JmmNode node, Void unused) {
-        // O primeiro filho é a expressão para o tamanho do array
-        var sizeExpr = visit(node.getChild(0));
+    /**
+     * Operands with the arguments of a call, whose code is added to the computation. The variable arguments of a call
+     * to a varargs method of the class are already replaced by an array.
+     */
+    public List<String> visitArguments(JmmNode call, OllirCodeBuilder computation) {
+        String methodName = call.getChild(1).get("name");
+
+        List<String> argCodes = new ArrayList<>();
+        List<Type> argTypes = new ArrayList<>();
+        JmmNode methodCallNode = call.getChild(1);
+        for (int i = 0; i < methodCallNode.getNumChildren(); i++) {
+            JmmNode argNode = methodCallNode.getChild(i);
+            OllirExprResult arg = visit(argNode);
+            computation.append(arg.getComputation());
+
+            // Com o tipo do argumento (int quando não se sabe, ex: chamadas a imports)
+            Type argType = types.getExprType(argNode);
+            argTypes.add(argType);
+
+            String temp = arg.getCode();
+            // Se for uma chamada ou operação, forçamos atribuição temporária (uma chamada já guardada num temporário
+            // fica como está)
+            if (arg.getCode().contains("invoke") || arg.getCode().contains("+")) {
+                String argOllirType = argType.getName().equals("unknown") ? ".i32" : ollirTypes.toOllirType(argType);
+                String tmp = ollirTypes.nextTemp() + argOllirType;
+                computation.append(tmp).append(" :=").append(argOllirType).append(" ").append(arg.getCode())
+                        .append(END_STMT);
+                temp = tmp;
+            }
 
-        StringBuilder computation = new StringBuilder();
+            argCodes.add(temp);
+        }
+
+        if (varArgs.isVarArgsMethod(methodName)) {
+            argCodes = varArgs.lower(call, methodName, argCodes, argTypes, computation);
+        }
 
-        // Código para calcular o tamanho
-        computation.append(sizeExpr.getComputation());
+        return argCodes;
+    }
+
+    private OllirExprResult visitNewArrayExpr(JmmNode node, Void unused) {
+        // Cada filho é a expressão para o tamanho de uma dimensão do array
+        OllirCodeBuilder computation = new OllirCodeBuilder();
+        List<String> sizes = new ArrayList<>();
+        for (var child : node.getChildren()) {
+            var sizeExpr = visit(child);
+            computation.append(sizeExpr.getComputation());
+            sizes.add(sizeExpr.getCode());
+        }
 
-        // Código para criar o array
-        Type arrayType = new Type("int", true);
+        // Código para criar o array, com o tipo dos elementos (int, boolean ou referências)
+        Type arrayType = types.getExprType(node);
         String ollirArrayType = ollirTypes.toOllirType(arrayType);
         String tempVar = ollirTypes.nextTemp();
         String code = tempVar + ollirArrayType;
 
         computation.append(code).append(SPACE)
                 .append(ASSIGN).append(ollirArrayType).append(SPACE)
-                .append("new(array, ").append(sizeExpr.getCode()).append(")").append(ollirArrayType).append(END_STMT);
+                .append("new(array, ").append(String.join(", ", sizes)).append(")").append(ollirArrayType).append(END_STMT);
 
         return new OllirExprResult(code, computation);
     }
@@ -200,24 +251,28 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
 
     private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
-        var lhs = visit(node.getChild(0));
-        var rhs = visit(node.getChild(1));
+        OllirCodeBuilder computation = new OllirCodeBuilder();
 
-        StringBuilder computation = new StringBuilder();
-
-        // code to compute the children
-        computation.append(lhs.getComputation());
-        computation.append(rhs.getComputation());
+        // code to compute the children, with calls and getfield moved to temporaries
+        String lhs = toOperand(visit(node.getChild(0)), computation);
+        String rhs = toOperand(visit(node.getChild(1)), computation);
 
         // code to compute self
         Type resType = types.getExprType(node);
         String resOllirType = ollirTypes.toOllirType(resType);
+
+        String key = LocalValueNumbering.binaryKey(lhs, node.get("op"), resOllirType, rhs);
+        String available = valueNumbering.lookup(key);
+        if (available != null) {
+            return new OllirExprResult(available, computation);
+        }
+
         String code = ollirTypes.nextTemp() + resOllirType;
 
         // Garantir que o lhs e rhs não sejam vazios
-        if (lhs.getCode().isEmpty() || rhs.getCode().isEmpty()) {
+        if (lhs.isEmpty() || rhs.isEmpty()) {
             // Caso um dos operandos seja vazio, retornar o outro
-            String validCode = !lhs.getCode().isEmpty() ? lhs.getCode() : rhs.getCode();
+            String validCode = !lhs.isEmpty() ? lhs : rhs;
             computation.append(code).append(SPACE)
                     .append(ASSIGN).append(resOllirType).append(SPACE)
                     .append(validCode).append(END_STMT);
@@ -225,11 +280,13 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             // Operação binária normal
             computation.append(code).append(SPACE)
                     .append(ASSIGN).append(resOllirType).append(SPACE)
-                    .append(lhs.getCode()).append(SPACE);
+                    .append(lhs).append(SPACE);
 
             String op = node.get("op");
             computation.append(op).append(resOllirType).append(SPACE)
-                    .append(rhs.getCode()).append(END_STMT);
+                    .append(rhs).append(END_STMT);
+
+            valueNumbering.record(key, code, false, lhs, rhs);
         }
 
         return new OllirExprResult(code, computation);
@@ -250,11 +307,17 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
         if (isField) {
             String className = table.getClassName();
-            StringBuilder computation = new StringBuilder();
+            String getField = "getfield(this." + className + ", " + id + ollirType + ")" + ollirType;
+
+            String available = valueNumbering.lookup(getField);
+            if (available != null) {
+                return new OllirExprResult(available);
+            }
+
+            OllirCodeBuilder computation = new OllirCodeBuilder();
             String temp = ollirTypes.nextTemp() + ollirType;
-            computation.append(temp).append(" :=").append(ollirType).append(" ").append("getfield(this.")
-                    .append(className).append(", ").append(id).append(ollirType).append(")")
-                    .append(ollirType).append(END_STMT);
+            computation.append(temp).append(" :=").append(ollirType).append(" ").append(getField).append(END_STMT);
+            valueNumbering.record(getField, temp, true);
             return new OllirExprResult(temp, computation);
         }
 
@@ -311,56 +374,133 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     }
 
     private OllirExprResult visitLogicalExpr(JmmNode node, Void unused) {
-        String operator = node.get("op");
-        var lhs = visit(node.getChild(0));
-        StringBuilder computation = new StringBuilder();
-        computation.append(lhs.getComputation());
-
         Type boolType = TypeUtils.newBoolType();
         String boolOllirType = ollirTypes.toOllirType(boolType);
         String resultTemp = ollirTypes.nextTemp() + boolOllirType;
-        String endLabel = "end" + ollirTypes.nextTemp();
+        String falseLabel = ollirTypes.nextLabel("false");
+        String endLabel = ollirTypes.nextLabel("end");
+
+        // O valor só é materializado no fim: a condição salta para falseLabel com curto-circuito
+        OllirCodeBuilder computation = new OllirCodeBuilder();
+        computation.append(visitCondition(node, falseLabel, false));
+        computation.append(resultTemp).append(" :=").append(boolOllirType).append(" 1").append(boolOllirType).append(END_STMT);
+        computation.append("goto ").append(endLabel).append(END_STMT);
+        computation.append(falseLabel).append(":\n");
+        computation.append(resultTemp).append(" :=").append(boolOllirType).append(" 0").append(boolOllirType).append(END_STMT);
+        computation.append(endLabel).append(":\n");
+        valueNumbering.clear();
 
-        // Store left side result first
-        computation.append(resultTemp).append(" :=").append(boolOllirType).append(" ").append(lhs.getCode()).append(END_STMT);
+        return new OllirExprResult(resultTemp, computation);
+    }
 
-        // Short-circuit condition - for AND we skip if left is false, for OR if left is true
-        boolean isAnd = operator.equals("&&");
-        String condition = isAnd ? " ==.bool 0.bool" : " ==.bool 1.bool";
-        computation.append("if (").append(resultTemp).append(condition).append(") goto ").append(endLabel).append(END_STMT);
+    /**
+     * Generates the code of a condition that is only used to branch: jumps to the given label when the condition
+     * evaluates to {@code jumpIf} and falls through otherwise. Comparisons become conditional jumps and {@code &&}
+     * and {@code ||} become jump trees, so no boolean value is materialized.
+     */
+    public OllirCodeBuilder visitCondition(JmmNode node, String label, boolean jumpIf) {
+        OllirCodeBuilder code = new OllirCodeBuilder();
+
+        switch (node.getKind()) {
+            case "ExprExpr" -> code.append(visitCondition(node.getChild(0), label, jumpIf));
+
+            // !c salta quando c tem o valor contrário
+            case "NotExpr" -> code.append(visitCondition(node.getChild(0), label, !jumpIf));
+
+            case "Logical" -> {
+                boolean isAnd = node.get("op").equals("&&");
+
+                if (isAnd != jumpIf) {
+                    // a && b salta se falso quando a ou b forem falsos; a || b salta se verdadeiro quando um for verdadeiro
+                    code.append(visitCondition(node.getChild(0), label, jumpIf));
+                    code.append(visitCondition(node.getChild(1), label, jumpIf));
+                } else {
+                    // O primeiro operando pode decidir o resultado sozinho e passar à frente do segundo
+                    String skipLabel = ollirTypes.nextLabel(isAnd ? "and" : "or");
+                    code.append(visitCondition(node.getChild(0), skipLabel, !jumpIf));
+                    code.append(visitCondition(node.getChild(1), label, jumpIf));
+                    code.append(skipLabel).append(":\n");
+                    valueNumbering.clear();
+                }
+            }
 
-        // Evaluate right side only when needed
-        var rhs = visit(node.getChild(1));
-        computation.append(rhs.getComputation());
+            case "Comparison", "Equality" -> {
+                String lhs = toOperand(visit(node.getChild(0)), code);
+                String rhs = toOperand(visit(node.getChild(1)), code);
+                String boolOllirType = ollirTypes.toOllirType(TypeUtils.newBoolType());
+                String operator = jumpIf ? node.get("op") : negateComparison(node.get("op"));
 
-        computation.append(resultTemp).append(" :=").append(boolOllirType).append(" ")
-                  .append(isAnd ? rhs.getCode() : "1.bool").append(END_STMT);
+                code.append("if (").append(lhs).append(SPACE)
+                        .append(operator).append(boolOllirType).append(SPACE)
+                        .append(rhs).append(") goto ").append(label).append(END_STMT);
+            }
 
-        computation.append(endLabel).append(":\n");
+            default -> {
+                String value = toOperand(visit(node), code);
+                code.append("if (").append(jumpIf ? "" : "!.bool ").append(value)
+                        .append(") goto ").append(label).append(END_STMT);
+            }
+        }
 
-        return new OllirExprResult(resultTemp, computation);
+        return code;
+    }
+
+    // As condições e as operações binárias só aceitam operandos simples, por isso as chamadas passam por um temporário
+    private String toOperand(OllirExprResult result, OllirCodeBuilder computation) {
+        computation.append(result.getComputation());
+
+        String code = result.getCode();
+        if (!code.contains("(")) {
+            return code;
+        }
+
+        String type = code.substring(code.lastIndexOf(')') + 1);
+        String temp = ollirTypes.nextTemp() + type;
+        computation.append(temp).append(SPACE).append(ASSIGN).append(type).append(SPACE)
+                .append(code).append(END_STMT);
+        return temp;
+    }
+
+    private static String negateComparison(String operator) {
+        return switch (operator) {
+            case "<" -> ">=";
+            case "<=" -> ">";
+            case ">" -> "<=";
+            case ">=" -> "<";
+            case "==" -> "!=";
+            case "!=" -> "==";
+            default -> throw new IllegalArgumentException("Not a comparison operator: " + operator);
+        };
     }
 
     private OllirExprResult visitComparisonExpr(JmmNode node, Void unused) {
         var lhs = visit(node.getChild(0));
         var rhs = visit(node.getChild(1));
 
-        StringBuilder computation = new StringBuilder();
+        OllirCodeBuilder computation = new OllirCodeBuilder();
         computation.append(lhs.getComputation());
         computation.append(rhs.getComputation());
 
         Type boolType = TypeUtils.newBoolType(); // Comparações resultam em boolean
         String boolOllirType = ollirTypes.toOllirType(boolType);
-        String temp = ollirTypes.nextTemp() + boolOllirType;
 
         String operator = node.get("op");
 
+        String key = LocalValueNumbering.binaryKey(lhs.getCode(), operator, boolOllirType, rhs.getCode());
+        String available = valueNumbering.lookup(key);
+        if (available != null) {
+            return new OllirExprResult(available, computation);
+        }
+
+        String temp = ollirTypes.nextTemp() + boolOllirType;
         computation.append(temp).append(SPACE)
                 .append(ASSIGN).append(boolOllirType).append(SPACE)
                 .append(lhs.getCode()).append(SPACE)
                 .append(operator).append(boolOllirType).append(SPACE)
                 .append(rhs.getCode()).append(END_STMT);
 
+        valueNumbering.record(key, temp, false, lhs.getCode(), rhs.getCode());
+
         return new OllirExprResult(temp, computation);
     }
 
@@ -377,16 +517,13 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         // O segundo filho é o índice
         OllirExprResult indexExpr = visit(node.getChild(1));
 
-        StringBuilder computation = new StringBuilder();
+        OllirCodeBuilder computation = new OllirCodeBuilder();
         computation.append(arrayRef.getComputation());
         computation.append(indexExpr.getComputation());
 
-        Type elementType = new Type("int", false);
+        Type elementType = types.getExprType(node);
         String elementOllirType = ollirTypes.toOllirType(elementType);
 
-        // Temporário para o resultado
-        String temp = ollirTypes.nextTemp() + elementOllirType;
-
         // Se o índice for uma chamada ou expressão complexa, força temporário
         String indexCode = indexExpr.getCode();
         if (indexCode.contains("invoke") || indexCode.contains("+") || indexCode.contains("-")) {
@@ -395,9 +532,20 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             indexCode = tmpIndex;
         }
 
+        String access = arrayRef.getCode() + "[" + indexCode + "]" + elementOllirType;
+        String available = valueNumbering.lookup(access);
+        if (available != null) {
+            return new OllirExprResult(available, computation);
+        }
+
+        // Temporário para o resultado
+        String temp = ollirTypes.nextTemp() + elementOllirType;
+
         computation.append(temp).append(SPACE)
                 .append(ASSIGN).append(elementOllirType).append(SPACE)
-                .append(arrayRef.getCode()).append("[").append(indexCode).append("]").append(elementOllirType).append(END_STMT);
+                .append(access).append(END_STMT);
+
+        valueNumbering.record(access, temp, true, arrayRef.getCode(), indexCode);
 
         return new OllirExprResult(temp, computation);
     }
@@ -406,20 +554,28 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         // Process the array reference
         OllirExprResult arrayRef = visit(node.getChild(0));
 
-        StringBuilder computation = new StringBuilder();
+        OllirCodeBuilder computation = new OllirCodeBuilder();
         computation.append(arrayRef.getComputation());
 
+        // The length of an array never changes, so it only depends on the array reference
+        String length = "arraylength(" + arrayRef.getCode() + ").i32";
+        String available = valueNumbering.lookup(length);
+        if (available != null) {
+            return new OllirExprResult(available, computation);
+        }
+
         // Create temporary for array length
         String temp = ollirTypes.nextTemp() + ".i32";
 
-        computation.append(temp).append(" :=.i32 arraylength(")
-                .append(arrayRef.getCode()).append(").i32").append(END_STMT);
+        computation.append(temp).append(" :=.i32 ").append(length).append(END_STMT);
+
+        valueNumbering.record(length, temp, false, arrayRef.getCode());
 
         return new OllirExprResult(temp, computation);
     }
 
     private OllirExprResult visitNewClassExpr(JmmNode node, Void unused) {
-        StringBuilder computation = new StringBuilder();
+        OllirCodeBuilder computation = new OllirCodeBuilder();
 
         Type type = TypeUtils.getExprType(node, (JmmSymbolTable) table);
         String ollirType = ollirTypes.toOllirType(type);
@@ -437,20 +593,25 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         return new OllirExprResult(tmp, computation);
     }
 
-    private boolean isVarArgsMethod(String methodName) {
-        if (table.getParameters(methodName) != null) {
-            for (var param : table.getParameters(methodName)) {
-                if (param.getType().hasAttribute("isVarArg") && param.getType().get("isVarArg").equals("true")) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
     private OllirExprResult visitExprExpr(JmmNode node, Void unused) {
         return visit(node.getChild(0));
     }
 
+    private OllirExprResult visitNotExpr(JmmNode node, Void unused) {
+        var operand = visit(node.getChild(0));
+
+        OllirCodeBuilder computation = new OllirCodeBuilder();
+        computation.append(operand.getComputation());
+
+        String boolOllirType = ollirTypes.toOllirType(TypeUtils.newBoolType());
+        String temp = ollirTypes.nextTemp() + boolOllirType;
+        computation.append(temp).append(SPACE)
+                .append(ASSIGN).append(boolOllirType).append(SPACE)
+                .append("!").append(boolOllirType).append(SPACE)
+                .append(operand.getCode()).append(END_STMT);
+
+        return new OllirExprResult(temp, computation);
+    }
+
 
 }
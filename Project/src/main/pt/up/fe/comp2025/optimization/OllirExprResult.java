@@ -2,25 +2,22 @@ package pt.up.fe.comp2025.optimization;
 
 public class OllirExprResult {
 
-    public static final OllirExprResult EMPTY = new OllirExprResult("", "");
+    public static final OllirExprResult EMPTY = new OllirExprResult("");
 
-    private final String computation;
+    // Código que calcula a expressão, partilhado com quem a usa em vez de copiado (ver OllirCodeBuilder)
+    private final OllirCodeBuilder computation;
     private final String code;
 
-    public OllirExprResult(String code, String computation) {
+    public OllirExprResult(String code, OllirCodeBuilder computation) {
         this.code = code;
         this.computation = computation;
     }
 
     public OllirExprResult(String code) {
-        this(code, "");
+        this(code, new OllirCodeBuilder());
     }
 
-    public OllirExprResult(String code, StringBuilder computation) {
-        this(code, computation.toString());
-    }
-
-    public String getComputation() {
+    public OllirCodeBuilder getComputation() {
         return computation;
     }
 
@@ -1,11 +1,15 @@
 package pt.up.fe.comp2025.optimization;
 
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp2025.ast.TypeUtils;
+import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -27,19 +31,43 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     private final OptUtils ollirTypes;
     private final OllirExprGeneratorVisitor exprVisitor;
     private boolean optimizationsEnabled = false;
+    private boolean tailCallsEnabled = false;
+
+    // Label no início do método atual, para onde saltam as chamadas recursivas em posição de cauda (null se nenhuma)
+    private String entryLabel;
 
 
     public OllirGeneratorVisitor(SymbolTable table) {
         this.table = table;
         this.types = new TypeUtils(table);
         this.ollirTypes = new OptUtils(types);
-        exprVisitor = new OllirExprGeneratorVisitor(table);
+        // Os dois visitors partilham os contadores, para que os temporários e labels nunca se repitam
+        exprVisitor = new OllirExprGeneratorVisitor(table, ollirTypes);
     }
 
     public void setOptimizationsEnabled(boolean enabled) {
         this.optimizationsEnabled = enabled;
         exprVisitor.setOptimizationsEnabled(enabled);
     }
+
+    public void setValueNumberingEnabled(boolean enabled) {
+        exprVisitor.getValueNumbering().setEnabled(enabled);
+    }
+
+    public void setVarArgsSharingEnabled(boolean enabled) {
+        exprVisitor.getVarArgsLowering().setEnabled(enabled);
+    }
+
+    /**
+     * Purity summaries of the methods of the class, so that repeated calls to pure methods get a value number.
+     */
+    public void setPurityAnalysis(PurityAnalysis purity) {
+        exprVisitor.setPurityAnalysis(purity);
+    }
+
+    public void setTailCallsEnabled(boolean enabled) {
+        this.tailCallsEnabled = enabled;
+    }
     @Override
     protected void buildVisitor() {
 
@@ -53,6 +81,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         addVisit(STMT, this::visitStmt);
         addVisit(IF_STMT, this::visitIfStmt);
         addVisit(WHILE_STMT, this::visitWhileStmt);
+        addVisit(BLOCK_STMT, this::visitBlockStmt);
         setDefaultVisit(this::defaultVisit);
     }
 
@@ -62,19 +91,22 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         StringBuilder code = new StringBuilder();
 
-        code.append(rhs.getComputation());
+        rhs.getComputation().appendTo(code);
 
         if (left.getKind().equals("ArrayAccessExpr")) {
             OllirExprResult arrayResult = exprVisitor.visit(left.getChild(0));
             OllirExprResult indexResult = exprVisitor.visit(left.getChild(1));
-            code.append(arrayResult.getComputation());
-            code.append(indexResult.getComputation());
-            Type elementType = types.getExprType(node.getChild(1));
+            arrayResult.getComputation().appendTo(code);
+            indexResult.getComputation().appendTo(code);
+            Type elementType = types.getExprType(left);
             String elementOllirType = ollirTypes.toOllirType(elementType);
             code.append(arrayResult.getCode()).append("[").append(indexResult.getCode()).append("]")
                     .append(elementOllirType)
                     .append(SPACE).append(ASSIGN).append(elementOllirType).append(SPACE)
                     .append(rhs.getCode()).append(END_STMT);
+
+            // Os valores lidos de arrays deixam de ser válidos
+            exprVisitor.getValueNumbering().killMemory();
         } else {
             String varName = left.get("name");
             boolean isField = isField(varName, left);
@@ -93,6 +125,8 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
                         .append(rhs.getCode())
                         .append(").V")
                         .append(END_STMT);
+
+                exprVisitor.getValueNumbering().killMemory();
             } else {
                 Type thisType = types.getExprType(left);
                 String typeString = ollirTypes.toOllirType(thisType);
@@ -101,6 +135,8 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
                         .append(ASSIGN).append(typeString).append(SPACE)
                         .append(rhs.getCode()).append(END_STMT);
 
+                exprVisitor.getValueNumbering().killVar(varName);
+
                 // Register constant value if RHS is a literal
                 JmmNode rhsNode = node.getChild(1);
                 if (optimizationsEnabled && rhsNode.getKind().equals("IntegerLiteral")) {
@@ -109,6 +145,11 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             }
         }
 
+        // Uma chamada que ainda não foi executada (ex: x = foo()) também pode escrever na memória
+        if (code.indexOf("invoke") != -1) {
+            exprVisitor.getValueNumbering().killMemory();
+        }
+
         return code.toString();
     }
 
@@ -151,13 +192,18 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         if (node.getNumChildren() > 0) {
             JmmNode expr = node.getChild(0);
+            if (isSelfTailCall(expr)) {
+                return visitTailCall(expr);
+            }
+
             var exprResult = exprVisitor.visit(expr);
             Type retType = types.getExprType(expr);
             String typeString = ollirTypes.toOllirType(retType);
 
-            if (!exprResult.getComputation().isEmpty()) {
+            // ret só aceita operandos, por isso o resultado de uma chamada também passa por um temporário
+            if (!exprResult.getComputation().isEmpty() || exprResult.getCode().contains("(")) {
                 String temp = ollirTypes.nextTemp() + typeString;
-                code.append(exprResult.getComputation());
+                exprResult.getComputation().appendTo(code);
                 code.append(temp).append(" := ").append(typeString)
                         .append(" ").append(exprResult.getCode()).append(END_STMT);
                 code.append("ret").append(typeString).append(" ").append(temp).append(END_STMT);
@@ -172,6 +218,90 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
 
+    // return this.m(...) dentro do próprio m (não estático), com um argumento por parâmetro
+    private boolean isSelfTailCall(JmmNode expr) {
+        while (EXPR_EXPR.check(expr)) {
+            expr = expr.getChild(0);
+        }
+
+        if (!tailCallsEnabled || !METHOD_CALL.check(expr) || !THIS_EXPR.check(expr.getChild(0))) {
+            return false;
+        }
+
+        var method = expr.getAncestor(METHOD_DECL).orElse(null);
+        if (method == null || method.getBoolean("isStatic", false)) {
+            return false;
+        }
+
+        String name = method.get("name");
+        return expr.getChild(1).get("name").equals(name)
+                && (exprVisitor.getVarArgsLowering().isVarArgsMethod(name)
+                || expr.getChild(1).getNumChildren() == table.getParameters(name).size());
+    }
+
+    /**
+     * A call to the current method in tail position becomes a jump to its start, after the parameters are given the
+     * values of the arguments. All the arguments are evaluated before any parameter changes, since they may use them.
+     */
+    private String visitTailCall(JmmNode expr) {
+        while (EXPR_EXPR.check(expr)) {
+            expr = expr.getChild(0);
+        }
+
+        var computation = new OllirCodeBuilder();
+        var args = exprVisitor.visitArguments(expr, computation);
+        var params = table.getParameters(expr.getChild(1).get("name"));
+
+        StringBuilder code = new StringBuilder();
+        computation.appendTo(code);
+
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < params.size(); i++) {
+            String paramType = ollirTypes.toOllirType(params.get(i).getType());
+            String param = params.get(i).getName() + paramType;
+            String arg = args.get(i);
+
+            // Só é copiado antes o que lê outro parâmetro, que pode mudar primeiro
+            if (arg.equals(param) || !readsParameter(arg, params)) {
+                values.add(arg);
+                continue;
+            }
+
+            String temp = ollirTypes.nextTemp() + paramType;
+            code.append(temp).append(SPACE).append(ASSIGN).append(paramType).append(SPACE).append(arg).append(END_STMT);
+            values.add(temp);
+        }
+
+        for (int i = 0; i < params.size(); i++) {
+            String paramType = ollirTypes.toOllirType(params.get(i).getType());
+            String param = params.get(i).getName() + paramType;
+            if (!values.get(i).equals(param)) {
+                code.append(param).append(SPACE).append(ASSIGN).append(paramType).append(SPACE).append(values.get(i))
+                        .append(END_STMT);
+            }
+        }
+
+        if (entryLabel == null) {
+            entryLabel = ollirTypes.nextLabel("tailcall");
+        }
+        code.append("goto ").append(entryLabel).append(END_STMT);
+
+        // A chamada podia escrever em arrays e campos, e os parâmetros mudaram
+        exprVisitor.getValueNumbering().clear();
+
+        return code.toString();
+    }
+
+    // Um operando simples (variável ou literal) só lê um parâmetro se for ele; o resto pode ler qualquer um
+    private static boolean readsParameter(String arg, List<Symbol> params) {
+        if (!arg.matches("[\\w$]+(\\.[\\w$]+)+")) {
+            return true;
+        }
+
+        String name = arg.substring(0, arg.indexOf('.'));
+        return params.stream().anyMatch(param -> param.getName().equals(name));
+    }
+
     private String visitParam(JmmNode node, Void unused) {
         // Verificar se o nó tem um filho tipo
         if (node.getNumChildren() == 0) {
@@ -198,11 +328,15 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     private String visitMethodDecl(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder(".method ");
 
+        exprVisitor.getValueNumbering().clear();
+
         boolean isPublic = node.getBoolean("isPublic", false);
         String name = node.get("name");
 
         if (isPublic) {
             code.append("public ");
+        } else if (node.getBoolean("isPrivate", false)) {
+            code.append("private ");
         }
 
         // Tratamento especial para método main
@@ -239,10 +373,15 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         code.append(L_BRACKET);
 
         // rest of its children stmts
+        entryLabel = null;
         var stmtsCode = node.getChildren(STMT).stream()
                 .map(this::visit)
                 .collect(Collectors.joining("\n   ", "   ", ""));
 
+        // As chamadas em posição de cauda saltam para aqui
+        if (entryLabel != null) {
+            code.append(entryLabel).append(":").append(NL);
+        }
         code.append(stmtsCode);
 
         // adiciona ret.V caso o metodo não contenha return e seja do tipo Void
@@ -274,17 +413,33 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         for (var field : table.getFields()) {
             String typeStr = ollirTypes.toOllirType(field.getType());
+
+            // Os campos const ficam estáticos e com o valor inicial, que o backend emite como ConstantValue
+            String constant = table instanceof JmmSymbolTable jmmTable ? jmmTable.getConstantValue(field.getName())
+                    : null;
+            if (constant != null) {
+                String value = constant.equals("true") ? "1" : constant.equals("false") ? "0" : constant;
+                code.append("    .field public static final ").append(field.getName()).append(typeStr)
+                        .append(" := ").append(value).append(END_STMT);
+                continue;
+            }
+
             code.append("    .field ").append(field.getName()).append(typeStr).append(END_STMT);
         }
 
+        // Os métodos são gerados antes, porque podem precisar de campos estáticos para os arrays dos varargs
+        StringBuilder methods = new StringBuilder();
+        for (var child : node.getChildren(METHOD_DECL)) {
+            var result = visit(child);
+            methods.append(result);
+        }
+        code.append(exprVisitor.getVarArgsLowering().getFieldDeclarations());
+
         code.append(NL);
         code.append(buildConstructor());
         code.append(NL);
 
-        for (var child : node.getChildren(METHOD_DECL)) {
-            var result = visit(child);
-            code.append(result);
-        }
+        code.append(methods);
 
         code.append(NL);
         code.append(R_BRACKET);
@@ -340,9 +495,17 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
             if (!node.getChildren().isEmpty()) {
                 var expr = exprVisitor.visit(node.getChild(0));
-                code.append(expr.getComputation());
-                code.append(expr.getCode());
-                code.append(END_STMT);
+                expr.getComputation().appendTo(code);
+
+                // Se a chamada já ficou num temporário, o valor é simplesmente descartado
+                if (expr.getCode().contains("(")) {
+                    code.append(expr.getCode());
+                    code.append(END_STMT);
+                }
+
+                if (code.indexOf("invoke") != -1) {
+                    exprVisitor.getValueNumbering().killMemory();
+                }
             }
 
             return code.toString();
@@ -350,42 +513,70 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         return visit(node.getChild(0));
     }
 
+    private String visitBlockStmt(JmmNode node, Void unused) {
+        StringBuilder code = new StringBuilder();
+
+        for (var stmt : node.getChildren()) {
+            code.append(visit(stmt));
+        }
+
+        return code.toString();
+    }
+
     private String visitIfStmt(JmmNode node, Void unused) {
 
         StringBuilder code = new StringBuilder();
 
-        var conditionResult = exprVisitor.visit(node.getChild(0));
-        code.append(conditionResult.getComputation());
-
         // labels únicos
-        String thenLabel = ollirTypes.nextIfLabel();
+        String elseLabel = ollirTypes.nextIfLabel();
         String endLabel = ollirTypes.nextEndIfLabel();
+        boolean hasElse = node.getNumChildren() > 2;
 
-        // if (cond) goto then
-        code.append("if (").append(conditionResult.getCode()).append(") goto ").append(thenLabel).append(END_STMT);
+        // Se a condição for falsa salta para o else (ou para o fim), senão continua para o then
+        exprVisitor.visitCondition(node.getChild(0), hasElse ? elseLabel : endLabel, false).appendTo(code);
 
-        // else branch (child 2)
-        var elseBranch = node.getChild(2);
-        for (var stmt : elseBranch.getChildren()) {
-            code.append(visit(stmt));
-        }
+        // then branch (child 1)
+        code.append(visit(node.getChild(1)));
 
-        // goto endif
-        code.append("goto ").append(endLabel).append(END_STMT);
+        // Um ramo que acaba sempre em return (ret, ou goto numa chamada em cauda) não continua para o fim do if
+        boolean thenReturns = alwaysReturns(node.getChild(1));
+        boolean reachesEnd = !hasElse || !thenReturns;
+        if (hasElse) {
+            // goto endif
+            if (!thenReturns) {
+                code.append("goto ").append(endLabel).append(END_STMT);
+            }
 
-        // then label
-        code.append(thenLabel).append(":").append(NL);
-        var thenBranch = node.getChild(1);
-        for (var stmt : thenBranch.getChildren()) {
-            code.append(visit(stmt));
+            // else branch (child 2)
+            code.append(elseLabel).append(":").append(NL);
+            exprVisitor.getValueNumbering().clear();
+            code.append(visit(node.getChild(2)));
+            reachesEnd |= !alwaysReturns(node.getChild(2));
         }
 
-        // endif label
-        code.append(endLabel).append(":").append(NL);
+        // endif label, que fica de fora quando nenhum ramo chega ao fim (ex: os dois acabam em return)
+        if (reachesEnd) {
+            code.append(endLabel).append(":").append(NL);
+        }
+        exprVisitor.getValueNumbering().clear();
 
         return code.toString();
     }
 
+    // Se o statement acaba sempre num return, qualquer que seja o caminho
+    private static boolean alwaysReturns(JmmNode stmt) {
+        if (RETURN_STMT.check(stmt)) {
+            return true;
+        }
+
+        if (BLOCK_STMT.check(stmt)) {
+            return stmt.getChildren().stream().anyMatch(OllirGeneratorVisitor::alwaysReturns);
+        }
+
+        return IF_STMT.check(stmt) && stmt.getNumChildren() > 2
+                && alwaysReturns(stmt.getChild(1)) && alwaysReturns(stmt.getChild(2));
+    }
+
     private String visitWhileStmt(JmmNode node, Void unused) {
 
         StringBuilder code = new StringBuilder();
@@ -396,24 +587,20 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         // label de início do loop
         code.append(whileLabel).append(":").append(NL);
+        exprVisitor.getValueNumbering().clear();
 
-        var conditionResult = exprVisitor.visit(node.getChild(0));
-        code.append(conditionResult.getComputation());
-
-        // if (!cond) goto end
-        code.append("if (!.bool ").append(conditionResult.getCode()).append(") goto ").append(endLabel).append(END_STMT);
+        // Sai do loop quando a condição for falsa
+        exprVisitor.visitCondition(node.getChild(0), endLabel, false).appendTo(code);
 
         // corpo do loop
-        var body = node.getChild(1);
-        for (var stmt : body.getChildren()) {
-            code.append(visit(stmt));
-        }
+        code.append(visit(node.getChild(1)));
 
         // volta ao início do loop
         code.append("goto ").append(whileLabel).append(END_STMT);
 
         // label de fim
         code.append(endLabel).append(":").append(NL);
+        exprVisitor.getValueNumbering().clear();
 
         return code.toString();
     }
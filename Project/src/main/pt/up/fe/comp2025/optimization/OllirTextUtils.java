@@ -0,0 +1,132 @@
+package pt.up.fe.comp2025.optimization;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Utility methods shared by the optimizations that work directly over the OLLIR code.
+ */
+public class OllirTextUtils {
+
+    private static final Pattern ASSIGN_PATTERN = Pattern.compile("^([\\w$]+)(?:\\.[\\w.$]+)?\\s*:=\\s*\\.[\\w.$]+\\s+(.*);$");
+    private static final Pattern COPY_PATTERN = Pattern.compile("^([\\w$]+)\\.[\\w.$]+$");
+    private static final Pattern PARAMS_PATTERN = Pattern.compile("^\\.method\\s.*?[\\w$]+\\((.*)\\)[\\w.$]*\\s*\\{$");
+    private static final Pattern LABEL_PATTERN = Pattern.compile("^([\\w$]+):$");
+    private static final Pattern RETURN_PATTERN = Pattern.compile("^ret\\.");
+    private static final Pattern JUMP_PATTERN = Pattern.compile("goto\\s+([\\w$]+);$");
+
+    private OllirTextUtils() {
+    }
+
+    /**
+     * Label defined by the line, or null if the line is not a label.
+     */
+    public static String labelOf(String line) {
+        Matcher label = LABEL_PATTERN.matcher(line.trim());
+        return label.matches() ? label.group(1) : null;
+    }
+
+    /**
+     * Label the line jumps to, with a {@code goto} or a conditional jump, or null if it does not jump.
+     */
+    public static String jumpTargetOf(String line) {
+        Matcher jump = JUMP_PATTERN.matcher(line.trim());
+        return jump.find() ? jump.group(1) : null;
+    }
+
+    /**
+     * Whether the line is a {@code ret} instruction. Assignments to variables whose name starts with ret (e.g.
+     * {@code retval.i32 := ...}) are not.
+     */
+    public static boolean isReturn(String line) {
+        return RETURN_PATTERN.matcher(line.trim()).find();
+    }
+
+    /**
+     * Whether control does not go past the line: a label starts another block, and a {@code goto} or {@code ret}
+     * leaves the current one. Conditional jumps also end the block.
+     */
+    public static boolean endsBlock(String line) {
+        return labelOf(line) != null || jumpTargetOf(line) != null || isReturn(line);
+    }
+
+    /**
+     * Line of the last {@code goto} back to the label at {@code start}, in the same method, or -1 if that line is not
+     * the label of a loop. Each loop starts at a label and ends at the last {@code goto} to it.
+     */
+    public static int findBackEdge(List<String> lines, int start) {
+        String label = labelOf(lines.get(start));
+        if (label == null) {
+            return -1;
+        }
+
+        int backEdge = -1;
+        for (int i = start + 1; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.startsWith(".method") || line.equals("}")) {
+                break;
+            }
+
+            if (line.endsWith("goto " + label + ";")) {
+                backEdge = i;
+            }
+        }
+
+        return backEdge;
+    }
+
+    public static String indentOf(String line) {
+        return line.substring(0, line.length() - line.stripLeading().length());
+    }
+
+    /**
+     * Locals of the method between the lines {@code methodStart} (its header) and {@code methodEnd} that are never
+     * null: {@code this} and the locals whose every assignment is a new object or a copy of another of these locals.
+     * Parameters are never included, since the caller may pass null.
+     */
+    public static Set<String> findNonNullLocals(List<String> lines, int methodStart, int methodEnd) {
+        Map<String, List<String>> assignments = new HashMap<>();
+        for (int i = methodStart + 1; i < methodEnd; i++) {
+            Matcher assign = ASSIGN_PATTERN.matcher(lines.get(i).trim());
+            if (assign.matches()) {
+                assignments.computeIfAbsent(assign.group(1), name -> new ArrayList<>()).add(assign.group(2).trim());
+            }
+        }
+
+        // Começa com todos os locais atribuídos e retira os que recebem outra coisa, até não mudar
+        Set<String> nonNull = new HashSet<>(assignments.keySet());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (var entry : assignments.entrySet()) {
+                if (!nonNull.contains(entry.getKey())) {
+                    continue;
+                }
+
+                for (String value : entry.getValue()) {
+                    Matcher copy = COPY_PATTERN.matcher(value);
+                    boolean copiesNonNull = copy.matches()
+                            && (copy.group(1).equals("this") || nonNull.contains(copy.group(1)));
+                    if (!value.startsWith("new(") && !copiesNonNull) {
+                        nonNull.remove(entry.getKey());
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // Os parâmetros não são atribuídos no método, mas podem vir a null
+        Matcher params = PARAMS_PATTERN.matcher(lines.get(methodStart).trim());
+        if (params.matches()) {
+            for (String param : params.group(1).split(",")) {
+                nonNull.remove(param.trim().split("\\.")[0]);
+            }
+        }
+
+        nonNull.add("this");
+        return nonNull;
+    }
+}
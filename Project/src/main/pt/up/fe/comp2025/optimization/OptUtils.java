@@ -29,14 +29,23 @@ public class OptUtils {
         return "endif" + ifCounter;
     }
 
+    // Labels internos às condições (curto-circuito), com prefixos diferentes dos de if e while
+    public String nextLabel(String prefix) {
+        var nextLabelNum = labels.add(prefix) - 1;
+
+        return prefix + nextLabelNum;
+    }
+
 
     private final AccumulatorMap<String> temporaries;
+    private final AccumulatorMap<String> labels;
 
     private final TypeUtils types;
 
     public OptUtils(TypeUtils types) {
         this.types = types;
         this.temporaries = new AccumulatorMap<>();
+        this.labels = new AccumulatorMap<>();
     }
 
 
@@ -65,7 +74,14 @@ public class OptUtils {
         String typeName = type.getName();
 
         if (type.isArray()) {
-            return ".array" + toOllirType(typeName);
+            // Os elementos de um array com mais dimensões são também arrays
+            Type elementType = TypeUtils.getElementType(type);
+            if (elementType.isArray()) {
+                return ".array" + toOllirType(elementType);
+            }
+
+            // Num array de Strings o elemento é só String (o tipo String sozinho já é tratado como o de args)
+            return ".array" + (typeName.equals("String") ? ".String" : toOllirType(typeName));
         }
 
         return toOllirType(typeName);
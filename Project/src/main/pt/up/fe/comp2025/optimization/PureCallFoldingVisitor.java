@@ -0,0 +1,359 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+
+import java.util.*;
+
+/**
+ * Replaces the calls to pure methods of the class whose arguments are all literals by the value they return, computed
+ * at compile time by interpreting the method. A call whose value is not used is removed.
+ * <p>
+ * The interpretation gives up (and the call is kept) when it takes more than {@code budget} steps, goes more than
+ * {@link #MAX_DEPTH} calls deep, divides by zero or reads a variable that was never assigned (or a const field not yet
+ * replaced by constant propagation). The object the method is called on must not be null: {@code this}, a new object,
+ * or a local that only holds new objects.
+ */
+public final class PureCallFoldingVisitor extends AJmmVisitor<Boolean, Boolean> {
+
+    public static final int DEFAULT_BUDGET = 10000;
+
+    private static final int MAX_DEPTH = 100;
+
+    private final SymbolTable symbolTable;
+    private final PurityAnalysis purity;
+    private final int budget;
+    private boolean changed = false;
+
+    // Instruções com chamadas cujo valor não é usado, retiradas depois da visita
+    private final List<JmmNode> unusedCalls = new ArrayList<>();
+
+    // Passos que ainda restam à chamada que está a ser calculada
+    private int steps;
+
+    // Resultado da interpretação quando desiste, propagado até à chamada que está a ser calculada
+    private static final Object GIVE_UP = new Object();
+
+    // Resultado de uma instrução que acaba normalmente, e a execução segue para a seguinte
+    private static final Object NEXT = new Object();
+
+    // Resultado de uma instrução return, com o valor devolvido
+    private record Returned(Object value) {
+    }
+
+    public PureCallFoldingVisitor(SymbolTable symbolTable, PurityAnalysis purity) {
+        this(symbolTable, purity, DEFAULT_BUDGET);
+    }
+
+    public PureCallFoldingVisitor(SymbolTable symbolTable, PurityAnalysis purity, int budget) {
+        this.symbolTable = symbolTable;
+        this.purity = purity;
+        this.budget = budget;
+        addVisits();
+    }
+
+    private void addVisits() {
+        addVisit("MethodCall", this::visitMethodCall);
+        setDefaultVisit(this::defaultVisit);
+    }
+
+    private Boolean visitMethodCall(JmmNode node, Boolean data) {
+        // Os argumentos podem ser chamadas que também ficam constantes
+        visitAllChildren(node, data);
+
+        String methodName = node.getChild(1).get("name");
+        if (!purity.isPure(methodName) || !isNonNullReceiver(node.getChild(0))) {
+            return true;
+        }
+
+        List<Object> args = new ArrayList<>();
+        for (var arg : node.getChild(1).getChildren()) {
+            Object value = literalValue(arg);
+            if (value == null) {
+                return true;
+            }
+            args.add(value);
+        }
+
+        steps = budget;
+        Object result = call(methodName, args, 0);
+        if (result == GIVE_UP) {
+            return true;
+        }
+
+        var parent = node.getParent();
+        if (parent.getKind().equals("ExprStmt")) {
+            unusedCalls.add(parent);
+        } else if (result instanceof Integer value) {
+            replace(node, "IntegerLiteral", String.valueOf(value));
+        } else if (result instanceof Boolean value) {
+            replace(node, "BooleanLiteral", String.valueOf(value));
+        } else {
+            return true;
+        }
+
+        changed = true;
+        return true;
+    }
+
+    private boolean isNonNullReceiver(JmmNode receiver) {
+        String className = symbolTable.getClassName();
+        switch (receiver.getKind()) {
+            case "ThisExpr":
+                return true;
+            case "NewClassExpr":
+                // Sem superclasse, o construtor não faz nada
+                return receiver.get("name").equals(className) && symbolTable.getSuper() == null
+                        && receiver.getNumChildren() == 0;
+            case "VarRefExpr":
+                break;
+            default:
+                return false;
+        }
+
+        var method = receiver.getAncestor("MethodDecl").orElse(null);
+        if (method == null) {
+            return false;
+        }
+
+        String name = receiver.get("name");
+        boolean isLocal = symbolTable.getLocalVariables(method.get("name")).stream()
+                .anyMatch(local -> local.getName().equals(name) && local.getType().getName().equals(className)
+                        && !local.getType().isArray());
+        if (!isLocal) {
+            return false;
+        }
+
+        // Todas as atribuições ao local são de objetos novos
+        boolean assigned = false;
+        for (var assign : method.getDescendants("AssignStmt")) {
+            var target = assign.getChild(0);
+            if (target.getKind().equals("VarRefExpr") && target.get("name").equals(name)) {
+                var value = assign.getChild(1);
+                if (!value.getKind().equals("NewClassExpr") || !isNonNullReceiver(value)) {
+                    return false;
+                }
+                assigned = true;
+            }
+        }
+
+        return assigned;
+    }
+
+    private Object call(String methodName, List<Object> args, int depth) {
+        var method = purity.getMethodDecl(methodName);
+        var params = symbolTable.getParameters(methodName);
+        if (depth > MAX_DEPTH || method == null || params.size() != args.size()) {
+            return GIVE_UP;
+        }
+
+        Map<String, Object> variables = new HashMap<>();
+        for (int i = 0; i < params.size(); i++) {
+            variables.put(params.get(i).getName(), args.get(i));
+        }
+
+        for (var stmt : method.getChildren()) {
+            if (!stmt.getKind().endsWith("Stmt")) {
+                continue;
+            }
+
+            Object outcome = execute(stmt, variables, depth);
+            if (outcome == GIVE_UP) {
+                return GIVE_UP;
+            }
+            if (outcome instanceof Returned returned) {
+                return returned.value();
+            }
+        }
+
+        return null;
+    }
+
+    // Devolve NEXT, um Returned ou GIVE_UP
+    private Object execute(JmmNode stmt, Map<String, Object> variables, int depth) {
+        if (!step()) {
+            return GIVE_UP;
+        }
+
+        switch (stmt.getKind()) {
+            case "BlockStmt": {
+                for (var child : stmt.getChildren()) {
+                    Object outcome = execute(child, variables, depth);
+                    if (outcome != NEXT) {
+                        return outcome;
+                    }
+                }
+                return NEXT;
+            }
+            case "AssignStmt": {
+                Object value = evaluate(stmt.getChild(1), variables, depth);
+                if (value == GIVE_UP) {
+                    return GIVE_UP;
+                }
+                variables.put(stmt.getChild(0).get("name"), value);
+                return NEXT;
+            }
+            case "ExprStmt":
+                return evaluate(stmt.getChild(0), variables, depth) == GIVE_UP ? GIVE_UP : NEXT;
+            case "ReturnStmt": {
+                Object value = evaluate(stmt.getChild(0), variables, depth);
+                return value == GIVE_UP ? GIVE_UP : new Returned(value);
+            }
+            case "IfStmt": {
+                if (!(evaluate(stmt.getChild(0), variables, depth) instanceof Boolean condition)) {
+                    return GIVE_UP;
+                }
+                if (condition) {
+                    return execute(stmt.getChild(1), variables, depth);
+                }
+                return stmt.getNumChildren() > 2 ? execute(stmt.getChild(2), variables, depth) : NEXT;
+            }
+            case "WhileStmt": {
+                while (true) {
+                    if (!(evaluate(stmt.getChild(0), variables, depth) instanceof Boolean condition)) {
+                        return GIVE_UP;
+                    }
+                    if (!condition) {
+                        return NEXT;
+                    }
+
+                    Object outcome = execute(stmt.getChild(1), variables, depth);
+                    if (outcome != NEXT) {
+                        return outcome;
+                    }
+                }
+            }
+            default:
+                return GIVE_UP;
+        }
+    }
+
+    // Devolve o valor da expressão ou GIVE_UP
+    private Object evaluate(JmmNode expr, Map<String, Object> variables, int depth) {
+        if (!step()) {
+            return GIVE_UP;
+        }
+
+        switch (expr.getKind()) {
+            case "IntegerLiteral", "BooleanLiteral": {
+                Object value = literalValue(expr);
+                return value == null ? GIVE_UP : value;
+            }
+            case "ExprExpr":
+                return evaluate(expr.getChild(0), variables, depth);
+            case "VarRefExpr": {
+                // Os campos const já foram substituídos pelo seu valor
+                Object value = variables.get(expr.get("name"));
+                return value == null ? GIVE_UP : value;
+            }
+            case "NotExpr":
+                return evaluate(expr.getChild(0), variables, depth) instanceof Boolean value ? !value : GIVE_UP;
+            case "Logical": {
+                if (!(evaluate(expr.getChild(0), variables, depth) instanceof Boolean left)) {
+                    return GIVE_UP;
+                }
+                // Com curto-circuito, o primeiro operando pode decidir o resultado sozinho
+                if (left == expr.get("op").equals("||")) {
+                    return left;
+                }
+                return evaluate(expr.getChild(1), variables, depth) instanceof Boolean right ? right : GIVE_UP;
+            }
+            case "BinaryExpr", "Comparison": {
+                if (!(evaluate(expr.getChild(0), variables, depth) instanceof Integer left)
+                        || !(evaluate(expr.getChild(1), variables, depth) instanceof Integer right)) {
+                    return GIVE_UP;
+                }
+                return arithmetic(expr.get("op"), left, right);
+            }
+            case "Equality": {
+                Object left = evaluate(expr.getChild(0), variables, depth);
+                if (left == null || left == GIVE_UP) {
+                    return GIVE_UP;
+                }
+                Object right = evaluate(expr.getChild(1), variables, depth);
+                if (right == null || right == GIVE_UP) {
+                    return GIVE_UP;
+                }
+                return expr.get("op").equals("==") == left.equals(right);
+            }
+            case "MethodCall": {
+                List<Object> args = new ArrayList<>();
+                for (var arg : expr.getChild(1).getChildren()) {
+                    Object value = evaluate(arg, variables, depth);
+                    if (value == GIVE_UP) {
+                        return GIVE_UP;
+                    }
+                    args.add(value);
+                }
+                return call(expr.getChild(1).get("name"), args, depth + 1);
+            }
+            default:
+                return GIVE_UP;
+        }
+    }
+
+    private static Object arithmetic(String op, int left, int right) {
+        return switch (op) {
+            case "+" -> left + right;
+            case "-" -> left - right;
+            case "*" -> left * right;
+            // A divisão por zero fica para quando o programa corre
+            case "/" -> right == 0 ? GIVE_UP : left / right;
+            case "<" -> left < right;
+            case "<=" -> left <= right;
+            case ">" -> left > right;
+            case ">=" -> left >= right;
+            default -> GIVE_UP;
+        };
+    }
+
+    // Gasta um passo, e diz se ainda havia passos
+    private boolean step() {
+        return --steps >= 0;
+    }
+
+    private static Object literalValue(JmmNode node) {
+        return switch (node.getKind()) {
+            case "IntegerLiteral" -> parseInt(node.get("value"));
+            case "BooleanLiteral" -> Boolean.valueOf(node.get("value"));
+            default -> null;
+        };
+    }
+
+    private static Integer parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void replace(JmmNode node, String kind, String value) {
+        JmmNode resultNode = new JmmNodeImpl(Collections.singletonList(kind));
+        resultNode.put("value", value);
+        node.replace(resultNode);
+    }
+
+    private Boolean defaultVisit(JmmNode node, Boolean data) {
+        return visitAllChildren(node, data);
+    }
+
+    public boolean optimize(JmmNode root) {
+        changed = false;
+        visit(root, true);
+
+        for (var stmt : unusedCalls) {
+            stmt.getParent().removeChild(stmt);
+        }
+        unusedCalls.clear();
+
+        return changed;
+    }
+
+    @Override
+    protected void buildVisitor() {
+        // Método requerido pela classe pai
+    }
+}
@@ -0,0 +1,154 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2025.symboltable.JmmSymbolTable;
+
+import java.util.*;
+
+/**
+ * Call graph of the methods of the class, with a purity summary for each method.
+ * <p>
+ * A method is pure when its result depends only on its arguments and it has no side effects: its parameters and
+ * locals are int or boolean, it reads no fields other than {@code const} ones, uses no arrays or objects, and only
+ * calls pure methods of the class on {@code this}. A call to a pure method can be reused while its arguments do not
+ * change, and removed or moved where it would run anyway, since nothing else can tell it ran. It may still not end or
+ * throw (e.g. a division by zero), so it should not be moved to where it would not run before.
+ * <p>
+ * Summaries start optimistic and impure methods are removed until nothing changes, so recursive methods can be pure.
+ * Like inlining, this takes the class as the whole program, so no subclass overrides its methods.
+ */
+public class PurityAnalysis {
+
+    private final SymbolTable table;
+
+    private final Map<String, JmmNode> methods = new LinkedHashMap<>();
+
+    // Métodos da classe chamados por cada método
+    private final Map<String, Set<String>> callees = new LinkedHashMap<>();
+
+    private final Set<String> pureMethods = new LinkedHashSet<>();
+
+    public PurityAnalysis(SymbolTable table, JmmNode root) {
+        this.table = table;
+
+        for (var method : root.getDescendants("MethodDecl")) {
+            methods.put(method.get("name"), method);
+        }
+
+        Set<String> candidates = new HashSet<>();
+        for (String name : table.getMethods()) {
+            var method = methods.get(name);
+            if (method == null) {
+                continue;
+            }
+
+            Set<String> called = new LinkedHashSet<>();
+            callees.put(name, called);
+            if (hasNoDirectEffects(method, called)) {
+                candidates.add(name);
+            }
+        }
+
+        // Tira os métodos que chamam métodos impuros, até não haver alterações
+        boolean changed = true;
+        while (changed) {
+            changed = candidates.removeIf(name -> !candidates.containsAll(callees.get(name)));
+        }
+
+        for (String name : table.getMethods()) {
+            if (candidates.contains(name)) {
+                pureMethods.add(name);
+            }
+        }
+    }
+
+    public boolean isPure(String methodName) {
+        return pureMethods.contains(methodName);
+    }
+
+    public Set<String> getPureMethods() {
+        return Collections.unmodifiableSet(pureMethods);
+    }
+
+    /**
+     * Methods of the class called by the given method, or an empty set if it is not a method of the class.
+     */
+    public Set<String> getCallees(String methodName) {
+        return Collections.unmodifiableSet(callees.getOrDefault(methodName, Collections.emptySet()));
+    }
+
+    /**
+     * Declaration of a method of the class, for the optimizations that look at its body.
+     */
+    public JmmNode getMethodDecl(String methodName) {
+        return methods.get(methodName);
+    }
+
+    // O método não tem efeitos nem lê nada além dos argumentos, fora as chamadas a métodos da classe, que junta
+    private boolean hasNoDirectEffects(JmmNode method, Set<String> called) {
+        String name = method.get("name");
+        if (name.equals("main") || method.getBoolean("isStatic", false)) {
+            return false;
+        }
+
+        var returnType = table.getReturnType(name);
+        if (!returnType.getName().equals("void") && !isIntOrBoolean(returnType)) {
+            return false;
+        }
+
+        Set<String> variables = new HashSet<>();
+        List<Symbol> symbols = new ArrayList<>(table.getParameters(name));
+        symbols.addAll(table.getLocalVariables(name));
+        for (var symbol : symbols) {
+            if (!isIntOrBoolean(symbol.getType())) {
+                return false;
+            }
+            variables.add(symbol.getName());
+        }
+
+        for (var node : method.getDescendants()) {
+            switch (node.getKind()) {
+                case "VarRefExpr" -> {
+                    String var = node.get("name");
+                    boolean isConstant = table instanceof JmmSymbolTable jmmTable && jmmTable.isConstant(var);
+                    if (!variables.contains(var) && !isConstant) {
+                        return false;
+                    }
+                }
+                case "ThisExpr" -> {
+                    if (!node.getParent().getKind().equals("MethodCall") || node.getIndexOfSelf() != 0) {
+                        return false;
+                    }
+                }
+                case "MethodCall" -> {
+                    String callee = node.getChild(1).get("name");
+                    if (!node.getChild(0).getKind().equals("ThisExpr") || !methods.containsKey(callee)) {
+                        return false;
+                    }
+                    called.add(callee);
+                }
+                case "MethodRefExpr" -> {
+                    if (!node.getParent().getKind().equals("MethodCall")) {
+                        return false;
+                    }
+                }
+                case "ArrayAccessExpr", "ArrayLengthExpr", "ArrayExpr", "NewArrayExpr", "NewClassExpr", "StringLiteral",
+                     "MethodLength" -> {
+                    return false;
+                }
+                default -> {
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isIntOrBoolean(Type type) {
+        return !type.isArray() && (type.getName().equals("int") || type.getName().equals("boolean"))
+                && !(type.hasAttribute("isVarArg") && type.get("isVarArg").equals("true"));
+    }
+}
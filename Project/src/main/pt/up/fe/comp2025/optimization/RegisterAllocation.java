@@ -1,520 +1,296 @@
 package pt.up.fe.comp2025.optimization;
 
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.VarScope;
+import org.specs.comp.ollir.inst.AssignInstruction;
+import org.specs.comp.ollir.inst.CondBranchInstruction;
+import org.specs.comp.ollir.inst.GotoInstruction;
+import org.specs.comp.ollir.inst.Instruction;
+import org.specs.comp.ollir.inst.ReturnInstruction;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
+import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.specs.util.SpecsLogs;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
+/**
+ * Register allocation by graph coloring, over the parsed OLLIR of each method.
+ * <p>
+ * Liveness is computed per method over its instructions. Two locals interfere when one is assigned while the other is
+ * live after the assignment, except for the source of a copy ({@code a := b}), which can share the register of the
+ * destination. The interference graph is colored with at most {@code maxRegisters} colors, and each color becomes a
+ * register after {@code this} and the parameters, which keep their registers.
+ * <p>
+ * When {@code maxRegisters} colors are not enough (or it is 0), the smallest number of colors found is used instead,
+ * and {@link #getRequiredRegisters(String)} tells how many that was (JmmOptimizationImpl reports it as a warning). The
+ * registers are written to the variable tables of the {@link OllirResult}, which is changed in place, so the code is
+ * not parsed again.
+ */
 public class RegisterAllocation {
 
-    // Estrutura para guardar informações de cada instrução
-    private static class InstructionInfo {
-        int id; // Identificador único da instrução no método
-        String instructionCode;
-        Set<String> def = new HashSet<>();
-        Set<String> use = new HashSet<>();
-        Set<String> in = new HashSet<>();
-        Set<String> out = new HashSet<>();
-        List<Integer> successors = new ArrayList<>(); // IDs das instruções sucessoras
-        List<Integer> predecessors = new ArrayList<>(); // IDs das instruções predecessoras
-
-        InstructionInfo(int id, String instructionCode) {
-            this.id = id;
-            this.instructionCode = instructionCode.trim();
-        }
-
-        @Override
-        public String toString() {
-            return String.format("ID: %d, Instr: '%s'\n  Def: %s\n  Use: %s\n  In: %s\n  Out: %s\n  Succ: %s\n  Pred: %s",
-                    id, instructionCode, def, use, in, out, successors, predecessors);
-        }
-    }
+    private static final String THIS = "this";
 
-    // Padrões Regex para extrair informações das instruções OLLIR
-    // Variáveis: nome seguido por .tipo (e.g., a.i32, temp1.bool, this.ClassName)
-    private static final Pattern VARIABLE_PATTERN = Pattern.compile("([a-zA-Z0-9_]+(?:\\.[a-zA-Z0-9_]+)*)");
-    // Atribuição: var := ...
-    private static final Pattern ASSIGN_PATTERN = Pattern.compile("^([^\\s:]+)\\s*:=\\..*");
-    private static final Pattern INVOKE_PATTERN = Pattern.compile("invoke\\w+\\(([^,)]+)(?:,.*)?\\)");
-    // Instruções de controle de fluxo (goto, if)
-    private static final Pattern GOTO_PATTERN = Pattern.compile("goto\\s+(\\w+);");
-    private static final Pattern IF_GOTO_PATTERN = Pattern.compile("if\\s*\\((.*)\\)\\s*goto\\s+(\\w+);");
-    // Labels
-    private static final Pattern LABEL_PATTERN = Pattern.compile("^(\\w+):");
-    // Return
-    private static final Pattern RETURN_PATTERN = Pattern.compile("ret\\.\\w+\\s+(.*);");
-
-    public static Map<String, String> allocateRegisters(OllirResult ollirResult, int maxRegisters) {
-
-    // Primeiro, executar a análise de vivacidade
-    analyze(ollirResult);
-
-    // Construir o grafo de interferência
-    Map<String, Set<String>> interferenceGraph = buildInterferenceGraph(ollirResult.getOllirCode());
-
-    // Colorir o grafo para alocar registradores
-    return colorGraph(interferenceGraph, maxRegisters);
-}
+    private final int maxRegisters;
 
-    private static Map<String, Set<String>> buildInterferenceGraph(String ollirCode) {
-    Map<String, Set<String>> graph = new HashMap<>();
+    // Número de registos usados pelas variáveis locais de cada método
+    private final Map<String, Integer> requiredRegisters = new LinkedHashMap<>();
 
-    // Obter estruturas de dados da análise de vivacidade
-    Map<String, List<InstructionInfo>> methodInstructions = analyzeMethodsLiveness(ollirCode);
+    public RegisterAllocation(int maxRegisters) {
+        this.maxRegisters = maxRegisters;
+    }
 
-    // Para cada método analisado
-    for (String methodName : methodInstructions.keySet()) {
-        List<InstructionInfo> instructions = methodInstructions.get(methodName);
+    /**
+     * Number of registers given to the locals of the method (not counting {@code this} and the parameters).
+     */
+    public int getRequiredRegisters(String methodName) {
+        return requiredRegisters.getOrDefault(methodName, 0);
+    }
 
-        // Extrair todas as variáveis usadas no método
-        Set<String> variables = new HashSet<>();
-        for (InstructionInfo instr : instructions) {
-            variables.addAll(instr.use);
-            variables.addAll(instr.def);
+    public OllirResult apply(OllirResult ollirResult) {
+        for (var method : ollirResult.getOllirClass().getMethods()) {
+            allocate(method);
         }
 
-        // Inicializar grafo com todas as variáveis
-        for (String var : variables) {
-            graph.putIfAbsent(var, new HashSet<>());
-        }
+        return ollirResult;
+    }
 
-        // Duas variáveis interferem se uma está viva no ponto onde a outra é definida
-        for (InstructionInfo instr : instructions) {
-            // Para cada variável definida nesta instrução
-            for (String defVar : instr.def) {
-                // Ela interfere com todas as variáveis vivas na saída da instrução
-                for (String liveVar : instr.out) {
-                    if (!defVar.equals(liveVar)) {
-                        addToGraph(graph, defVar, liveVar);
-                    }
-                }
+    private void allocate(Method method) {
+        var varTable = method.getVarTable();
+
+        // Os registos de 'this' e dos parâmetros não mudam, as variáveis locais começam a seguir
+        int firstRegister = method.isStaticMethod() ? 0 : 1;
+        List<String> locals = new ArrayList<>();
+        for (var entry : varTable.entrySet()) {
+            var descriptor = entry.getValue();
+            if (descriptor.getScope() == VarScope.LOCAL && !entry.getKey().equals(THIS)) {
+                locals.add(entry.getKey());
+            } else if (descriptor.getScope() == VarScope.PARAMETER || entry.getKey().equals(THIS)) {
+                firstRegister = Math.max(firstRegister, descriptor.getVirtualReg() + 1);
             }
         }
-    }
 
-    return graph;
-}
-
-    private static Map<String, List<InstructionInfo>> analyzeMethodsLiveness(String ollirCode) {
-    Map<String, List<InstructionInfo>> methodInstructions = new HashMap<>();
-    System.out.println("Construindo grafo de interferência...");
-
-    // Separa o código por métodos
-    String[] methods = ollirCode.split("\\.method");
-
-    for (int i = 1; i < methods.length; i++) { // Começar do 1 para pular o cabeçalho da classe
-        String methodCode = methods[i];
-
-        // Extrai o nome do método usando regex
-        Matcher methodNameMatcher = Pattern.compile("\\s*(public\\s+)?([\\w<>]+)\\s+(\\w+)\\s*\\(").matcher(methodCode);
-        if (!methodNameMatcher.find()) continue;
-
-        String methodName = methodNameMatcher.group(3);
+        // Ordem fixa, para a mesma entrada dar sempre os mesmos registos
+        Collections.sort(locals);
 
-        // Localiza o início e fim do corpo do método com segurança
-        int bodyStart = methodCode.indexOf('{');
-        if (bodyStart == -1) continue;
-
-        int bodyEnd = methodCode.lastIndexOf('}');
-        if (bodyEnd <= bodyStart) continue;
-
-        // Extrai o corpo do método
-        String methodBody = methodCode.substring(bodyStart + 1, bodyEnd).trim();
-
-        // Processa as instruções do método
-        List<String> lines = Arrays.stream(methodBody.split("\n"))
-                .map(String::trim)
-                .filter(line -> !line.isEmpty())
-                .collect(Collectors.toList());
-
-        List<InstructionInfo> instructions = new ArrayList<>();
-        Map<String, Integer> labelToInstructionId = new HashMap<>();
-        int instructionIdCounter = 0;
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < locals.size(); i++) {
+            index.put(locals.get(i), i);
+        }
 
-        // Processa cada instrução
-        for (String line : lines) {
-            // Processa instruções e labels
-            InstructionInfo info = new InstructionInfo(instructionIdCounter++, line);
-            instructions.add(info);
+        var graph = buildInterferenceGraph(method, index);
+        int[] colors = color(graph, Math.max(maxRegisters, 1));
 
-            // Verifica e registra labels
-            Matcher labelMatcher = Pattern.compile("(\\w+)\\s*:").matcher(line);
-            if (labelMatcher.find()) {
-                labelToInstructionId.put(labelMatcher.group(1), instructionIdCounter - 1);
-            }
+        int used = 0;
+        for (int i = 0; i < locals.size(); i++) {
+            varTable.get(locals.get(i)).setVirtualReg(firstRegister + colors[i]);
+            used = Math.max(used, colors[i] + 1);
         }
+        requiredRegisters.put(method.getMethodName(), used);
+    }
 
-        if (!instructions.isEmpty()) {
-            // Calcular Def/Use para cada instrução
-            calculateDefUse(instructions);
-
-            // Construir CFG
-            buildCFG(instructions, labelToInstructionId);
+    private static List<Set<Integer>> buildInterferenceGraph(Method method, Map<String, Integer> index) {
+        var instructions = method.getInstructions();
+        int size = instructions.size();
+
+        BitSet[] use = new BitSet[size];
+        int[] def = new int[size];
+        int[] copySource = new int[size];
+        for (int i = 0; i < size; i++) {
+            use[i] = new BitSet();
+            def[i] = -1;
+            copySource[i] = -1;
+            defUse(instructions.get(i), index, use, def, copySource, i);
+        }
 
-            // Calcular conjuntos In/Out
-            calculateInOutSets(instructions);
+        int[][] successors = getSuccessors(method);
 
-            // Armazena as instruções analisadas
-            methodInstructions.put(methodName, instructions);
+        // Vivacidade, de trás para a frente até não haver alterações
+        BitSet[] liveOut = new BitSet[size];
+        BitSet[] liveIn = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            liveOut[i] = new BitSet();
+            liveIn[i] = new BitSet();
         }
-    }
 
-    return methodInstructions;
-}
-
-    private static void addToGraph(Map<String, Set<String>> graph, String var1, String var2) {
-        graph.putIfAbsent(var1, new HashSet<>());
-        graph.putIfAbsent(var2, new HashSet<>());
-        graph.get(var1).add(var2);
-        graph.get(var2).add(var1);
-    }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = size - 1; i >= 0; i--) {
+                var out = new BitSet();
+                for (int successor : successors[i]) {
+                    out.or(liveIn[successor]);
+                }
 
-    private static Map<String, String> colorGraph(Map<String, Set<String>> interferenceGraph, int maxRegisters) {
-    System.out.println("Colorindo grafo com " + maxRegisters + " registradores");
-    Map<String, String> registerMap = new HashMap<>();
-
-    // Filtrar apenas variáveis reais
-    List<String> variables = interferenceGraph.keySet().stream()
-            .filter(var -> {
-                int dotIndex = var.indexOf('.');
-                return dotIndex > 0 && !var.startsWith(".");
-            })
-            .collect(Collectors.toList());
-
-    // Ordenar variáveis pelo número de interferências
-    variables.sort((v1, v2) ->
-            interferenceGraph.getOrDefault(v2, Collections.emptySet()).size() -
-            interferenceGraph.getOrDefault(v1, Collections.emptySet()).size());
-
-    // Pré-alocar 'ret.i32' para r1 se existir
-    if (variables.contains("ret.i32")) {
-        registerMap.put("ret.i32", "r1.i32");
-        variables.remove("ret.i32");
-    } else if (variables.contains("ret.V")) {
-        registerMap.put("ret.V", "r1");
-        variables.remove("ret.V");
-    }
+                var in = (BitSet) out.clone();
+                if (def[i] >= 0) {
+                    in.clear(def[i]);
+                }
+                in.or(use[i]);
 
-    // FASE 1: Aplicar algoritmo de coloração tradicional
-    for (String variable : variables) {
-        // Extrair o tipo da variável
-        int dotIndex = variable.indexOf('.');
-        String type = dotIndex > 0 ? variable.substring(dotIndex) : "";
-
-        Set<Integer> usedColors = new HashSet<>();
-
-        // Verificar cores usadas por vizinhos
-        Set<String> neighbors = interferenceGraph.getOrDefault(variable, Collections.emptySet());
-        for (String neighbor : neighbors) {
-            String neighborReg = registerMap.get(neighbor);
-            if (neighborReg != null && neighborReg.startsWith("r")) {
-                int regNum = Integer.parseInt(neighborReg.substring(1, neighborReg.indexOf('.') > 0 ?
-                    neighborReg.indexOf('.') : neighborReg.length()));
-                usedColors.add(regNum);
+                if (!in.equals(liveIn[i]) || !out.equals(liveOut[i])) {
+                    liveIn[i] = in;
+                    liveOut[i] = out;
+                    changed = true;
+                }
             }
         }
 
-        // Encontrar menor cor disponível
-        int color = 1;
-        while (usedColors.contains(color) && color <= maxRegisters) {
-            color++;
+        List<Set<Integer>> graph = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) {
+            graph.add(new HashSet<>());
         }
 
-        // Se encontrou uma cor válida, atribui
-        if (color <= maxRegisters) {
-            registerMap.put(variable, "r" + color + type);
-            System.out.println("  Variável " + variable + " alocada para r" + color);
-        }
-    }
+        for (int i = 0; i < size; i++) {
+            int defined = def[i];
+            if (defined < 0) {
+                continue;
+            }
 
-    // FASE 2: Alocação de registradores extras para variáveis em spill
-    List<String> unallocated = variables.stream()
-            .filter(v -> !registerMap.containsKey(v))
-            .collect(Collectors.toList());
-
-    if (!unallocated.isEmpty()) {
-        // Agrupando variáveis para compartilhamento de registradores
-        for (String variable : unallocated) {
-            int dotIndex = variable.indexOf('.');
-            String type = dotIndex > 0 ? variable.substring(dotIndex) : "";
-
-            // Determinar quais registradores estão em uso por vizinhos
-            Set<Integer> unavailableColors = new HashSet<>();
-            for (String neighbor : interferenceGraph.getOrDefault(variable, Collections.emptySet())) {
-                String neighborReg = registerMap.get(neighbor);
-                if (neighborReg != null && neighborReg.startsWith("r")) {
-                    int regNum = Integer.parseInt(neighborReg.substring(1, neighborReg.indexOf('.') > 0 ?
-                        neighborReg.indexOf('.') : neighborReg.length()));
-                    unavailableColors.add(regNum);
+            for (int live = liveOut[i].nextSetBit(0); live >= 0; live = liveOut[i].nextSetBit(live + 1)) {
+                if (live != defined && live != copySource[i]) {
+                    graph.get(defined).add(live);
+                    graph.get(live).add(defined);
                 }
             }
+        }
 
-            // Encontrar o primeiro registrador disponível
-            int regNum = maxRegisters + 1;
-            while (unavailableColors.contains(regNum)) {
-                regNum++;
+        // Variáveis que estão vivas à entrada do método (ex: usadas antes de atribuídas) interferem entre si
+        if (size > 0) {
+            var entry = liveIn[0];
+            for (int a = entry.nextSetBit(0); a >= 0; a = entry.nextSetBit(a + 1)) {
+                for (int b = entry.nextSetBit(a + 1); b >= 0; b = entry.nextSetBit(b + 1)) {
+                    graph.get(a).add(b);
+                    graph.get(b).add(a);
+                }
             }
-
-            registerMap.put(variable, "r" + regNum + type);
-            System.out.println("  Variável " + variable + " alocada para registrador alternativo r" + regNum);
         }
-    }
 
-    return registerMap;
-}
-
-    public static void analyze(OllirResult ollirResult) {
-        System.out.println("--- Iniciando Liveness Analysis ---");
-        String ollirCode = ollirResult.getOllirCode();
-        // Separa o código por métodos
-        String[] methods = ollirCode.split("\\.method");
-
-        for (int i = 1; i < methods.length; i++) { // Pula o cabeçalho da classe
-            String methodCode = ".method" + methods[i];
-            analyzeMethod(methodCode);
-        }
-        System.out.println("--- Liveness Analysis Concluída ---");
+        return graph;
     }
 
-    private static void analyzeMethod(String methodCode) {
-        Matcher methodHeaderMatcher = Pattern.compile("\\.method\\s+(public\\s+)?(\\w+)\\((.*?)\\)(.*?)\\{").matcher(methodCode);
-        if (!methodHeaderMatcher.find()) {
-            System.err.println("ERRO: Não foi possível parsear o cabeçalho do método: " );
-            return;
-        }
-        String methodName = methodHeaderMatcher.group(2);
-        System.out.println("\nAnalisando Método: " + methodName);
-
-        int bodyStart = methodCode.indexOf('{') + 1;
-        int bodyEnd = methodCode.lastIndexOf('}');
-        if (bodyStart <= 0 || bodyEnd < bodyStart) {
-            SpecsLogs.warn("Erro na análise: Não foi possível parsear o cabeçalho do método: " + methodName);
-            return;
-        }
-        String methodBody = methodCode.substring(bodyStart, bodyEnd).trim();
-
-        String[] lines = methodBody.split("\n");
-        List<InstructionInfo> instructions = new ArrayList<>();
-        Map<String, Integer> labelToInstructionId = new HashMap<>();
-        int instructionIdCounter = 0;
-
-        // 1. Parsear instruções e identificar labels
-        for (String line : lines) {
-            line = line.trim();
-            if (line.isEmpty()) continue;
-
-            Matcher labelMatcher = LABEL_PATTERN.matcher(line);
-            if (labelMatcher.find()) {
-                String label = labelMatcher.group(1);
-                labelToInstructionId.put(label, instructionIdCounter); // Próxima instrução pertence a este label
-                line = line.substring(labelMatcher.end()).trim();
-                if (line.isEmpty()) continue; // Linha continha apenas o label
+    private static void defUse(Instruction instruction, Map<String, Integer> index, BitSet[] use, int[] def,
+                               int[] copySource, int position) {
+        if (instruction instanceof AssignInstruction assign && !(assign.getDest() instanceof ArrayOperand)
+                && assign.getDest() instanceof Operand dest && index.containsKey(dest.getName())) {
+            def[position] = index.get(dest.getName());
+            addUses(assign.getRhs(), index, use[position]);
+
+            // Numa cópia, a origem pode ficar no mesmo registo que o destino
+            if (assign.getRhs() instanceof SingleOpInstruction copy && copy.getSingleOperand() instanceof Operand source
+                    && !(source instanceof ArrayOperand) && index.containsKey(source.getName())) {
+                copySource[position] = index.get(source.getName());
             }
-
-            instructions.add(new InstructionInfo(instructionIdCounter++, line));
-        }
-
-        if (instructions.isEmpty()) {
-            System.out.println("Método " + methodName + " não possui instruções.");
             return;
         }
 
-        // 2. Calcular Def e Use para cada instrução
-        calculateDefUse(instructions);
-
-        // 3. Construir CFG (calcular sucessores e predecessores)
-        buildCFG(instructions, labelToInstructionId);
+        addUses(instruction, index, use[position]);
+    }
 
-        // 4. Calcular In e Out iterativamente
-        calculateInOutSets(instructions);
+    private static void addUses(TreeNode node, Map<String, Integer> index, BitSet uses) {
+        if (node instanceof Operand operand && index.containsKey(operand.getName())) {
+            uses.set(index.get(operand.getName()));
+        }
 
-        // 5. Imprimir resultados para depuração
-        System.out.println("Resultados da Liveness Analysis para o método: " + methodName);
-        for (InstructionInfo info : instructions) {
-            System.out.println(info);
+        for (var child : node.getChildren()) {
+            addUses(child, index, uses);
         }
     }
 
-    private static void calculateDefUse(List<InstructionInfo> instructions) {
-        System.out.println("Calculando Def/Use...");
-        for (InstructionInfo info : instructions) {
-            String instr = info.instructionCode;
-
-            // Def: Variável à esquerda de ':='
-            Matcher assignMatcher = ASSIGN_PATTERN.matcher(instr);
-            if (assignMatcher.find()) {
-                String definedVar = assignMatcher.group(1);
-                if (!definedVar.contains("(")) {
-                     info.def.add(definedVar);
-                }
-            }
+    // Sucessores de cada instrução, pela posição na lista de instruções do método
+    private static int[][] getSuccessors(Method method) {
+        var instructions = method.getInstructions();
 
-            // Use: Variáveis usadas na instrução
-            Matcher varMatcher = VARIABLE_PATTERN.matcher(instr);
-            List<String> potentialUses = new ArrayList<>();
-            while (varMatcher.find()) {
-                potentialUses.add(varMatcher.group(1));
-            }
-
-            // Remover a variável definida (se houver) da lista de usos potenciais
-            if (!info.def.isEmpty()) {
-                String definedVar = info.def.iterator().next();
-                // Remove a primeira ocorrência (lado esquerdo da atribuição)
-                potentialUses.remove(definedVar);
-            }
-
-            // Remover literais (e.g., 1.i32, true.bool) e 'this' (a menos que seja o único elemento em invoke)
-            potentialUses.removeIf(v -> v.matches("\\d+(\\.\\w+)?") || v.matches("true|false") || v.equals("this"));
-
-            // Casos especiais de 'Use'
-            Matcher invokeMatcher = INVOKE_PATTERN.matcher(instr);
-            if (invokeMatcher.find()) {
-                String target = invokeMatcher.group(1);
-                 if (!target.matches("\\d+(\\.\\w+)?") && !target.matches("true|false")) {
-                    info.use.add(target);
-                 }
-            }
-
-            Matcher ifMatcher = IF_GOTO_PATTERN.matcher(instr);
-            if (ifMatcher.find()) {
-                // Variáveis dentro da condição do if são usadas
-                String condition = ifMatcher.group(1);
-                Matcher conditionVarMatcher = VARIABLE_PATTERN.matcher(condition);
-                 while (conditionVarMatcher.find()) {
-                     String v = conditionVarMatcher.group(1);
-                     if (!v.matches("\\d+(\\.\\w+)?") && !v.matches("true|false") && !v.equals("this")) {
-                         info.use.add(v);
-                     }
-                 }
-            }
+        Map<Instruction, Integer> positions = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            positions.put(instructions.get(i), i);
+        }
 
-            Matcher returnMatcher = RETURN_PATTERN.matcher(instr);
-            if (returnMatcher.find()) {
-                String returnValue = returnMatcher.group(1);
-                 if (!returnValue.isEmpty() && !returnValue.matches("\\d+(\\.\\w+)?") && !returnValue.matches("true|false")) {
-                     info.use.add(returnValue);
-                 }
+        int[][] successors = new int[instructions.size()][];
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            boolean hasNext = i + 1 < instructions.size();
+
+            if (instruction instanceof GotoInstruction gotoInstruction) {
+                successors[i] = new int[]{positions.get(method.getLabels().get(gotoInstruction.getLabel()))};
+            } else if (instruction instanceof CondBranchInstruction branch) {
+                int target = positions.get(method.getLabels().get(branch.getLabel()));
+                successors[i] = hasNext ? new int[]{target, i + 1} : new int[]{target};
+            } else if (instruction instanceof ReturnInstruction || !hasNext) {
+                successors[i] = new int[0];
+            } else {
+                successors[i] = new int[]{i + 1};
             }
+        }
 
+        return successors;
+    }
 
-            // Adiciona as variáveis restantes da direita da atribuição e argumentos de chamadas
-            for (String v : potentialUses) {
-                 if (!v.isEmpty() && !info.def.contains(v)) {
-                    info.use.add(v);
-                 }
+    /**
+     * Colors the graph with as few colors as possible, starting at the given number, using simplification with
+     * optimistic coloring.
+     */
+    private static int[] color(List<Set<Integer>> graph, int minColors) {
+        for (int colors = minColors; ; colors++) {
+            int[] result = tryColor(graph, colors);
+            if (result != null) {
+                return result;
             }
-             System.out.printf("  Instr %d: Def=%s, Use=%s\n", info.id, info.def, info.use);
         }
     }
 
-     private static void buildCFG(List<InstructionInfo> instructions, Map<String, Integer> labelToInstructionId) {
-        System.out.println("Construindo CFG...");
-        int numInstructions = instructions.size();
-        for (int i = 0; i < numInstructions; i++) {
-            InstructionInfo current = instructions.get(i);
-            String instr = current.instructionCode;
-            boolean endsExecution = false;
-
-            Matcher gotoMatcher = GOTO_PATTERN.matcher(instr);
-            Matcher ifMatcher = IF_GOTO_PATTERN.matcher(instr);
-            Matcher returnMatcher = RETURN_PATTERN.matcher(instr); // Assumindo que ret termina o bloco
-
-            if (gotoMatcher.find()) {
-                String label = gotoMatcher.group(1);
-                if (labelToInstructionId.containsKey(label)) {
-                    int targetId = labelToInstructionId.get(label);
-                    current.successors.add(targetId);
-                    instructions.get(targetId).predecessors.add(current.id);
-                } else {
-                    System.err.println("Aviso: Label de goto não encontrado: " + label);
+    private static int[] tryColor(List<Set<Integer>> graph, int colors) {
+        int size = graph.size();
+        int[] degree = new int[size];
+        boolean[] removed = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            degree[i] = graph.get(i).size();
+        }
+
+        // Retira os nós com menos vizinhos que cores; se não houver, o de maior grau (pode ainda ter cor)
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int step = 0; step < size; step++) {
+            int chosen = -1;
+            for (int i = 0; i < size; i++) {
+                if (removed[i]) {
+                    continue;
                 }
-                endsExecution = true; // Goto incondicional
-            } else if (ifMatcher.find()) {
-                // Sucessor 1: Próxima instrução (se a condição for falsa)
-                if (i + 1 < numInstructions) {
-                    current.successors.add(i + 1);
-                    instructions.get(i + 1).predecessors.add(current.id);
+                if (degree[i] < colors) {
+                    chosen = i;
+                    break;
                 }
-                // Sucessor 2: Label do goto (se a condição for verdadeira)
-                String label = ifMatcher.group(2);
-                 if (labelToInstructionId.containsKey(label)) {
-                    int targetId = labelToInstructionId.get(label);
-                    current.successors.add(targetId);
-                    instructions.get(targetId).predecessors.add(current.id);
-                } else {
-                    System.err.println("Aviso: Label de if não encontrado: " + label);
+                if (chosen == -1 || degree[i] > degree[chosen]) {
+                    chosen = i;
                 }
-            } else if (returnMatcher.find() || instr.startsWith("ret.")) {
-                 endsExecution = true; // Return termina a execução do método
             }
 
-            // Se não for um goto incondicional ou return, a próxima instrução é uma sucessora
-            if (!endsExecution && i + 1 < numInstructions) {
-                 // Evitar adicionar duplicado caso já seja um target de if
-                 if (!current.successors.contains(i + 1)) {
-                    current.successors.add(i + 1);
-                    instructions.get(i + 1).predecessors.add(current.id);
-                 }
+            removed[chosen] = true;
+            stack.push(chosen);
+            for (int neighbor : graph.get(chosen)) {
+                degree[neighbor]--;
             }
-             System.out.printf("  Instr %d: Succ=%s, Pred=%s\n", current.id, current.successors, current.predecessors);
         }
-    }
 
-    private static void calculateInOutSets(List<InstructionInfo> instructions) {
-        System.out.println("Calculando In/Out sets...");
-        boolean changed;
-        int iteration = 0;
-        int maxIterations = 100; // Limite para evitar loops infinitos
+        int[] result = new int[size];
+        Arrays.fill(result, -1);
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
 
-        do {
-            changed = false;
-            iteration++;
-            System.out.println("  Iteração " + iteration);
-
-            // Processar instruções na ordem inversa para propagar a informação mais rapidamente
-            for (int i = instructions.size() - 1; i >= 0; i--) {
-                InstructionInfo current = instructions.get(i);
-
-                // Calcular Out[i] = Union(In[s]) for s in successors(i)
-                Set<String> newOut = new HashSet<>();
-                for (int successorId : current.successors) {
-                    if (successorId < instructions.size()) {
-                        newOut.addAll(instructions.get(successorId).in);
-                    }
+            BitSet taken = new BitSet();
+            for (int neighbor : graph.get(node)) {
+                if (result[neighbor] >= 0) {
+                    taken.set(result[neighbor]);
                 }
-
-                // Se Out[i] mudou, atualiza e marca changed como true
-                if (!current.out.equals(newOut)) {
-                    current.out = new HashSet<>(newOut);
-                    changed = true;
-                }
-
-                // Calcular In[i] = Use[i] ∪ (Out[i] - Def[i])
-                Set<String> newIn = new HashSet<>(current.use); // Use[i]
-
-                // Out[i] - Def[i] e adiciona ao In[i]
-                Set<String> outMinusDef = new HashSet<>(current.out);
-                outMinusDef.removeAll(current.def);
-                newIn.addAll(outMinusDef);
-
-                // Se In[i] mudou, atualiza e marca changed como true
-                if (!current.in.equals(newIn)) {
-                    current.in = new HashSet<>(newIn);
-                    changed = true;
-                }
-
-                System.out.printf("    Instr %d: In=%s, Out=%s\n", current.id, current.in, current.out);
             }
-        } while (changed && iteration < maxIterations);
 
-        if (iteration >= maxIterations) {
-            System.out.println("Aviso: Número máximo de iterações atingido!");
+            int color = taken.nextClearBit(0);
+            if (color >= colors) {
+                return null;
+            }
+            result[node] = color;
         }
 
-        System.out.println("Cálculo de In/Out concluído em " + iteration + " iterações.");
+        return result;
     }
-
-}
\ No newline at end of file
+}
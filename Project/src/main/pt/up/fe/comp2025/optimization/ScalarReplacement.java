@@ -0,0 +1,324 @@
+package pt.up.fe.comp2025.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Field;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static pt.up.fe.comp2025.optimization.OllirTextUtils.indentOf;
+
+/**
+ * Replaces the objects of the class that do not escape the method that creates them by one local per field, over the
+ * OLLIR code.
+ * <p>
+ * After inlining, an object that is only used through its own fields is read with {@code getfield} and written with
+ * {@code putfield} on a local. Such an object does not escape when the local (and the locals it is copied to) only
+ * appears in those accesses, in its constructor call and in copies: it is never passed to a call, returned, stored in
+ * a field or array, or compared. The allocation then becomes the default value of each field it uses, every
+ * {@code getfield} a read of the field's local and every {@code putfield} an assignment to it.
+ * <p>
+ * Only int and boolean fields are replaced, and only when the class does not extend another class, whose constructor
+ * could do anything. Each local that holds the object must be assigned once, so it never holds a different object.
+ * When the allocation is inside a loop, the uses must come after it in the same iteration, in code that can only be
+ * reached through the allocation, and the copies must be in the same basic block as the allocation, so every local
+ * holds the object of the current iteration.
+ */
+public class ScalarReplacement {
+
+    private static final Pattern ASSIGN_PATTERN = Pattern.compile("^([\\w$]+)(?:\\.[\\w.$]+)?\\s*:=");
+    private static final Pattern PARAMS_PATTERN = Pattern.compile("^\\.method\\s.*?[\\w$]+\\((.*)\\)[\\w.$]*\\s*\\{$");
+    private static final Pattern ACCESS_PATTERN =
+            Pattern.compile("(?:getfield\\(([\\w$]+)\\.([\\w$]+),\\s*([\\w$]+)(\\.[\\w.$]+)\\)\\.[\\w.$]+)"
+                    + "|(?:^putfield\\(([\\w$]+)\\.([\\w$]+),\\s*([\\w$]+)(\\.[\\w.$]+),\\s*(.+)\\)\\.V;$)");
+
+    private int replacedCount = 0;
+
+    // Linhas que deixam de existir (cópias e chamadas ao construtor), retiradas no fim
+    private final Set<Integer> removedLines = new HashSet<>();
+
+    public int getReplacedCount() {
+        return replacedCount;
+    }
+
+    /**
+     * @param ollirClass the parsed class, for its fields and superclass (the code may have changed since)
+     */
+    public String apply(String ollirCode, ClassUnit ollirClass) {
+        if (ollirClass.getSuperClass() != null) {
+            return ollirCode;
+        }
+
+        String className = ollirClass.getClassName();
+        Set<String> instanceFields = new HashSet<>();
+        for (Field field : ollirClass.getFields()) {
+            if (!field.isStaticField()) {
+                instanceFields.add(field.getFieldName());
+            }
+        }
+
+        List<String> lines = new ArrayList<>(Arrays.asList(ollirCode.split("\n", -1)));
+        Pattern allocation = Pattern.compile("^([\\w$]+)\\." + className + "\\s*:=\\s*\\." + className + "\\s+new\\("
+                + className + "\\)\\." + className + ";$");
+
+        for (int methodStart = 0; methodStart < lines.size(); methodStart++) {
+            if (!lines.get(methodStart).trim().startsWith(".method")) {
+                continue;
+            }
+
+            int methodEnd = methodStart;
+            while (methodEnd < lines.size() - 1 && !lines.get(methodEnd).trim().equals("}")) {
+                methodEnd++;
+            }
+
+            for (int i = methodStart + 1; i < methodEnd; i++) {
+                Matcher alloc = allocation.matcher(lines.get(i).trim());
+                if (alloc.matches() && replace(lines, methodStart, methodEnd, i, alloc.group(1), className,
+                        instanceFields)) {
+                    replacedCount++;
+                }
+            }
+        }
+
+        var code = new StringJoiner("\n");
+        for (int i = 0; i < lines.size(); i++) {
+            if (!removedLines.contains(i)) {
+                code.add(lines.get(i));
+            }
+        }
+        return code.toString();
+    }
+
+    /**
+     * Replaces the object created at the given line by locals, if it does not escape. Lines are only changed in place
+     * or marked as removed, so the positions of the method stay valid.
+     */
+    private boolean replace(List<String> lines, int methodStart, int methodEnd, int allocLine, String root,
+                            String className, Set<String> instanceFields) {
+        Set<String> params = getParams(lines.get(methodStart).trim());
+
+        // Os locais que guardam o objeto: o da alocação e as cópias dele, cada um atribuído uma só vez
+        Set<String> holders = new LinkedHashSet<>(List.of(root));
+        Map<String, Integer> copies = new HashMap<>();
+        Pattern copyPattern = Pattern.compile("^([\\w$]+)\\." + className + "\\s*:=\\s*\\." + className
+                + "\\s+([\\w$]+)\\." + className + ";$");
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = methodStart + 1; i < methodEnd; i++) {
+                String line = lines.get(i).trim();
+                Matcher copy = copyPattern.matcher(line);
+                if (copy.matches() && holders.contains(copy.group(2)) && !holders.contains(copy.group(1))) {
+                    holders.add(copy.group(1));
+                    copies.put(copy.group(1), i);
+                    changed = true;
+                }
+            }
+        }
+
+        for (String holder : holders) {
+            if (params.contains(holder) || countAssignments(lines, methodStart, methodEnd, holder) != 1) {
+                return false;
+            }
+        }
+
+        // Numa alocação dentro de um loop, os usos têm de estar no resto da mesma iteração, onde só se entra pela
+        // alocação, e as cópias no mesmo bloco básico que ela
+        int blockEnd = methodEnd;
+        int loopEnd = findLoopEnd(lines, methodStart, methodEnd, allocLine);
+        if (loopEnd != -1) {
+            if (!isEnteredOnlyFromStart(lines, methodStart, methodEnd, allocLine, loopEnd)) {
+                return false;
+            }
+
+            int basicBlockEnd = allocLine + 1;
+            while (basicBlockEnd < methodEnd && !OllirTextUtils.endsBlock(lines.get(basicBlockEnd))) {
+                basicBlockEnd++;
+            }
+            for (int copyLine : copies.values()) {
+                if (copyLine >= basicBlockEnd) {
+                    return false;
+                }
+            }
+
+            blockEnd = loopEnd;
+        }
+
+        // Todas as ocorrências dos locais têm de ser acessos a campos, a chamada ao construtor ou cópias
+        Map<String, String> fieldTypes = new LinkedHashMap<>();
+        Pattern holderPattern = holderPattern(holders, className);
+        for (int i = methodStart + 1; i < methodEnd; i++) {
+            String line = lines.get(i).trim();
+            Matcher occurrence = holderPattern.matcher(line);
+            if (!occurrence.find()) {
+                continue;
+            }
+
+            if (i < allocLine || i >= blockEnd) {
+                return false;
+            }
+
+            if (i == allocLine || copies.containsValue(i)
+                    || line.equals("invokespecial(" + root + "." + className + ", \"<init>\").V;")) {
+                continue;
+            }
+
+            if (!isFieldAccessOnly(line, holders, className, instanceFields, fieldTypes)) {
+                return false;
+            }
+        }
+
+        String prefix = "sr" + replacedCount + "_";
+
+        // A alocação passa a dar o valor por omissão a cada campo usado
+        var init = new StringBuilder();
+        for (var field : fieldTypes.entrySet()) {
+            String type = field.getValue();
+            String value = type.equals(".bool") ? "false" : "0";
+            if (!init.isEmpty()) {
+                init.append("\n").append(indentOf(lines.get(allocLine)));
+            }
+            init.append(prefix).append(field.getKey()).append(type).append(" :=").append(type).append(" ")
+                    .append(value).append(type).append(";");
+        }
+        if (init.isEmpty()) {
+            removedLines.add(allocLine);
+        } else {
+            lines.set(allocLine, indentOf(lines.get(allocLine)) + init);
+        }
+
+        for (int i = allocLine + 1; i < blockEnd; i++) {
+            String line = lines.get(i).trim();
+            if (!holderPattern.matcher(line).find()) {
+                continue;
+            }
+
+            if (copies.containsValue(i) || line.startsWith("invokespecial(")) {
+                removedLines.add(i);
+                continue;
+            }
+
+            lines.set(i, indentOf(lines.get(i)) + rewriteAccesses(line, holders, className, prefix));
+        }
+
+        return true;
+    }
+
+    // A linha só usa os locais como objeto de getfield ou putfield de campos int ou boolean da classe
+    private static boolean isFieldAccessOnly(String line, Set<String> holders, String className,
+                                             Set<String> instanceFields, Map<String, String> fieldTypes) {
+        String rest = line;
+        Matcher access = ACCESS_PATTERN.matcher(line);
+        while (access.find()) {
+            boolean isGet = access.group(1) != null;
+            String object = isGet ? access.group(1) : access.group(5);
+            String objectClass = isGet ? access.group(2) : access.group(6);
+            String field = isGet ? access.group(3) : access.group(7);
+            String type = isGet ? access.group(4) : access.group(8);
+            if (!holders.contains(object) || !objectClass.equals(className)) {
+                continue;
+            }
+
+            if (!instanceFields.contains(field) || !(type.equals(".i32") || type.equals(".bool"))) {
+                return false;
+            }
+            fieldTypes.putIfAbsent(field, type);
+
+            // O valor escrito não pode ser o próprio objeto
+            if (!isGet && holderPattern(holders, className).matcher(access.group(9)).find()) {
+                return false;
+            }
+
+            rest = rest.replace(access.group(), "");
+        }
+
+        return !holderPattern(holders, className).matcher(rest).find();
+    }
+
+    private static String rewriteAccesses(String line, Set<String> holders, String className, String prefix) {
+        Matcher access = ACCESS_PATTERN.matcher(line);
+        if (access.find() && access.group(5) != null) {
+            String type = access.group(8);
+            return prefix + access.group(7) + type + " :=" + type + " " + access.group(9) + ";";
+        }
+
+        var rewritten = new StringBuilder();
+        access.reset();
+        while (access.find()) {
+            if (access.group(1) != null && holders.contains(access.group(1)) && access.group(2).equals(className)) {
+                access.appendReplacement(rewritten, Matcher.quoteReplacement(prefix + access.group(3) + access.group(4)));
+            }
+        }
+        access.appendTail(rewritten);
+        return rewritten.toString();
+    }
+
+    private static Pattern holderPattern(Set<String> holders, String className) {
+        var names = new StringJoiner("|");
+        holders.forEach(holder -> names.add(Pattern.quote(holder)));
+        return Pattern.compile("(?<![\\w$.])(?:" + names + ")\\." + className + "(?![\\w$])");
+    }
+
+    private static Set<String> getParams(String methodLine) {
+        Set<String> params = new HashSet<>();
+        Matcher header = PARAMS_PATTERN.matcher(methodLine);
+        if (header.matches()) {
+            for (String param : header.group(1).split(",")) {
+                if (!param.isBlank()) {
+                    params.add(param.trim().split("\\.")[0]);
+                }
+            }
+        }
+        return params;
+    }
+
+    private static int countAssignments(List<String> lines, int methodStart, int methodEnd, String name) {
+        int count = 0;
+        for (int i = methodStart + 1; i < methodEnd; i++) {
+            Matcher assign = ASSIGN_PATTERN.matcher(lines.get(i).trim());
+            if (assign.find() && assign.group(1).equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Back edge do loop mais interior que contém a linha (um label antes dela com um goto para ele depois), ou -1
+    private static int findLoopEnd(List<String> lines, int methodStart, int methodEnd, int line) {
+        int loopEnd = -1;
+        for (int i = methodStart + 1; i < line; i++) {
+            String label = OllirTextUtils.labelOf(lines.get(i));
+            if (label == null) {
+                continue;
+            }
+
+            for (int j = methodEnd - 1; j > line; j--) {
+                if (lines.get(j).trim().endsWith("goto " + label + ";")) {
+                    loopEnd = loopEnd == -1 ? j : Math.min(loopEnd, j);
+                    break;
+                }
+            }
+        }
+        return loopEnd;
+    }
+
+    // Os labels entre as duas linhas só são alvo de saltos feitos entre elas
+    private static boolean isEnteredOnlyFromStart(List<String> lines, int methodStart, int methodEnd, int start,
+                                                  int end) {
+        for (int i = start + 1; i < end; i++) {
+            String label = OllirTextUtils.labelOf(lines.get(i));
+            if (label == null) {
+                continue;
+            }
+
+            for (int j = methodStart + 1; j < methodEnd; j++) {
+                if ((j <= start || j > end) && lines.get(j).trim().endsWith("goto " + label + ";")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+}
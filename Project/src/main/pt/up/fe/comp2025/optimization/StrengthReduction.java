@@ -0,0 +1,162 @@
+package pt.up.fe.comp2025.optimization;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static pt.up.fe.comp2025.optimization.OllirTextUtils.indentOf;
+
+/**
+ * Replaces multiplications of a loop induction variable by a constant with additions, over the OLLIR code.
+ * <p>
+ * A variable {@code i} is an induction variable of a loop when every assignment to it inside the loop adds a constant
+ * step, either directly ({@code i := i + s}) or through a temporary ({@code t := i + s; i := t}). Each
+ * {@code d := i * c} in the loop is then replaced by a copy of a new variable that is set to {@code i * c} before the
+ * loop and incremented by {@code s * c} after every update of {@code i}. Multiplications by powers of two are left
+ * alone, since the backend already turns them into shifts.
+ */
+public class StrengthReduction {
+
+    private static final Pattern ASSIGN_PATTERN = Pattern.compile("^([\\w$]+)(\\.[\\w.$]+)\\s*:=");
+    private static final Pattern STEP_PATTERN =
+            Pattern.compile("^([\\w$]+)\\.i32 :=\\.i32 ([\\w$]+)\\.i32 ([+-])\\.i32 (-?\\d+)\\.i32;$");
+    private static final Pattern COPY_PATTERN = Pattern.compile("^([\\w$]+)\\.i32 :=\\.i32 ([\\w$]+)\\.i32;$");
+    private static final Pattern MUL_PATTERN =
+            Pattern.compile("^([\\w$]+)\\.i32 :=\\.i32 ([\\w$]+|-?\\d+)\\.i32 \\*\\.i32 ([\\w$]+|-?\\d+)\\.i32;$");
+
+    private int reducedCount = 0;
+    private int ivCounter = 0;
+
+    public int getReducedCount() {
+        return reducedCount;
+    }
+
+    public String apply(String ollirCode) {
+        List<String> lines = new ArrayList<>(Arrays.asList(ollirCode.split("\n", -1)));
+
+        // Cada loop começa num label e acaba no último goto para esse label
+        for (int start = 0; start < lines.size(); start++) {
+            int end = OllirTextUtils.findBackEdge(lines, start);
+            if (end != -1) {
+                start += reduceLoop(lines, start, end);
+            }
+        }
+
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Reduces the multiplications of the loop between the given lines, returning the number of lines inserted before
+     * the loop label.
+     */
+    private int reduceLoop(List<String> lines, int start, int end) {
+        Map<String, Integer> steps = findInductionVariables(lines, start, end);
+        int inserted = 0;
+
+        for (var iv : steps.entrySet()) {
+            String var = iv.getKey();
+
+            // Constantes pelas quais a variável de indução é multiplicada dentro do loop
+            Map<Integer, String> reducedVars = new LinkedHashMap<>();
+            for (int i = start + 1 + inserted; i <= end + inserted; i++) {
+                Matcher mul = MUL_PATTERN.matcher(lines.get(i).trim());
+                if (!mul.matches()) {
+                    continue;
+                }
+
+                Integer factor = null;
+                if (mul.group(2).equals(var) && isInteger(mul.group(3))) {
+                    factor = Integer.parseInt(mul.group(3));
+                } else if (mul.group(3).equals(var) && isInteger(mul.group(2))) {
+                    factor = Integer.parseInt(mul.group(2));
+                }
+
+                if (factor == null || Math.abs(factor) <= 1 || Integer.bitCount(factor) == 1) {
+                    continue;
+                }
+
+                String reducedVar = reducedVars.computeIfAbsent(factor, f -> "iv" + (ivCounter++) + "_" + var);
+                lines.set(i, indentOf(lines.get(i)) + mul.group(1) + ".i32 :=.i32 " + reducedVar + ".i32;");
+                reducedCount++;
+            }
+
+            for (var entry : reducedVars.entrySet()) {
+                int factor = entry.getKey();
+                String reducedVar = entry.getValue();
+                int increment = steps.get(var) * factor;
+
+                // Incrementa a nova variável a seguir a cada atualização da variável de indução
+                for (int i = end + inserted; i > start + inserted; i--) {
+                    if (isUpdateOf(lines.get(i).trim(), var)) {
+                        lines.add(i + 1, indentOf(lines.get(i)) + reducedVar + ".i32 :=.i32 " + reducedVar
+                                + ".i32 +.i32 " + increment + ".i32;");
+                        end++;
+                    }
+                }
+
+                // Valor inicial, calculado antes de entrar no loop
+                lines.add(start + inserted, indentOf(lines.get(start + inserted)) + reducedVar + ".i32 :=.i32 "
+                        + var + ".i32 *.i32 " + factor + ".i32;");
+                inserted++;
+            }
+        }
+
+        return inserted;
+    }
+
+    /**
+     * Finds the variables whose every assignment inside the loop adds the same constant step.
+     */
+    private static Map<String, Integer> findInductionVariables(List<String> lines, int start, int end) {
+        Map<String, Integer> steps = new HashMap<>();
+        Set<String> rejected = new HashSet<>();
+
+        // Temporários da forma t := v + s, para reconhecer v := t
+        Map<String, String> stepTemps = new HashMap<>();
+        Map<String, Integer> stepValues = new HashMap<>();
+
+        for (int i = start + 1; i <= end; i++) {
+            String line = lines.get(i).trim();
+
+            Matcher assign = ASSIGN_PATTERN.matcher(line);
+            if (!assign.find()) {
+                continue;
+            }
+            String dest = assign.group(1);
+
+            Integer step = null;
+            Matcher stepMatch = STEP_PATTERN.matcher(line);
+            Matcher copy = COPY_PATTERN.matcher(line);
+
+            if (stepMatch.matches()) {
+                int value = Integer.parseInt(stepMatch.group(4)) * (stepMatch.group(3).equals("+") ? 1 : -1);
+                stepTemps.put(dest, stepMatch.group(2));
+                stepValues.put(dest, value);
+
+                if (stepMatch.group(2).equals(dest)) {
+                    step = value;
+                }
+            } else if (copy.matches() && dest.equals(stepTemps.get(copy.group(2)))) {
+                step = stepValues.get(copy.group(2));
+            }
+
+            if (step == null || !assign.group(2).equals(".i32") || (steps.containsKey(dest) && !steps.get(dest).equals(step))) {
+                rejected.add(dest);
+            } else {
+                steps.put(dest, step);
+            }
+        }
+
+        steps.keySet().removeAll(rejected);
+        return steps;
+    }
+
+    private static boolean isUpdateOf(String line, String var) {
+        Matcher assign = ASSIGN_PATTERN.matcher(line);
+        return assign.find() && assign.group(1).equals(var);
+    }
+
+    private static boolean isInteger(String value) {
+        return value.matches("-?\\d+");
+    }
+}
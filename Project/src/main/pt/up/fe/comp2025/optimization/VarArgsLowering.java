@@ -0,0 +1,254 @@
+package pt.up.fe.comp2025.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2025.ast.TypeUtils;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Lowering of the calls to the varargs methods of the class, whose variable arguments are passed in an array.
+ * <p>
+ * By default a new array is created and filled at every call, as javac does. When enabled (with -o), the calls to a
+ * method that only reads its varargs array (never writes to it, stores it, returns it or passes it on) do not allocate:
+ * <ul>
+ *     <li>if all the variable arguments are constants, the array is created the first time it is needed and kept in a
+ *     static field, shared by all the calls with the same values;</li>
+ *     <li>otherwise, if the method does not call other methods of the class, the call fills an array that is created
+ *     once per method and number of arguments, since no other call can use that array before the method returns.</li>
+ * </ul>
+ * The static fields that hold these arrays are declared by {@link #getFieldDeclarations()}.
+ */
+public class VarArgsLowering {
+
+    private static final String END_STMT = ";\n";
+
+    private static final Pattern CONSTANT = Pattern.compile("-?\\d+\\.i32|(true|false|\\d+)\\.bool");
+
+    private final SymbolTable table;
+
+    private final OptUtils ollirTypes;
+
+    private boolean enabled = false;
+
+    // Campo de cada array partilhado, pela chave (constantes: tipo e valores; reutilizados: método e tamanho)
+    private final Map<String, String> arrayFields = new LinkedHashMap<>();
+
+    // Tipo OLLIR de cada um desses campos
+    private final Map<String, String> fieldTypes = new HashMap<>();
+
+    // Se o método só lê o array dos varargs, e se não chama outros métodos da classe
+    private final Map<String, Boolean> readOnlyMethods = new HashMap<>();
+
+    private final Map<String, Boolean> leafMethods = new HashMap<>();
+
+    public VarArgsLowering(SymbolTable table, OptUtils ollirTypes) {
+        this.table = table;
+        this.ollirTypes = ollirTypes;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isVarArgsMethod(String methodName) {
+        var params = table.getParameters(methodName);
+        if (params == null || params.isEmpty()) {
+            return false;
+        }
+
+        var type = params.getLast().getType();
+        return type.hasAttribute("isVarArg") && type.get("isVarArg").equals("true");
+    }
+
+    /**
+     * Arguments of a call to the varargs method, with the variable arguments replaced by an array. The code that
+     * prepares the array is added to the computation. The arguments are already operands, so each is evaluated once.
+     *
+     * @param call     the MethodCall node
+     * @param argTypes types of the arguments, in the same order as {@code argCodes}
+     */
+    public List<String> lower(JmmNode call, String methodName, List<String> argCodes, List<Type> argTypes,
+                              OllirCodeBuilder computation) {
+        var params = table.getParameters(methodName);
+        int numFixed = params.size() - 1;
+        Type arrayType = params.getLast().getType();
+
+        // Um array passado no lugar dos argumentos variáveis vai tal como está
+        if (argCodes.size() == params.size() && argTypes.get(numFixed).isArray()
+                && !argTypes.get(numFixed).getName().equals("unknown")) {
+            return argCodes;
+        }
+
+        String arrayOllirType = ollirTypes.toOllirType(arrayType);
+        List<String> values = argCodes.subList(Math.min(numFixed, argCodes.size()), argCodes.size());
+
+        String array;
+        if (enabled && isReadOnly(call, methodName)) {
+            if (values.stream().allMatch(value -> CONSTANT.matcher(value).matches())) {
+                array = sharedArray(arrayOllirType + values, methodName, arrayOllirType, values, true, computation);
+            } else if (isLeaf(call, methodName)) {
+                array = sharedArray(methodName + "/" + values.size(), methodName, arrayOllirType, values, false,
+                        computation);
+            } else {
+                array = newArray(arrayOllirType, values, computation);
+            }
+        } else {
+            array = newArray(arrayOllirType, values, computation);
+        }
+
+        List<String> lowered = new ArrayList<>(argCodes.subList(0, Math.min(numFixed, argCodes.size())));
+        lowered.add(array);
+        return lowered;
+    }
+
+    /**
+     * Declarations of the static fields with the shared arrays, and of the flags that tell if they were created.
+     */
+    public String getFieldDeclarations() {
+        var code = new StringBuilder();
+        for (var field : arrayFields.values()) {
+            code.append("    .field private static ").append(field).append(fieldTypes.get(field)).append(END_STMT);
+            code.append("    .field private static ").append(field).append("_ready.bool").append(END_STMT);
+        }
+
+        return code.toString();
+    }
+
+    private String newArray(String arrayOllirType, List<String> values, OllirCodeBuilder computation) {
+        String array = ollirTypes.nextTemp() + arrayOllirType;
+        computation.append(array).append(" :=").append(arrayOllirType).append(" new(array, ")
+                .append(values.size()).append(".i32)").append(arrayOllirType).append(END_STMT);
+        fill(array, arrayOllirType, values, computation);
+        return array;
+    }
+
+    // Lê o array do campo, criando-o na primeira vez; as constantes são escritas só nessa vez
+    private String sharedArray(String key, String methodName, String arrayOllirType, List<String> values,
+                               boolean constant, OllirCodeBuilder computation) {
+        String field = arrayFields.computeIfAbsent(key, k -> "va" + arrayFields.size() + "_" + methodName);
+        fieldTypes.put(field, arrayOllirType);
+
+        String object = "this." + table.getClassName();
+        String ready = ollirTypes.nextTemp() + ".bool";
+        String label = ollirTypes.nextLabel("varargs");
+
+        computation.append(ready).append(" :=.bool getfield(").append(object).append(", ").append(field)
+                .append("_ready.bool).bool").append(END_STMT);
+        computation.append("if (").append(ready).append(") goto ").append(label).append(END_STMT);
+
+        String created = ollirTypes.nextTemp() + arrayOllirType;
+        computation.append(created).append(" :=").append(arrayOllirType).append(" new(array, ")
+                .append(values.size()).append(".i32)").append(arrayOllirType).append(END_STMT);
+        if (constant) {
+            fill(created, arrayOllirType, values, computation);
+        }
+        computation.append("putfield(").append(object).append(", ").append(field).append(arrayOllirType)
+                .append(", ").append(created).append(").V").append(END_STMT);
+        computation.append("putfield(").append(object).append(", ").append(field)
+                .append("_ready.bool, true.bool).V").append(END_STMT);
+        computation.append(label).append(":\n");
+
+        String array = ollirTypes.nextTemp() + arrayOllirType;
+        computation.append(array).append(" :=").append(arrayOllirType).append(" getfield(").append(object)
+                .append(", ").append(field).append(arrayOllirType).append(")").append(arrayOllirType)
+                .append(END_STMT);
+        if (!constant) {
+            fill(array, arrayOllirType, values, computation);
+        }
+
+        return array;
+    }
+
+    private static void fill(String array, String arrayOllirType, List<String> values, OllirCodeBuilder computation) {
+        String elementOllirType = arrayOllirType.substring(".array".length());
+        for (int i = 0; i < values.size(); i++) {
+            computation.append(array).append("[").append(i).append(".i32]").append(elementOllirType)
+                    .append(" :=").append(elementOllirType).append(" ").append(values.get(i)).append(END_STMT);
+        }
+    }
+
+    // O método só lê os elementos e o tamanho do array dos varargs
+    private boolean isReadOnly(JmmNode call, String methodName) {
+        return readOnlyMethods.computeIfAbsent(methodName, name -> {
+            var method = findMethod(call, name);
+            if (method == null) {
+                return false;
+            }
+
+            String param = table.getParameters(name).getLast().getName();
+            for (var ref : method.getDescendants("VarRefExpr")) {
+                if (!ref.get("name").equals(param)) {
+                    continue;
+                }
+
+                var parent = ref.getParent();
+                boolean isRead = parent.getKind().equals("ArrayLengthExpr")
+                        || (parent.getKind().equals("ArrayAccessExpr") && ref.getIndexOfSelf() == 0
+                        && !isAssignTarget(parent));
+                if (!isRead) {
+                    return false;
+                }
+            }
+
+            return true;
+        });
+    }
+
+    // O método não chama métodos da classe (nem passa objetos a outras classes), por isso o array não é usado por
+    // outra chamada antes de o método acabar
+    private boolean isLeaf(JmmNode call, String methodName) {
+        return leafMethods.computeIfAbsent(methodName, name -> {
+            var method = findMethod(call, name);
+            if (method == null) {
+                return false;
+            }
+
+            var types = new TypeUtils(table);
+            for (var node : method.getDescendants()) {
+                if (node.getKind().equals("MethodRefExpr") && !node.getParent().getKind().equals("MethodCall")) {
+                    return false;
+                }
+
+                if (!node.getKind().equals("MethodCall")) {
+                    continue;
+                }
+
+                var target = node.getChild(0);
+                boolean isImport = target.getKind().equals("VarRefExpr")
+                        && table.getImports().contains(target.get("name"));
+                if (!isImport) {
+                    return false;
+                }
+
+                for (var arg : node.getChild(1).getChildren()) {
+                    String argType = TypeUtils.getBaseName(types.getExprType(arg));
+                    if (!argType.equals("int") && !argType.equals("boolean") && !argType.equals("String")) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        });
+    }
+
+    private static boolean isAssignTarget(JmmNode node) {
+        var parent = node.getParent();
+        return parent != null && parent.getKind().equals("AssignStmt") && node.getIndexOfSelf() == 0;
+    }
+
+    private static JmmNode findMethod(JmmNode node, String methodName) {
+        var root = node;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+
+        return root.getDescendants("MethodDecl").stream()
+                .filter(method -> method.get("name").equals(methodName))
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -15,6 +15,8 @@ public class JmmSymbolTable extends AJmmSymbolTable {
     private final List<String> imports;
     private final String superClassname;
 
+    // Valor literal de cada campo const (ex: "10" ou "true")
+    private final Map<String, String> constants;
 
 
     public JmmSymbolTable(String className,
@@ -24,7 +26,8 @@ public class JmmSymbolTable extends AJmmSymbolTable {
                           List<Symbol> fields,
                           List<String> imports,
                           String superClassname,
-                          Map<String, List<Symbol>> locals) {
+                          Map<String, List<Symbol>> locals,
+                          Map<String, String> constants) {
 
         this.className = className;
         this.methods = methods;
@@ -34,6 +37,7 @@ public class JmmSymbolTable extends AJmmSymbolTable {
         this.fields = fields;
         this.imports = imports;
         this.superClassname = superClassname;
+        this.constants = constants;
     }
 
     @Override
@@ -78,6 +82,20 @@ public class JmmSymbolTable extends AJmmSymbolTable {
         return locals.get(methodSignature);
     }
 
+    /**
+     * True if the field was declared {@code const}.
+     */
+    public boolean isConstant(String fieldName) {
+        return constants.containsKey(fieldName);
+    }
+
+    /**
+     * Literal value of a {@code const} field (e.g. {@code 10} or {@code true}), or null if it is not one.
+     */
+    public String getConstantValue(String fieldName) {
+        return constants.get(fieldName);
+    }
+
     @Override
     public String toString() {
         return print();
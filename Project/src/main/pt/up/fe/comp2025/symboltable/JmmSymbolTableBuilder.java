@@ -11,6 +11,7 @@ import pt.up.fe.specs.util.SpecsCheck;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -60,10 +61,11 @@ public class JmmSymbolTableBuilder {
         var locals = buildLocals(classDecl);
         var imports = buildImports(root);
         var fields = buildFields(classDecl);
+        var constants = buildConstants(classDecl);
         var superClassName = getSuperClassName(classDecl);
 
         // Build and return the symbol table
-        return new JmmSymbolTable(className, methods, returnTypes, params, fields, imports, superClassName, locals);
+        return new JmmSymbolTable(className, methods, returnTypes, params, fields, imports, superClassName, locals, constants);
     }
 
     // Extracts the superclass name if the class extends another class
@@ -96,7 +98,11 @@ public class JmmSymbolTableBuilder {
     private List<Symbol> buildFields(JmmNode classDecl) {
         List<Symbol> fields = new ArrayList<>();
         // Process each variable declaration at the class level
-        for (var fieldNode : classDecl.getChildren("VarDecl")) {
+        for (var fieldNode : classDecl.getChildren()) {
+            if (!VAR_DECL.check(fieldNode) && !CONST_DECL.check(fieldNode)) {
+                continue;
+            }
+
             var type = convertType(fieldNode.getChild(0));
             String name = fieldNode.get("name");
 
@@ -108,6 +114,16 @@ public class JmmSymbolTableBuilder {
         return fields;
     }
 
+    // Maps each const field to the value of its literal initializer
+    private Map<String, String> buildConstants(JmmNode classDecl) {
+        Map<String, String> constants = new LinkedHashMap<>();
+        for (var constNode : classDecl.getChildren(CONST_DECL)) {
+            constants.put(constNode.get("name"), constNode.get("value"));
+        }
+
+        return constants;
+    }
+
     // Extracts the return types of the methods in the class declaration node
     private Map<String, Type> buildReturnTypes(JmmNode classDecl) {
         Map<String, Type> map = new HashMap<>();
@@ -139,11 +155,11 @@ public class JmmSymbolTableBuilder {
             var params = method.getChildren(PARAM).stream()
                     .map(param -> {
                         JmmNode typeNode = param.getChildren().getFirst();
-                        String typeStr = typeNode.get("name");
                         // Handle varargs parameters - detected by array type or "..." attribute
-                        boolean isArray = typeNode.getKind().equals("ArrayType") ||
-                                (param.hasAttribute("isVarArg") && param.get("isVarArg").equals("..."));
-                        Type type = new Type(typeStr, isArray);
+                        Type type = convertType(typeNode);
+                        if (!type.isArray() && param.hasAttribute("isVarArg") && param.get("isVarArg").equals("...")) {
+                            type = new Type(type.getName(), true);
+                        }
                         if (param.hasAttribute("isVarArg") && param.get("isVarArg").equals("...")) {
                             type.put("isVarArg", "true");
                         }
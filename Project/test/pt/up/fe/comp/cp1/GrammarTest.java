@@ -16,6 +16,8 @@ package pt.up.fe.comp.cp1;
 import org.junit.Test;
 import pt.up.fe.comp.TestUtils;
 
+import static org.junit.Assert.assertEquals;
+
 public class GrammarTest {
 
 
@@ -67,6 +69,12 @@ public class GrammarTest {
                 INSTANCE_METHOD);
     }
 
+    @Test
+    public void testInstanceMethodPrivate() {
+        TestUtils.parseVerbose("private int foo(int anInt) {return anInt;}",
+                INSTANCE_METHOD);
+    }
+
     @Test
     public void testStmtScope() {
         TestUtils.parseVerbose("{a; b; c;}", STATEMENT);
@@ -242,6 +250,15 @@ public class GrammarTest {
         TestUtils.parseVerbose("1 && 2 && 3 && 4", EXPRESSION);
     }
 
+    @Test
+    public void testExprLogicalPrecedence() {
+        var root = TestUtils.parse("a || b && c", EXPRESSION).getRootNode();
+        assertEquals("Logical", root.getKind());
+        assertEquals("||", root.get("op"));
+        assertEquals("Logical", root.getChild(1).getKind());
+        assertEquals("&&", root.getChild(1).get("op"));
+    }
+
     @Test
     public void testExprChain() {
         TestUtils.parseVerbose("1 && 2 < 3 + 4 - 5 * 6 / 7", EXPRESSION);
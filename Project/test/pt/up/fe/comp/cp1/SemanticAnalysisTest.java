@@ -2,8 +2,11 @@ package pt.up.fe.comp.cp1;
 
 import org.junit.Test;
 import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.specs.util.SpecsIo;
 
+import static org.junit.Assert.assertEquals;
+
 public class SemanticAnalysisTest {
 
     @Test
@@ -174,5 +177,22 @@ public class SemanticAnalysisTest {
         System.out.println(result.getReports());
     }
 
+    @Test
+    public void constFields() {
+        var result = TestUtils
+                .analyse(SpecsIo.getResource("pt/up/fe/comp/cp1/semanticanalysis/ConstFields.jmm"));
+        TestUtils.noErrors(result);
+    }
+
+    @Test
+    public void constFieldsWrong() {
+        var result = TestUtils
+                .analyse(SpecsIo.getResource("pt/up/fe/comp/cp1/semanticanalysis/ConstFieldsWrong.jmm"));
+        TestUtils.mustFail(result);
+        // Literal of the wrong type, array const and assignment to a const field
+        assertEquals(3, result.getReports().stream().filter(report -> report.getType() == ReportType.ERROR).count());
+        System.out.println(result.getReports());
+    }
+
 
 }
@@ -533,13 +533,13 @@ public class OllirTest {
         // Verifica se a assinatura do metodo foo está correta
         assertTrue(ollir.contains(".method varargs foo(a.i32, b.i32, c.array.i32).i32"));
 
-        // Verifica se o array com os argumentos variáveis foi criado corretamente
-        assertTrue(ollir.contains("new(array, 4.i32).array.i32"));
-        assertTrue(ollir.contains("tmp0.array.i32[0.i32].i32 :=.i32 3.i32;"));
-        assertTrue(ollir.contains("tmp0.array.i32[3.i32].i32 :=.i32 6.i32;"));
+        // Verifica se o array com os argumentos variáveis foi criado corretamente (os dois primeiros são a e b)
+        assertTrue(ollir.contains("new(array, 5.i32).array.i32"));
+        assertTrue(ollir.contains("tmp0.array.i32[0.i32].i32 :=.i32 2.i32;"));
+        assertTrue(ollir.contains("tmp0.array.i32[4.i32].i32 :=.i32 6.i32;"));
 
-        // Verifica se a chamada ao metodo foo inclui o array como último argumento
-        assertTrue(ollir.contains("invokevirtual(args.VarArgs, \"foo\", tmp0.array.i32).i32;"));
+        // Verifica se a chamada ao metodo foo inclui os argumentos fixos e o array como último argumento
+        assertTrue(ollir.contains("invokevirtual(args.VarArgs, \"foo\", 0.i32, 1.i32, tmp0.array.i32).i32;"));
     }
 
     @Test
@@ -556,4 +556,24 @@ public class OllirTest {
 
     }
 
+    @Test
+    public void deeplyNestedExpression() {
+        int depth = 300;
+        var expression = new StringBuilder("a");
+        for (int i = 0; i < depth; i++) {
+            expression.insert(0, "this.f(a + ").append(')');
+        }
+
+        var code = "class Nested {\n"
+                + "    public int f(int x) { return x; }\n"
+                + "    public int g(int a) { return " + expression + "; }\n"
+                + "    public static void main(String[] args) { }\n"
+                + "}";
+        var result = CpUtils.getOllirResult(code, Collections.emptyMap(), false);
+
+        // Cada nível tem a sua chamada, e o código de cada um aparece uma única vez
+        var calls = CpUtils.getInstructions(CallInstruction.class, CpUtils.getMethod(result, "g"));
+        assertEquals(depth, calls.size());
+        assertEquals(depth, result.getOllirCode().split("invokevirtual", -1).length - 1);
+    }
 }
@@ -13,7 +13,12 @@
 
 package pt.up.fe.comp.cp2;
 
+import org.junit.Assert;
 import org.junit.Test;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.inst.SingleOpInstruction;
 import pt.up.fe.comp.CpUtils;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp2025.ConfigOptions;
@@ -180,4 +185,117 @@ public class OptimizationsTest {
         CpUtils.assertFindLiteral("15", method, optimized);
     }
 
+
+    @Test
+    public void cseRepeatedExpressions() {
+
+        String filename = "cse/RepeatedExpressions.jmm";
+
+        var original = getOllirResult(filename);
+        var optimized = getOllirResultOpt(filename);
+
+        var originalMethod = CpUtils.getMethod(original, "foo");
+        var method = CpUtils.getMethod(optimized, "foo");
+
+        CpUtils.assertEquals("Expected two multiplications without -o", 2,
+                CpUtils.getOperationInstances(OperationType.MUL, originalMethod, original).size(), original);
+        CpUtils.assertEquals("Expected 'x * y' and 'y * x' to share a single multiplication", 1,
+                CpUtils.getOperationInstances(OperationType.MUL, method, optimized).size(), optimized);
+        CpUtils.assertEquals("Expected 'a[i] + a[i]' to load the array element once", 1,
+                countArrayLoads(method), optimized);
+    }
+
+    @Test
+    public void cseKilledByArrayStore() {
+
+        String filename = "cse/KilledByStore.jmm";
+
+        var optimized = getOllirResultOpt(filename);
+        var method = CpUtils.getMethod(optimized, "foo");
+
+        CpUtils.assertEquals("Expected 'a[i]' to be loaded again after the array store", 2,
+                countArrayLoads(method), optimized);
+    }
+
+    @Test
+    public void algebraicIdentities() {
+
+        String filename = "algebraic/Identities.jmm";
+
+        var original = getOllirResult(filename);
+        var optimized = getOllirResultOpt(filename);
+
+        var method = CpUtils.getMethod(optimized, "foo");
+
+        CpUtils.assertTrue("Expected code to change with -o flag\n\nOriginal code:\n" + original.getOllirCode(),
+                !original.getOllirCode().equals(optimized.getOllirCode()), optimized);
+
+        for (var opType : new OperationType[]{OperationType.MUL, OperationType.DIV, OperationType.SUB, OperationType.NOTB}) {
+            CpUtils.assertEquals("Expected no " + opType + " after simplification", 0,
+                    CpUtils.getOperationInstances(opType, method, optimized).size(), optimized);
+        }
+        CpUtils.assertEquals("Expected only 'a + c' to remain", 1,
+                CpUtils.getOperationInstances(OperationType.ADD, method, optimized).size(), optimized);
+    }
+
+    @Test
+    public void strengthReductionInductionVariable() {
+
+        String filename = "algebraic/InductionMul.jmm";
+
+        var original = getOllirResult(filename);
+        var optimized = getOllirResultOpt(filename);
+
+        var originalMethod = CpUtils.getMethod(original, "foo");
+        var method = CpUtils.getMethod(optimized, "foo");
+
+        CpUtils.assertEquals("Expected one multiplication without -o", 1,
+                CpUtils.getOperationInstances(OperationType.MUL, originalMethod, original).size(), original);
+
+        // A multiplicação passa para antes do loop e dentro do loop fica só uma soma
+        var muls = CpUtils.getOperationInstances(OperationType.MUL, method, optimized);
+        CpUtils.assertEquals("Expected a single multiplication, before the loop", 1, muls.size(), optimized);
+        CpUtils.assertTrue("Expected the multiplication to initialize the reduced variable",
+                optimized.getOllirCode().matches("(?s).*iv\\d+_i\\.i32 :=\\.i32 i\\.i32 \\*\\.i32 3\\.i32;\\s*while.*"), optimized);
+    }
+
+    @Test
+    public void optimizedInstructionCounts() {
+
+        String[] filenames = {"const_prop_fold/FoldSequence.jmm", "const_prop_fold/FoldSimple.jmm",
+                "const_prop_fold/PropAndFoldingSimple.jmm", "const_prop_fold/PropSimple.jmm",
+                "const_prop_fold/PropWithLoop.jmm", "extras/ComplexWhileIfElse.jmm", "extras/ExprMixArithmetic.jmm",
+                "algebraic/Identities.jmm", "algebraic/InductionMul.jmm"};
+
+        int originalTotal = 0;
+        int optimizedTotal = 0;
+
+        for (String filename : filenames) {
+            var original = getOllirResult(filename);
+            var optimized = getOllirResultOpt(filename);
+
+            int originalCount = countInstructions(original);
+            int optimizedCount = countInstructions(optimized);
+            // A redução de força pode acrescentar instruções fora do loop, por isso só o total é verificado
+            System.out.println(filename + ": " + originalCount + " -> " + optimizedCount + " instructions");
+
+            originalTotal += originalCount;
+            optimizedTotal += optimizedCount;
+        }
+
+        System.out.println("Total: " + originalTotal + " -> " + optimizedTotal + " instructions");
+        Assert.assertTrue("Expected -o to reduce the total number of instructions", optimizedTotal < originalTotal);
+    }
+
+    private static int countInstructions(OllirResult ollirResult) {
+        return ollirResult.getOllirClass().getMethods().stream()
+                .mapToInt(method -> method.getInstructions().size())
+                .sum();
+    }
+
+    private static int countArrayLoads(Method method) {
+        return CpUtils.getOllirNodes(method, node -> node instanceof SingleOpInstruction singleOp
+                && singleOp.getSingleOperand() instanceof ArrayOperand).size();
+    }
+
 }
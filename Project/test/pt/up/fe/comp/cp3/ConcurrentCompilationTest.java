@@ -0,0 +1,103 @@
+package pt.up.fe.comp.cp3;
+
+import org.junit.Test;
+import utils.ProjectTestUtils;
+import utils.SyntheticProgramGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles the programs of the test suite from several threads at the same time and checks that the Jasmin code is
+ * the same, byte for byte, as when each program is compiled alone.
+ */
+public class ConcurrentCompilationTest {
+
+    private static final Path CORPUS = Path.of("test/pt/up/fe/comp");
+
+    private static final int THREADS = 8;
+
+    // Cada programa é compilado várias vezes, em ordens diferentes, para as compilações se sobreporem
+    private static final int ROUNDS = 2;
+
+    private static final List<Map<String, String>> CONFIGS = List.of(
+            Map.of(),
+            Map.of("optimize", "true"),
+            Map.of("optimize", "true", "registerAllocation", "0"));
+
+    private record Job(String name, String code, Map<String, String> config) {
+    }
+
+    @Test
+    public void section3_Concurrent_SameJasminAsSequential() throws Exception {
+        List<Job> jobs = new ArrayList<>();
+        for (var program : getCorpus().entrySet()) {
+            for (var config : CONFIGS) {
+                jobs.add(new Job(program.getKey(), program.getValue(), config));
+            }
+        }
+
+        // Só entram os programas que compilam sem erros (ex: os testes de erros semânticos ficam de fora)
+        Map<Job, String> expected = new LinkedHashMap<>();
+        for (var job : jobs) {
+            try {
+                expected.put(job, compile(job));
+            } catch (RuntimeException e) {
+                // Ignorado
+            }
+        }
+        assertTrue("Expected a larger corpus, found " + expected.size() + " compilations", expected.size() > 100);
+
+        List<Job> concurrentJobs = new ArrayList<>();
+        var random = new Random(0);
+        for (int round = 0; round < ROUNDS; round++) {
+            var shuffled = new ArrayList<>(expected.keySet());
+            Collections.shuffle(shuffled, random);
+            concurrentJobs.addAll(shuffled);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (var job : concurrentJobs) {
+                results.add(executor.submit(() -> compile(job)));
+            }
+
+            for (int i = 0; i < concurrentJobs.size(); i++) {
+                var job = concurrentJobs.get(i);
+                assertEquals(job.name() + ", config " + job.config(), expected.get(job), results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String compile(Job job) {
+        return ProjectTestUtils.compile(job.code(), new HashMap<>(job.config())).getJasminCode();
+    }
+
+    // Programas .jmm dos testes, mais alguns sintéticos maiores
+    private static Map<String, String> getCorpus() throws IOException {
+        Map<String, String> corpus = new TreeMap<>();
+
+        try (Stream<Path> files = Files.walk(CORPUS)) {
+            for (var file : files.filter(path -> path.toString().endsWith(".jmm")).toList()) {
+                corpus.put(CORPUS.relativize(file).toString(), Files.readString(file));
+            }
+        }
+
+        for (long seed = 1; seed <= 4; seed++) {
+            corpus.put("synthetic " + seed, new SyntheticProgramGenerator(seed).setMethods(8).generate());
+        }
+
+        return corpus;
+    }
+}
@@ -14,13 +14,30 @@
 package pt.up.fe.comp.cp3;
 
 import org.junit.Test;
+import org.specs.comp.ollir.Field;
+import org.specs.comp.ollir.inst.PutFieldInstruction;
+
+import static org.junit.Assert.*;
 import pt.up.fe.comp.CpUtils;
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2025.backend.BytecodeCounter;
+import pt.up.fe.comp2025.backend.BytecodeMetrics;
+import pt.up.fe.comp2025.optimization.ArrayLengthHoisting;
+import pt.up.fe.comp2025.optimization.FieldPromotion;
+import pt.up.fe.comp2025.optimization.MethodInlining;
+import pt.up.fe.comp2025.optimization.PurityAnalysis;
 import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+import utils.JasminRunner;
+import utils.SyntheticProgramGenerator;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class JasminOptimizationsTest {
@@ -34,10 +51,29 @@ public class JasminOptimizationsTest {
         return TestUtils.backend(resource);
     }
 
+    static Map<String, String> optimizeConfig() {
+        return new HashMap<>(Map.of("optimize", "true"));
+    }
+
+    static OllirResult getOllirResultOpt(String filename) {
+        return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/" + filename), optimizeConfig(), false);
+    }
+
     static JasminResult getJasminResultOpt(String filename) {
-        Map<String, String> config = new HashMap<>();
-        config.put("optimize", "true");
-        return TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/" + filename), config);
+        return TestUtils.backend(getOllirResultOpt(filename));
+    }
+
+    /**
+     * Runs the program compiled without and with -o, checking that both print the expected output, and returns the
+     * code compiled with -o.
+     */
+    static JasminResult checkOptimizedKeepsOutput(String filename, String expected) {
+        assertEquals(expected, JasminRunner.run(getJasminResult(filename)).trim());
+
+        var optimized = getJasminResultOpt(filename);
+        assertEquals(filename + " with -o", expected, JasminRunner.run(optimized).trim());
+
+        return optimized;
     }
 
     static JasminResult getJasminResultReg(String filename, int numReg) {
@@ -67,6 +103,16 @@ public class JasminOptimizationsTest {
     }
 
 
+    /**
+     * Test if -1, which constant folding produces from 0 - 1, is loaded with iconst_m1
+     */
+    @Test
+    public void section1_InstSelection_iconst_m1() {
+        JasminResult jasminResult = getJasminResultOpt("InstSelection_iconst_m1.jmm");
+        CpUtils.matches(jasminResult, "iconst_m1");
+        assertEquals("-1", JasminRunner.run(jasminResult).trim());
+    }
+
     /**
      * Test if integer 32767 is loaded with sipush
      */
@@ -121,5 +167,486 @@ public class JasminOptimizationsTest {
 
     }
 
+    /**
+     * Test if iinc is used for subtractions, constants on the left and constants that need wide.
+     */
+    @Test
+    public void section1_InstSelection_iinc_forms() {
+        JasminResult jasminResult = getJasminResult("InstSelection_iinc_forms.jmm");
+        var main = CpUtils.getJasminMethod(jasminResult, "static main");
+
+        for (String step : new String[]{"-1", "1", "7", "300", "-32768", "5"}) {
+            assertTrue("Expected iinc with " + step, main.matches("(?s).*iinc\\s+\\d+\\s+" + step + "\\s.*"));
+        }
+
+        // 40000 não cabe na constante do iinc
+        assertTrue(main.contains("ldc 40000"));
+        assertEquals("7549\n20", JasminRunner.run(jasminResult).trim());
+    }
+
+    /**
+     * Test if comparisons with zero use the if<cond> instructions, including when zero is on the left.
+     */
+    @Test
+    public void section1_InstSelection_zero_compare() {
+        JasminResult jasminResult = getJasminResult("InstSelection_zero_compare.jmm");
+        var main = CpUtils.getJasminMethod(jasminResult, "static main");
+
+        assertTrue(main.contains("ifge"));
+        assertTrue(main.contains("ifle"));
+        assertTrue(main.contains("iflt"));
+        assertFalse(main.contains("if_icmp"));
+        assertEquals("10110", JasminRunner.run(jasminResult).trim());
+    }
+
+    /**
+     * Test that variables in registers above 255 are loaded, stored and incremented correctly.
+     */
+    @Test
+    public void section1_InstSelection_wide() {
+        int locals = 300;
+        var code = new StringBuilder("import io;\nclass InstSelection_wide {\npublic static void main(String[] args) {\n");
+        for (int i = 0; i < locals; i++) {
+            code.append("int v").append(i).append(";\n");
+        }
+        for (int i = 0; i < locals; i++) {
+            code.append("v").append(i).append(" = ").append(i).append(";\n");
+        }
+
+        String last = "v" + (locals - 1);
+        code.append(last).append(" = ").append(last).append(" + 1000;\n");
+        code.append(last).append(" = ").append(last).append(" + v1;\n");
+        code.append("io.println(").append(last).append(");\n}\n}\n");
+
+        JasminResult jasminResult = TestUtils.backend(code.toString());
+        assertTrue(jasminResult.getJasminCode().matches("(?s).*iinc\\s+\\d{3}\\s+1000\\s.*"));
+        assertEquals("1300", JasminRunner.run(jasminResult).trim());
+    }
+
+
+    /**
+     * Runs the program with and without inlining, checking that both print the same.
+     */
+    static JasminResult checkInliningKeepsOutput(String filename, MethodInlining inlining) {
+        OllirResult ollirResult = getOllirResult(filename);
+        String expected = JasminRunner.run(TestUtils.backend(ollirResult));
+
+        JasminResult inlined = TestUtils.backend(inlining.apply(ollirResult));
+        assertEquals(expected, JasminRunner.run(inlined));
+
+        return inlined;
+    }
+
+    @Test
+    public void section3_Inlining_SmallMethods() {
+        var inlining = new MethodInlining();
+        var jasminResult = checkInliningKeepsOutput("inlining/InlineSmallMethods.jmm", inlining);
+
+        assertEquals(4, inlining.getInlinedCount());
+        var main = CpUtils.getJasminMethod(jasminResult, "static main");
+        assertFalse("Expected no calls to inlined methods in main", main.matches("(?s).*invokevirtual\\s+InlineSmallMethods/.*"));
+    }
+
+    @Test
+    public void section3_Inlining_NestedCalls() {
+        var inlining = new MethodInlining();
+        var jasminResult = checkInliningKeepsOutput("inlining/InlineNestedCalls.jmm", inlining);
+
+        var run = CpUtils.getJasminMethod(jasminResult, "run");
+        assertFalse("Expected calls in run to be inlined", run.contains("invokevirtual InlineNestedCalls/"));
+
+        // run is too big to be inlined into main
+        var main = CpUtils.getJasminMethod(jasminResult, "static main");
+        assertTrue(main.contains("invokevirtual InlineNestedCalls/run"));
+    }
+
+    @Test
+    public void section3_Inlining_RecursiveMethodsKept() {
+        var inlining = new MethodInlining();
+        var jasminResult = checkInliningKeepsOutput("inlining/InlineRecursion.jmm", inlining);
+
+        var main = CpUtils.getJasminMethod(jasminResult, "static main");
+        assertTrue(main.contains("invokevirtual InlineRecursion/fact"));
+        assertTrue(main.contains("invokevirtual InlineRecursion/isEven"));
+        assertFalse(main.contains("invokevirtual InlineRecursion/square"));
+        assertTrue(inlining.getReport().stream().anyMatch(line -> line.contains("fact") && line.contains("recursive")));
+    }
+
+    @Test
+    public void section3_Inlining_NullableReceiverKept() {
+        var inlining = new MethodInlining();
+        var ollirCode = inlining.apply(getOllirResult("inlining/InlineNullReceiver.jmm")).getOllirCode();
+
+        // Parameters and fields may be null, and the call must still throw on them
+        assertTrue(ollirCode.contains("invokevirtual(o.InlineNullReceiver, \"sq\""));
+        for (String caller : List.of("callOn", "callOnField")) {
+            assertTrue(inlining.getReport().contains("[inline] " + caller + " -> sq: kept call (receiver may be null)"));
+        }
+
+        // m only ever holds a new object
+        assertTrue(inlining.getReport().stream().anyMatch(line -> line.contains("main -> sq: inlined")));
+    }
+
+    @Test
+    public void section3_Inlining_SizeBudget() {
+        var inlining = new MethodInlining();
+        var jasminResult = checkInliningKeepsOutput("inlining/InlineBudget.jmm", inlining);
+
+        var main = CpUtils.getJasminMethod(jasminResult, "static main");
+        assertTrue(main.contains("invokevirtual InlineBudget/large"));
+        assertFalse(main.contains("invokevirtual InlineBudget/small"));
+
+        // Com um orçamento maior o método grande também é inlined
+        var bigBudget = new MethodInlining(64);
+        var inlinedAll = checkInliningKeepsOutput("inlining/InlineBudget.jmm", bigBudget);
+        assertFalse(CpUtils.getJasminMethod(inlinedAll, "static main").contains("invokevirtual InlineBudget/large"));
+    }
+
+    @Test
+    public void section3_Inlining_EnabledWithOptimize() {
+        var ollirResult = getOllirResultOpt("inlining/InlineSmallMethods.jmm");
+
+        assertFalse(ollirResult.getOllirCode().contains("\"square\""));
+        assertEquals("49\n49\n7", JasminRunner.run(TestUtils.backend(ollirResult)).trim());
+    }
+
+    @Test
+    public void section3_ShortCircuit_LoopConditionBranches() {
+        var jasminResult = TestUtils.backend(getOllirResult("shortcircuit/ShortCircuit.jmm"));
+        var run = CpUtils.getJasminMethod(jasminResult, "run");
+
+        // while (i < 10 && !(i == 7)) jumps straight out of the loop, without materializing booleans
+        assertTrue(run.matches("(?s).*while\\d+:\\s+iload_?\\d+\\s+bipush 10\\s+if_icmpge endwhile\\d+\\s+iload_?\\d+\\s+bipush 7\\s+if_icmpeq endwhile\\d+.*"));
+        assertFalse("Expected no boolean operations in run", run.matches("(?s).*\\s(iand|ior|ixor)\\s.*"));
+    }
+
+    @Test
+    public void section3_ShortCircuit_Evaluation() {
+        // Only the right operands that are needed are evaluated, so touch is called twice
+        checkOptimizedKeepsOutput("shortcircuit/ShortCircuit.jmm", "34\n1\n3\n5\n2\n6");
+    }
+
+    @Test
+    public void section3_ArrayLength_HoistedOutOfLoop() {
+        var jasminResult = getJasminResultOpt("arrays/Quicksort.jmm");
+        assertEquals("1\n2\n3\n4\n5\n6\n7\n8\n9\n10", JasminRunner.run(jasminResult).trim());
+
+        // The length is read once, before the loop, and the loop only compares against a local
+        var printL = CpUtils.getJasminMethod(jasminResult, "printL");
+        var loop = printL.substring(printL.indexOf("while"));
+        assertTrue(printL.contains("arraylength"));
+        assertFalse("Expected arraylength to be hoisted out of the loop", loop.contains("arraylength"));
+    }
+
+    @Test
+    public void section3_ArrayLength_ReassignedArrayKept() {
+        var hoisting = new ArrayLengthHoisting();
+        var ollirResult = hoisting.apply(getOllirResult("arrays/ArrayReassigned.jmm"));
+
+        assertEquals(0, hoisting.getHoistedCount());
+        assertEquals("5", JasminRunner.run(TestUtils.backend(ollirResult)).trim());
+    }
+
+    @Test
+    public void section3_ConstFields_Propagated() {
+        var optimized = checkOptimizedKeepsOutput("fields/ConstFields.jmm", "235\n10\n4\n30");
+
+        // Without -o the const fields are still read, as static fields with a ConstantValue
+        var jasminResult = getJasminResult("fields/ConstFields.jmm");
+        CpUtils.matches(jasminResult, "\\.field\\s+public\\s+static\\s+final\\s+'SIZE'\\s+I\\s*=\\s*10");
+        CpUtils.matches(jasminResult, "\\.field\\s+public\\s+static\\s+final\\s+'DEBUG'\\s+Z\\s*=\\s*0");
+        CpUtils.matches(jasminResult, "getstatic\\s+ConstFields/SIZE\\s+I");
+
+        // With -o the values are propagated into every use (except where a parameter hides the field) and folded
+        var sum = CpUtils.getJasminMethod(optimized, "sum");
+        var main = CpUtils.getJasminMethod(optimized, "static main");
+        assertFalse(sum.contains("getstatic"));
+        assertFalse(main.contains("getstatic"));
+        assertTrue(main.contains("30"));
+    }
+
+    @Test
+    public void section3_TailCalls_BecomeLoops() {
+        // Without -o every recursive call is kept (sumTo is too deep to run like that)
+        var jasminResult = getJasminResult("tailcalls/TailCalls.jmm");
+        assertTrue(CpUtils.getJasminMethod(jasminResult, "sumTo").contains("invokevirtual TailCalls/sumTo"));
+
+        var optimized = getJasminResultOpt("tailcalls/TailCalls.jmm");
+        assertEquals("21\n705082704\n3\n5\n3628800\n2\n1", JasminRunner.run(optimized).trim());
+
+        // The calls in tail position jump back to the start of the method; the one in fact is not in tail position
+        assertFalse(CpUtils.getJasminMethod(optimized, "gcd").contains("invokevirtual"));
+        assertFalse(CpUtils.getJasminMethod(optimized, "sumTo").contains("invokevirtual"));
+        assertFalse(CpUtils.getJasminMethod(optimized, "count").contains("invokevirtual"));
+        assertFalse(CpUtils.getJasminMethod(optimized, "swapLoop").contains("invokevirtual TailCalls/"));
+        assertTrue(CpUtils.getJasminMethod(optimized, "fact").contains("invokevirtual TailCalls/fact"));
+    }
+
+    @Test
+    public void section3_TailCalls_BranchesEndingInReturn() {
+        // retval starts with ret but is not a return, so the then branch still jumps over the else
+        var optimized = checkOptimizedKeepsOutput("tailcalls/ReturnNames.jmm", "1\n2\n-1\n1");
+
+        // When both branches return nothing reaches the end of the if
+        var sign = CpUtils.getJasminMethod(optimized, "sign");
+        assertFalse(sign.contains("goto") || sign.contains("endif"));
+    }
+
+    @Test
+    public void section3_ScalarReplacement_NonEscapingObjects() {
+        var optimized = checkOptimizedKeepsOutput("escape/Accumulator.jmm", "15\n7\n9\n4\n381\n15\n500");
+
+        // The objects created in the loops never leave the method, so their fields become locals
+        assertFalse(CpUtils.getJasminMethod(optimized, "loopStraight").contains("new Accumulator"));
+        assertFalse(CpUtils.getJasminMethod(optimized, "loopBranches").contains("new Accumulator"));
+
+        // The ones that are returned, or used by a call that is not inlined, are still created
+        assertTrue(CpUtils.getJasminMethod(optimized, "make").contains("new Accumulator"));
+        assertTrue(CpUtils.getJasminMethod(optimized, "useHist").contains("new Accumulator"));
+    }
+
+    @Test
+    public void section3_Devirtualization_PrivateCalls() {
+        var optimized = checkOptimizedKeepsOutput("devirtualization/PrivateCalls.jmm", "835\n5050\n144");
+
+        // Nothing extends the class, which becomes final
+        CpUtils.matches(optimized, "\\.class\\s+final\\s+PrivateCalls");
+
+        // fib never uses this and is only called on objects just created, so it becomes static
+        CpUtils.matches(optimized, "\\.method\\s+private\\s+static\\s+fib");
+        CpUtils.matches(optimized, "invokestatic\\s+PrivateCalls/fib");
+
+        // sumDown uses a field, so it stays an instance method, called without a virtual lookup
+        assertTrue(CpUtils.getJasminMethod(optimized, "sumDown").contains("invokespecial PrivateCalls/sumDown"));
+        assertFalse(optimized.getJasminCode().contains("invokevirtual PrivateCalls/"));
+    }
+
+    @Test
+    public void section3_PureCalls_FoldedAndReused() {
+        var optimized = checkOptimizedKeepsOutput("purity/PureCalls.jmm", "610\n12\n1\n6\n7\n1000000\n18");
+
+        // counted writes a field and div can throw but has no effects; the recursive fib is pure too
+        var semantics = TestUtils.analyse(SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/purity/PureCalls.jmm"));
+        var purity = new PurityAnalysis(semantics.getSymbolTable(), semantics.getRootNode());
+        assertTrue(purity.isPure("fib") && purity.isPure("gcd") && purity.isPure("isPrime") && purity.isPure("div"));
+        assertFalse(purity.isPure("counted"));
+        assertFalse(purity.isPure("main"));
+        assertTrue(purity.getCallees("mix").contains("gcd"));
+
+        // The calls with literal arguments are computed at compile time, unless they take too long (fib(15) and
+        // spin(1000000)); the calls to counted stay, and so does the second, whose value is not used, to fib
+        var main = CpUtils.getJasminMethod(optimized, "static main");
+        assertFalse(main.contains("gcd") || main.contains("isPrime") || main.contains("mix"));
+        assertEquals(1, main.split("PureCalls/fib", -1).length - 1);
+
+        // The three calls to gcd with the same arguments in mix are made once (and then inlined)
+        assertEquals(1, CpUtils.getJasminMethod(optimized, "mix").split("idiv", -1).length - 1);
+    }
+
+    @Test
+    public void section3_VarArgs_SharedArrays() {
+        String expected = "3\n0\n21\n565\n204\n9\n1\n10\n1";
+        assertEquals(expected, JasminRunner.run(getJasminResult("varargs/VarArgsCalls.jmm")).trim());
+
+        var ollirResult = getOllirResultOpt("varargs/VarArgsCalls.jmm");
+        var jasminResult = TestUtils.backend(ollirResult);
+        assertEquals(expected, JasminRunner.run(jasminResult).trim());
+
+        // sum and any only read their arrays, so the calls share arrays kept in static fields; fill writes to its
+        // array, so each call to it still creates a new one
+        var fields = ollirResult.getOllirClass().getFields().stream()
+                .filter(Field::isStaticField)
+                .map(Field::getFieldName)
+                .toList();
+        assertTrue(fields.stream().anyMatch(name -> name.endsWith("_sum")));
+        assertTrue(fields.stream().anyMatch(name -> name.endsWith("_any")));
+        assertFalse(fields.stream().anyMatch(name -> name.contains("fill")));
+        CpUtils.matches(jasminResult, "getstatic");
+        CpUtils.matches(jasminResult, "putstatic");
+    }
+
+    @Test
+    public void section3_FieldPromotion_AccumulatorInLocals() {
+        var jasminResult = getJasminResultOpt("fields/FieldAccumulator.jmm");
+        assertEquals("135\n270\n20", JasminRunner.run(jasminResult).trim());
+
+        // The fields are read before the loop and written after it, never inside
+        var sum = CpUtils.getJasminMethod(jasminResult, "sum");
+        var loop = sum.substring(sum.indexOf("while"), sum.indexOf("endwhile", sum.indexOf("goto while")));
+        assertFalse("Expected no field accesses inside the loop", loop.contains("getfield") || loop.contains("putfield"));
+        assertTrue(sum.contains("putfield"));
+
+        // Also in the copy of sum inlined into main, where the object is a new FieldAccumulator
+        var jasmin = jasminResult.getJasminCode();
+        var inlined = jasmin.substring(jasmin.indexOf("while0_i0:"), jasmin.indexOf("endwhile0_i0:"));
+        assertFalse(inlined.contains("getfield") || inlined.contains("putfield"));
+    }
+
+    @Test
+    public void section3_FieldPromotion_FieldReadByCallKept() {
+        var promotion = new FieldPromotion();
+        var ollirResult = promotion.apply(getOllirResult("fields/FieldObservedByCall.jmm"));
+
+        // Only steps is promoted, since log reads total at every iteration
+        assertEquals(1, promotion.getPromotedCount());
+        var run = CpUtils.getMethod(ollirResult, "run");
+        assertTrue(CpUtils.getInstructions(PutFieldInstruction.class, run).stream()
+                .anyMatch(put -> put.toString().contains("total")));
+        assertEquals("0\n1\n3\n6\n4", JasminRunner.run(TestUtils.backend(ollirResult)).trim());
+    }
+
+    @Test
+    public void section3_Synthetic_Deterministic() {
+        var generator = new SyntheticProgramGenerator(7).setMethods(5).setLoopDepth(3);
+        var code = generator.generate();
+
+        assertEquals(code, generator.generate());
+        assertEquals(code, new SyntheticProgramGenerator(7).setMethods(5).setLoopDepth(3).generate());
+        assertNotEquals(code, new SyntheticProgramGenerator(8).setMethods(5).setLoopDepth(3).generate());
+    }
+
+    @Test
+    public void section3_Synthetic_SameOutputAsJava() {
+        // Output of the same programs compiled with javac
+        var expected = Map.of(
+                1L, "246\n1023757365",
+                2L, "38609\n61377",
+                3L, "-4\n208636",
+                4L, "-133\n2501");
+
+        var configs = List.of(
+                Map.<String, String>of(),
+                Map.of("optimize", "true"),
+                Map.of("registerAllocation", "1"),
+                Map.of("optimize", "true", "registerAllocation", "0"));
+
+        for (var entry : expected.entrySet()) {
+            var code = new SyntheticProgramGenerator(entry.getKey()).setMethods(6).generate();
+
+            for (var config : configs) {
+                assertEquals("seed " + entry.getKey() + ", config " + config, entry.getValue(),
+                        JasminRunner.run(TestUtils.backend(code, new HashMap<>(config))).trim());
+            }
+        }
+    }
+
+    @Test
+    public void section3_Kernels_SameOutputAsJava() {
+        // Output of the kernels compiled with javac
+        var expected = Map.of(
+                "QuicksortKernel", "1643482",
+                "NestedLoopsKernel", "-1576816208",
+                "ArraySumKernel", "1943055968",
+                "RecursionKernel", "196418\n2001000");
+
+        for (var entry : expected.entrySet()) {
+            var code = SpecsIo.getResource("pt/up/fe/comp/cp3/kernels/" + entry.getKey() + ".jmm");
+            var plain = TestUtils.backend(code);
+            var optimized = TestUtils.backend(code, optimizeConfig());
+
+            assertEquals(entry.getKey(), entry.getValue(), JasminRunner.run(plain).trim());
+            assertEquals(entry.getKey() + " with -o", entry.getValue(), JasminRunner.run(optimized).trim());
+
+            long plainCount = BytecodeCounter.count(plain.getJasminCode());
+            long optimizedCount = BytecodeCounter.count(optimized.getJasminCode());
+            assertTrue(entry.getKey() + " executes more bytecodes with -o", optimizedCount <= plainCount);
+
+            // O comprimento do array deixa de ser lido em cada iteração
+            if (entry.getKey().equals("ArraySumKernel")) {
+                assertTrue(optimizedCount < plainCount);
+            }
+
+            // Com o menor número de registos possível, nenhum método precisa de mais variáveis locais
+            var allocated = TestUtils.backend(code, new HashMap<>(Map.of("optimize", "true", "registerAllocation", "0")));
+            assertEquals(entry.getKey() + " with -o -r=0", entry.getValue(), JasminRunner.run(allocated).trim());
+
+            var optimizedMetrics = BytecodeMetrics.of(optimized);
+            for (var method : BytecodeMetrics.of(allocated).getMethods()) {
+                assertTrue(entry.getKey() + "." + method.key() + " uses more locals with -r=0",
+                        method.maxLocals() <= optimizedMetrics.getMethod(method.key()).maxLocals());
+            }
+        }
+    }
+
+    /**
+     * Test that -r=n reports each method that uses more than n registers, with the number it uses, and that the code
+     * still runs using them.
+     */
+    @Test
+    public void section3_RegisterAllocation_ReportsTooFewRegisters() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cp3/optimizations/registers/ManyLocals.jmm");
+        var ollirResult = TestUtils.optimize(code, new HashMap<>(Map.of("registerAllocation", "1")));
 
+        // twice só precisa de um registo; sum tem a, b e c vivos ao mesmo tempo
+        assertEquals(List.of(
+                "Method sum uses 3 registers for its local variables, more than the 1 allowed by -r",
+                "Method main uses 2 registers for its local variables, more than the 1 allowed by -r"),
+                registerWarnings(ollirResult));
+        assertEquals("38", JasminRunner.run(TestUtils.backend(ollirResult)).trim());
+
+        // Com -o, o código que sai dos passes sobre o texto também recebe os avisos
+        var optimized = TestUtils.optimize(code, new HashMap<>(Map.of("optimize", "true", "registerAllocation", "1")));
+        assertTrue(registerWarnings(optimized).get(0).startsWith("Method sum uses"));
+        assertEquals("38", JasminRunner.run(TestUtils.backend(optimized)).trim());
+
+        // Com registos suficientes, ou com -r=0, que pede o menor número possível, não há avisos
+        var enough = TestUtils.optimize(code, new HashMap<>(Map.of("registerAllocation", "3")));
+        assertEquals(List.of(), registerWarnings(enough));
+        var fewest = TestUtils.optimize(code, new HashMap<>(Map.of("registerAllocation", "0")));
+        assertEquals(List.of(), registerWarnings(fewest));
+    }
+
+    private static List<String> registerWarnings(OllirResult ollirResult) {
+        return ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.WARNING && report.getStage() == Stage.OPTIMIZATION)
+                .map(Report::getMessage)
+                .toList();
+    }
+
+    /**
+     * Test that the metrics of each method agree with the Jasmin code and with the executed instructions counted for
+     * the whole program.
+     */
+    @Test
+    public void section3_Metrics_PerMethod() {
+        var jasminResult = TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cp3/kernels/RecursionKernel.jmm"));
+        var metrics = BytecodeMetrics.ofRun(jasminResult);
+
+        var fib = metrics.getMethod("fib");
+        assertEquals("fib(I)I", fib.key());
+        assertEquals(fib, metrics.getMethod("fib(I)I"));
+
+        var limitStack = SpecsStrings.getRegexGroup(CpUtils.getJasminMethod(jasminResult, "fib"),
+                CpUtils.getLimitStackRegex(), 1);
+        assertEquals(Integer.parseInt(limitStack), fib.maxStack());
+        assertEquals(fib.instructions(), fib.instructionMix().values().stream().mapToInt(Integer::intValue).sum());
+        assertTrue(fib.codeSize() >= fib.instructions());
+        assertEquals(1, fib.count("ireturn"));
+
+        assertEquals(BytecodeCounter.count(jasminResult.getJasminCode()), metrics.getTotalExecutedInstructions());
+        assertEquals(3, metrics.getMethod("<init>").executedInstructions());
+        // Quase todo o trabalho é feito nas chamadas recursivas de fib
+        assertTrue(fib.executedInstructions() > 0.99 * metrics.getTotalExecutedInstructions());
+
+        assertEquals(BytecodeMetrics.NOT_RUN, BytecodeMetrics.of(jasminResult).getTotalExecutedInstructions());
+    }
+
+    /**
+     * Test that optimizations reduce the work measured by the metrics: the length of the array is no longer read in
+     * each iteration of the loop, and increments become a single iinc.
+     */
+    @Test
+    public void section3_Metrics_OptimizationReducesWork() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cp3/kernels/ArraySumKernel.jmm");
+
+        var plain = BytecodeMetrics.ofRun(TestUtils.backend(code)).getMethod("sum");
+        var optimized = BytecodeMetrics.ofRun(TestUtils.backend(code, optimizeConfig())).getMethod("sum");
+
+        assertTrue(optimized.executedInstructions() < plain.executedInstructions());
+        assertEquals(plain.count("arraylength"), optimized.count("arraylength"));
+
+        var main = BytecodeMetrics.of(getJasminResult("InstSelection_iinc.jmm")).getMethod("main");
+        assertEquals(1, main.count("iinc"));
+        assertEquals(0, main.count("iadd"));
+    }
 }
@@ -18,11 +18,13 @@ import pt.up.fe.comp.CpUtils;
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.backend.JasminGenerator;
 import pt.up.fe.specs.util.SpecsCheck;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsStrings;
 import utils.ProjectTestUtils;
 
+import java.io.StringWriter;
 import java.util.Collections;
 
 import static org.junit.Assert.assertEquals;
@@ -215,6 +217,40 @@ public class JasminTest {
         assertTrue("Expected aload index to be greater than 1, is " + aloadIndex + ":\n" + methodCode, aloadIndex > 1);
     }
 
+    /*checks if boolean and reference arrays use their own instructions, instead of the ones for int arrays*/
+    @Test
+    public void section5_Arrays_Typed_Instructions() {
+        var jasminResult = TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cp3/jasmin/arrays/BooleanArrays.jmm"));
+        CpUtils.runJasmin(jasminResult, "25\n1\n2");
+
+        var count = CpUtils.getJasminMethod(jasminResult, "count");
+        CpUtils.matches(count, "newarray\\s+boolean");
+        CpUtils.matches(count, "baload");
+        CpUtils.matches(count, "bastore");
+
+        var main = jasminResult.getJasminCode();
+        CpUtils.matches(main, "anewarray\\s+BooleanArrays");
+        CpUtils.matches(main, "anewarray\\s+java/lang/String");
+        CpUtils.matches(main, "aastore");
+        CpUtils.matches(main, "aaload");
+        assertTrue("Expected no iaload or iastore:\n" + main, !main.contains("iaload") && !main.contains("iastore"));
+    }
+
+    /*checks if arrays with more than one dimension are created at once and accessed one dimension at a time*/
+    @Test
+    public void section5_Arrays_MultiDimensional() {
+        var jasminResult = TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/cp3/jasmin/arrays/MultiDimArrays.jmm"));
+        CpUtils.runJasmin(jasminResult, "20\n48\n3\n3\n7");
+
+        var multiply = CpUtils.getJasminMethod(jasminResult, "multiply");
+        CpUtils.matches(multiply, "multianewarray\\s+\\[\\[I\\s+2");
+        CpUtils.matches(multiply, "aaload");
+        CpUtils.matches(multiply, "iaload");
+        CpUtils.matches(multiply, "\\(\\[\\[I\\[\\[II\\)\\[\\[I");
+
+        CpUtils.matches(jasminResult, "multianewarray\\s+\\[\\[\\[Z\\s+3");
+    }
+
     /*checks if the .limits locals is not a const 99 value */
     @Test
     public void section6_Limits_Locals_Not_99() {
@@ -275,4 +311,15 @@ public class JasminTest {
         // Make sure the code compiles
         jasminResult.compile();
     }
+
+    @Test
+    public void streamingBuildMatchesBuild() {
+        var ollirResult = new OllirResult(SpecsIo.getResource("pt/up/fe/comp/cp3/jasmin/calls/OllirToJasminInvoke.ollir"), Collections.emptyMap());
+
+        // Writing straight into a Writer gives the same code as building it in memory
+        var writer = new StringWriter();
+        new JasminGenerator(ollirResult).build(writer);
+
+        assertEquals(new JasminGenerator(ollirResult).build(), writer.toString());
+    }
 }
@@ -0,0 +1,141 @@
+package utils;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2025.backend.JasminClassLoader;
+import pt.up.fe.specs.util.system.ProcessOutputAsString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Runs compiled Jasmin code in the JVM of the tests, instead of writing class files and starting a new JVM for each
+ * program as {@link JasminResult#run()} does.
+ * <p>
+ * The class is defined in a new {@link JasminClassLoader}, so each run starts with fresh static state. What the
+ * program writes to {@code System.out} and reads from {@code System.in} goes through streams that are chosen per
+ * thread, so several programs can run at the same time, as long as each runs in its own thread.
+ */
+public class JasminRunner {
+
+    private static final int EXIT_FAILURE = 1;
+
+    private static final ThreadLocal<PrintStream> THREAD_OUT = new ThreadLocal<>();
+
+    private static final ThreadLocal<InputStream> THREAD_IN = new ThreadLocal<>();
+
+    // Threads que não estão a correr um programa continuam a usar as streams originais
+    private static volatile PrintStream defaultOut = System.out;
+
+    private static volatile InputStream defaultIn = System.in;
+
+    private static final PrintStream ROUTING_OUT = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+            currentOut().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            currentOut().write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            currentOut().flush();
+        }
+    }, true, StandardCharsets.UTF_8);
+
+    private static final InputStream ROUTING_IN = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            return currentIn().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return currentIn().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return currentIn().available();
+        }
+    };
+
+    private JasminRunner() {
+    }
+
+    private static PrintStream currentOut() {
+        var out = THREAD_OUT.get();
+        return out != null ? out : defaultOut;
+    }
+
+    private static InputStream currentIn() {
+        var in = THREAD_IN.get();
+        return in != null ? in : defaultIn;
+    }
+
+    /**
+     * Runs the main method of the compiled class and returns what it wrote to the standard output.
+     */
+    public static String run(JasminResult jasminResult, String... args) {
+        return runWithFullOutput(jasminResult, "", args).getOutput();
+    }
+
+    /**
+     * Runs the main method of the compiled class, with the given text as standard input.
+     * <p>
+     * As with a separate JVM, an exception thrown by the program (including a {@link VerifyError} of the generated
+     * code) gives a return value different from zero, with its stack trace in the standard error. Errors while
+     * assembling the Jasmin code are thrown.
+     */
+    public static ProcessOutputAsString runWithFullOutput(JasminResult jasminResult, String input, String... args) {
+        var mainClass = new JasminClassLoader().define(jasminResult.getJasminCode());
+
+        installRouting();
+
+        var stdout = new ByteArrayOutputStream();
+        THREAD_OUT.set(new PrintStream(stdout, true, StandardCharsets.UTF_8));
+        THREAD_IN.set(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+
+        int returnValue = 0;
+        String stderr = "";
+        try {
+            JasminClassLoader.runMain(mainClass, args);
+        } catch (RuntimeException | Error e) {
+            returnValue = EXIT_FAILURE;
+            stderr = "Exception in thread \"main\" " + stackTrace(e);
+        } finally {
+            THREAD_OUT.remove();
+            THREAD_IN.remove();
+        }
+
+        return new ProcessOutputAsString(returnValue, stdout.toString(StandardCharsets.UTF_8), stderr);
+    }
+
+    // Outras partes dos testes (ex: TestUtils) também trocam o System.out, por isso é reposto antes de cada execução
+    private static synchronized void installRouting() {
+        if (System.out != ROUTING_OUT) {
+            defaultOut = System.out;
+            System.setOut(ROUTING_OUT);
+        }
+
+        if (System.in != ROUTING_IN) {
+            defaultIn = System.in;
+            System.setIn(ROUTING_IN);
+        }
+    }
+
+    private static String stackTrace(Throwable e) {
+        var writer = new StringWriter();
+        e.printStackTrace(new PrintWriter(writer));
+        return writer.toString();
+    }
+}
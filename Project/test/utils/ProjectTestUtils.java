@@ -6,8 +6,13 @@ import org.specs.comp.ollir.inst.BinaryOpInstruction;
 import org.specs.comp.ollir.inst.CallInstruction;
 import org.specs.comp.ollir.inst.SingleOpInstruction;
 import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2025.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2025.backend.JasminBackendImpl;
+import pt.up.fe.comp2025.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2025.parser.JmmParserImpl;
 import pt.up.fe.specs.util.SpecsCollections;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsStrings;
@@ -16,10 +21,14 @@ import pt.up.fe.specs.util.system.ProcessOutputAsString;
 import pt.up.fe.specs.util.utilities.LineStream;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -32,12 +41,39 @@ public class ProjectTestUtils {
     // private static final File RANDOM_TEST_FOLDER = SpecsIo.newRandomFolder();
 
     public static File getRandomFolder() {
-        var folder = SpecsIo.newRandomFolder();
-        SpecsIo.deleteFolderContents(folder);
-        return folder;
+        // A pasta é criada de forma atómica, por isso testes em paralelo nunca recebem a mesma
+        try {
+            var folder = Files.createTempDirectory("comp").toFile();
+            SpecsIo.deleteOnExit(folder);
+            return folder;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a temporary folder", e);
+        }
         // return RANDOM_TEST_FOLDER;
     }
 
+    /**
+     * Compiles Java-- code to Jasmin with the given configuration, going through the same stages as
+     * {@link TestUtils#backend(String, Map)}.
+     * <p>
+     * The stages are instantiated and called directly, without {@link TestUtils}, which redirects {@code System.out}
+     * of the whole JVM to its logger on every call. This is what the benchmarks and the concurrent tests use.
+     */
+    public static JasminResult compile(String code, Map<String, String> config) {
+        var parserResult = new JmmParserImpl().parse(code, config);
+        TestUtils.noErrors(parserResult);
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+        TestUtils.noErrors(semanticsResult);
+
+        var optimization = new JmmOptimizationImpl();
+        var ollirResult = optimization.optimize(optimization.toOllir(optimization.optimize(semanticsResult)));
+        TestUtils.noErrors(ollirResult);
+        var jasminResult = new JasminBackendImpl().toJasmin(ollirResult);
+        TestUtils.noErrors(jasminResult);
+
+        return jasminResult;
+    }
+
     /**
      * Helper method assumes repo is working dir.
      *
@@ -328,7 +364,7 @@ public class ProjectTestUtils {
     }
 
     public static void runJasmin(JasminResult jasminResult, String expected) {
-        var output = SpecsStrings.normalizeFileContents(jasminResult.run(), true);
+        var output = SpecsStrings.normalizeFileContents(JasminRunner.run(jasminResult), true);
 
         // No expected output, just run test
         if (expected == null) {
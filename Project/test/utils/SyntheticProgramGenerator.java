@@ -0,0 +1,265 @@
+package utils;
+
+import java.util.Random;
+
+/**
+ * Generates large, valid Java-- programs for scalability tests and benchmarks.
+ * <p>
+ * The same seed and settings always produce the same program. Programs only use constructs of the grammar that every
+ * stage supports (int and boolean locals, int arrays, fields, if/else, while, && / || / !, and calls to methods of the
+ * class), and they always terminate: loops have small constant trip counts, methods only call methods declared before
+ * them, and every call spends one unit of a field that starts with a fixed budget.
+ * <p>
+ * Running the generated program prints the value returned by {@code run} and the final value of the {@code acc} field.
+ */
+public class SyntheticProgramGenerator {
+
+    public static final String CLASS_NAME = "Synthetic";
+
+    // Tamanho do array partilhado por todos os métodos
+    private static final int ARRAY_SIZE = 8;
+
+    // Número máximo de chamadas executadas, para o tempo de execução não crescer exponencialmente
+    private static final int CALL_BUDGET = 2000;
+
+    private static final int MAX_TRIP_COUNT = 3;
+
+    private static final int MAX_LITERAL = 100;
+
+    private static final String INDENT = "    ";
+
+    private final long seed;
+
+    private int methods = 10;
+    private int localsPerMethod = 4;
+    private int statementsPerBlock = 4;
+    private int loopDepth = 2;
+    private int expressionDepth = 3;
+    private double callDensity = 0.2;
+
+    private Random random;
+    private StringBuilder code;
+    private int currentMethod;
+
+    public SyntheticProgramGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public SyntheticProgramGenerator setMethods(int methods) {
+        this.methods = Math.max(methods, 1);
+        return this;
+    }
+
+    public SyntheticProgramGenerator setLocalsPerMethod(int localsPerMethod) {
+        this.localsPerMethod = Math.max(localsPerMethod, 1);
+        return this;
+    }
+
+    public SyntheticProgramGenerator setStatementsPerBlock(int statementsPerBlock) {
+        this.statementsPerBlock = Math.max(statementsPerBlock, 1);
+        return this;
+    }
+
+    public SyntheticProgramGenerator setLoopDepth(int loopDepth) {
+        this.loopDepth = Math.max(loopDepth, 0);
+        return this;
+    }
+
+    public SyntheticProgramGenerator setExpressionDepth(int expressionDepth) {
+        this.expressionDepth = Math.max(expressionDepth, 1);
+        return this;
+    }
+
+    /**
+     * Probability, between 0 and 1, of a statement being a call to another method of the class.
+     */
+    public SyntheticProgramGenerator setCallDensity(double callDensity) {
+        this.callDensity = Math.min(Math.max(callDensity, 0), 1);
+        return this;
+    }
+
+    public String generate() {
+        // Cada geração recomeça da semente, para o mesmo gerador dar sempre o mesmo programa
+        random = new Random(seed);
+        code = new StringBuilder(methods * statementsPerBlock * (loopDepth + 1) * 128);
+
+        code.append("import io;\n\n");
+        code.append("class ").append(CLASS_NAME).append(" {\n");
+        code.append(INDENT).append("int acc;\n");
+        code.append(INDENT).append("int fuel;\n\n");
+
+        for (currentMethod = 0; currentMethod < methods; currentMethod++) {
+            generateMethod();
+        }
+
+        generateRun();
+        generateMain();
+
+        code.append("}\n");
+        return code.toString();
+    }
+
+    private void generateMethod() {
+        code.append(INDENT).append("public int m").append(currentMethod).append("(int p0, int p1, int[] arr) {\n");
+
+        for (int i = 0; i < localsPerMethod; i++) {
+            line(2, "int l" + i + ";");
+        }
+        for (int i = 0; i < loopDepth; i++) {
+            line(2, "int c" + i + ";");
+        }
+        line(2, "boolean b0;");
+
+        // Todas as variáveis começam inicializadas, para o código ser válido em qualquer caminho
+        for (int i = 0; i < localsPerMethod; i++) {
+            line(2, "l" + i + " = " + (i % 2 == 0 ? "p" + (i / 2 % 2) : String.valueOf(literal())) + ";");
+        }
+        line(2, "b0 = " + (random.nextBoolean() ? "true" : "false") + ";");
+
+        generateBlock(2, 0);
+
+        line(2, "acc = acc + l0;");
+        line(2, "return l0;");
+        code.append(INDENT).append("}\n\n");
+    }
+
+    private void generateBlock(int indent, int depth) {
+        generateBlock(indent, depth, 0, statementsPerBlock);
+    }
+
+    // Os blocos aninhados têm metade das instruções, para o tamanho dos métodos não crescer exponencialmente
+    private void generateBlock(int indent, int depth, int nesting, int statements) {
+        for (int i = 0; i < statements; i++) {
+            generateStatement(indent, depth, nesting, Math.max(statements / 2, 1));
+        }
+    }
+
+    private void generateStatement(int indent, int depth, int nesting, int nestedStatements) {
+        if (currentMethod > 0 && random.nextDouble() < callDensity) {
+            generateCall(indent);
+            return;
+        }
+
+        int choice = random.nextInt(10);
+
+        if (choice < 2 && depth < loopDepth) {
+            generateLoop(indent, depth, nesting, nestedStatements);
+        } else if (choice < 4 && nesting < loopDepth + 1) {
+            line(indent, "if (" + boolExpr(expressionDepth) + ") {");
+            generateBlock(indent + 1, depth, nesting + 1, nestedStatements);
+            line(indent, "} else {");
+            generateBlock(indent + 1, depth, nesting + 1, nestedStatements);
+            line(indent, "}");
+        } else if (choice < 5) {
+            line(indent, "arr[" + random.nextInt(ARRAY_SIZE) + "] = " + intExpr(expressionDepth) + ";");
+        } else if (choice < 6) {
+            line(indent, "b0 = " + boolExpr(expressionDepth) + ";");
+        } else if (choice < 7) {
+            line(indent, "acc = acc + " + intExpr(expressionDepth) + ";");
+        } else {
+            line(indent, local() + " = " + intExpr(expressionDepth) + ";");
+        }
+    }
+
+    private void generateLoop(int indent, int depth, int nesting, int statements) {
+        String counter = "c" + depth;
+
+        line(indent, counter + " = 0;");
+        line(indent, "while (" + counter + " < " + (1 + random.nextInt(MAX_TRIP_COUNT)) + ") {");
+        generateBlock(indent + 1, depth + 1, nesting + 1, statements);
+        line(indent + 1, counter + " = " + counter + " + 1;");
+        line(indent, "}");
+    }
+
+    private void generateCall(int indent) {
+        String callee = "m" + random.nextInt(currentMethod);
+
+        line(indent, "if (0 < fuel) {");
+        line(indent + 1, "fuel = fuel - 1;");
+        line(indent + 1, local() + " = this." + callee + "(" + intExpr(2) + ", " + intExpr(2) + ", arr);");
+        line(indent, "}");
+    }
+
+    private String intExpr(int depth) {
+        if (depth <= 1 || random.nextInt(4) == 0) {
+            return intOperand();
+        }
+
+        return switch (random.nextInt(4)) {
+            case 0 -> intExpr(depth - 1) + " + " + intExpr(depth - 1);
+            case 1 -> intExpr(depth - 1) + " - " + intExpr(depth - 1);
+            case 2 -> intExpr(depth - 1) + " * " + intOperand();
+            default -> "(" + intExpr(depth - 1) + ")";
+        };
+    }
+
+    private String intOperand() {
+        return switch (random.nextInt(6)) {
+            case 0 -> String.valueOf(literal());
+            case 1 -> "p" + random.nextInt(2);
+            case 2 -> "arr[" + random.nextInt(ARRAY_SIZE) + "]";
+            case 3 -> "arr.length";
+            default -> local();
+        };
+    }
+
+    private String boolExpr(int depth) {
+        if (depth <= 1) {
+            return comparison();
+        }
+
+        return switch (random.nextInt(5)) {
+            case 0 -> boolExpr(depth - 1) + " && " + boolExpr(depth - 1);
+            case 1 -> boolExpr(depth - 1) + " || " + boolExpr(depth - 1);
+            case 2 -> "!(" + boolExpr(depth - 1) + ")";
+            case 3 -> "b0";
+            default -> comparison();
+        };
+    }
+
+    private String comparison() {
+        return intExpr(2) + " < " + intExpr(2);
+    }
+
+    private String local() {
+        return "l" + random.nextInt(localsPerMethod);
+    }
+
+    private int literal() {
+        return random.nextInt(MAX_LITERAL);
+    }
+
+    private void generateRun() {
+        code.append(INDENT).append("public int run(int[] arr) {\n");
+        line(2, "int result;");
+        line(2, "fuel = " + CALL_BUDGET + ";");
+        line(2, "acc = 0;");
+        line(2, "result = 0;");
+
+        for (int i = 0; i < methods; i++) {
+            line(2, "result = result + this.m" + i + "(" + i + ", " + (methods - i) + ", arr);");
+        }
+
+        line(2, "return result;");
+        code.append(INDENT).append("}\n\n");
+
+        code.append(INDENT).append("public int getAcc() {\n");
+        line(2, "return acc;");
+        code.append(INDENT).append("}\n\n");
+    }
+
+    private void generateMain() {
+        code.append(INDENT).append("public static void main(String[] args) {\n");
+        line(2, CLASS_NAME + " program;");
+        line(2, "int[] arr;");
+        line(2, "program = new " + CLASS_NAME + "();");
+        line(2, "arr = new int[" + ARRAY_SIZE + "];");
+        line(2, "io.println(program.run(arr));");
+        line(2, "io.println(program.getAcc());");
+        code.append(INDENT).append("}\n");
+    }
+
+    private void line(int indent, String statement) {
+        code.append(INDENT.repeat(indent)).append(statement).append('\n');
+    }
+}